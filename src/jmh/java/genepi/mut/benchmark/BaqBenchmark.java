@@ -0,0 +1,92 @@
+package genepi.mut.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import genepi.mut.util.BaqAlt;
+
+/**
+ * BaqAlt.hmm_glocal on reference windows of rCRS (read length + band width).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BaqBenchmark {
+
+	private static final int WINDOWS = 256;
+
+	@Param({ "100", "150", "250" })
+	public int readLength;
+
+	private BaqAlt baq;
+
+	private byte[][] refs;
+
+	private byte[][] reads;
+
+	private byte[][] qualities;
+
+	private int[] state;
+
+	private byte[] bq;
+
+	private int next = 0;
+
+	@Setup
+	public void setup() {
+
+		String reference = new SyntheticData().getReference();
+		Random random = new Random(42);
+
+		baq = new BaqAlt(1e-4, 1e-2, 7, (byte) 0, true);
+
+		refs = new byte[WINDOWS][];
+		reads = new byte[WINDOWS][];
+		qualities = new byte[WINDOWS][];
+
+		for (int i = 0; i < WINDOWS; i++) {
+
+			int start = random.nextInt(reference.length() - readLength - 8);
+
+			refs[i] = reference.substring(start, start + readLength + 7).getBytes();
+			reads[i] = reference.substring(start + 3, start + 3 + readLength).getBytes();
+			qualities[i] = new byte[readLength];
+
+			for (int j = 0; j < readLength; j++) {
+				if (random.nextInt(100) == 0) {
+					reads[i][j] = (byte) "ACGT".charAt(random.nextInt(4));
+				}
+				qualities[i][j] = (byte) (20 + random.nextInt(21));
+			}
+		}
+
+		state = new int[readLength];
+		bq = new byte[readLength];
+	}
+
+	@Benchmark
+	public byte[] hmmGlocal() {
+
+		int i = next++ & (WINDOWS - 1);
+
+		baq.hmm_glocal(refs[i], reads[i], 0, readLength, qualities[i], state, bq);
+
+		return bq;
+	}
+
+}
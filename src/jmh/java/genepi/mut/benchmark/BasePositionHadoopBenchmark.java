@@ -0,0 +1,71 @@
+package genepi.mut.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import genepi.mut.objects.BasePositionHadoop;
+
+/**
+ * Writable round trip of BasePositionHadoop (map output to combiner/reducer).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BasePositionHadoopBenchmark {
+
+	@Param({ "100", "10000", "100000" })
+	public int depth;
+
+	private BasePositionHadoop out = new BasePositionHadoop();
+
+	private BasePositionHadoop in = new BasePositionHadoop();
+
+	private ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+	private byte[] encoded;
+
+	@Setup
+	public void setup() throws Exception {
+
+		out.setBasePosition(new SyntheticData().createBasePosition(depth));
+
+		out.write(new DataOutputStream(bytes));
+		encoded = bytes.toByteArray();
+	}
+
+	@Benchmark
+	public int write() throws Exception {
+
+		bytes.reset();
+		out.write(new DataOutputStream(bytes));
+
+		return bytes.size();
+	}
+
+	@Benchmark
+	public BasePositionHadoop read() throws Exception {
+
+		in.readFields(new DataInputStream(new ByteArrayInputStream(encoded)));
+
+		return in;
+	}
+
+}
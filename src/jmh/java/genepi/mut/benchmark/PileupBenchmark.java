@@ -0,0 +1,77 @@
+package genepi.mut.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import genepi.mut.objects.Pileup;
+import genepi.mut.pileup.BamAnalyser;
+import htsjdk.samtools.SAMRecord;
+
+/**
+ * BamAnalyser.analyseRead for 10,000 synthetic 150bp reads per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PileupBenchmark {
+
+	private static final int READS = 10000;
+
+	@Param({ "false", "true" })
+	public boolean baq;
+
+	@Param({ "false", "true" })
+	public boolean indels;
+
+	private BamAnalyser analyser;
+
+	private List<SAMRecord> reads;
+
+	private byte[][] qualities;
+
+	@Setup
+	public void setup() {
+
+		SyntheticData data = new SyntheticData();
+
+		reads = data.createReads(READS, 150, indels);
+
+		// BAQ overwrites qualities, they are restored before each run
+		qualities = new byte[READS][];
+		for (int i = 0; i < READS; i++) {
+			qualities[i] = reads.get(i).getBaseQualities().clone();
+		}
+
+		analyser = new BamAnalyser("benchmark", SyntheticData.REFERENCE, 20, 20, 30, baq, 30, "mtdna");
+	}
+
+	@Benchmark
+	public Pileup analyseReads() throws Exception {
+
+		analyser.getPileup().clear();
+
+		for (int i = 0; i < READS; i++) {
+			SAMRecord read = reads.get(i);
+			System.arraycopy(qualities[i], 0, read.getBaseQualities(), 0, qualities[i].length);
+			analyser.analyseRead(read, indels, indels);
+		}
+
+		return analyser.getPileup();
+	}
+
+}
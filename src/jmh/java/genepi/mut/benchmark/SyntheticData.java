@@ -0,0 +1,138 @@
+package genepi.mut.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import genepi.mut.objects.BasePosition;
+import genepi.mut.util.ReferenceUtil;
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SAMSequenceRecord;
+
+/**
+ * Reads and pileup positions generated against files/rCRS.fasta (override
+ * with -Dmutserve.reference=...). A fixed seed keeps runs comparable.
+ */
+public class SyntheticData {
+
+	public static final String REFERENCE = System.getProperty("mutserve.reference", "files/rCRS.fasta");
+
+	private static final String BASES = "ACGT";
+
+	private String reference;
+
+	private SAMFileHeader header;
+
+	private Random random = new Random(42);
+
+	public SyntheticData() {
+
+		reference = ReferenceUtil.readInReference(REFERENCE);
+
+		header = new SAMFileHeader();
+		header.setSequenceDictionary(
+				new SAMSequenceDictionary(Arrays.asList(new SAMSequenceRecord("rCRS", reference.length()))));
+	}
+
+	public String getReference() {
+		return reference;
+	}
+
+	// reads with 1% mismatches, with indels 10% carry a 2bp deletion and 10% a 2bp insertion
+	public List<SAMRecord> createReads(int count, int readLength, boolean indels) {
+
+		List<SAMRecord> reads = new ArrayList<SAMRecord>(count);
+
+		for (int i = 0; i < count; i++) {
+
+			int start = 1 + random.nextInt(reference.length() - readLength - 10);
+			int half = readLength / 2;
+
+			StringBuilder bases = new StringBuilder(readLength);
+			String cigar;
+
+			int type = indels ? random.nextInt(10) : 2;
+
+			if (type == 0) {
+				bases.append(reference, start - 1, start - 1 + half);
+				bases.append(reference, start + 1 + half, start - 1 + readLength + 2);
+				cigar = half + "M2D" + (readLength - half) + "M";
+			} else if (type == 1) {
+				bases.append(reference, start - 1, start - 1 + half);
+				bases.append(randomBase()).append(randomBase());
+				bases.append(reference, start - 1 + half, start - 1 + readLength - 2);
+				cigar = half + "M2I" + (readLength - half - 2) + "M";
+			} else {
+				bases.append(reference, start - 1, start - 1 + readLength);
+				cigar = readLength + "M";
+			}
+
+			byte[] readBases = bases.toString().getBytes();
+			byte[] qualities = new byte[readBases.length];
+
+			for (int j = 0; j < readBases.length; j++) {
+				if (random.nextInt(100) == 0) {
+					readBases[j] = (byte) randomBase();
+				}
+				qualities[j] = (byte) (20 + random.nextInt(21));
+			}
+
+			SAMRecord read = new SAMRecord(header);
+			read.setReadName("read" + i);
+			read.setReferenceName("rCRS");
+			read.setAlignmentStart(start);
+			read.setCigarString(cigar);
+			read.setReadBases(readBases);
+			read.setBaseQualities(qualities);
+			read.setMappingQuality(60);
+			read.setReadNegativeStrandFlag(random.nextBoolean());
+			read.setAttribute("AS", readLength);
+
+			reads.add(read);
+		}
+
+		return reads;
+	}
+
+	// position with depth observations, ~2% minor allele on both strands
+	public BasePosition createBasePosition(int depth) {
+
+		BasePosition basePos = new BasePosition();
+		basePos.setId("sample");
+		basePos.setPos(3000);
+
+		for (int i = 0; i < depth; i++) {
+
+			byte quality = (byte) (20 + random.nextInt(21));
+			boolean minor = random.nextInt(50) == 0;
+
+			if (i % 2 == 0) {
+				if (minor) {
+					basePos.addgFor(1);
+					basePos.addgForQ(quality);
+				} else {
+					basePos.addaFor(1);
+					basePos.addaForQ(quality);
+				}
+			} else {
+				if (minor) {
+					basePos.addgRev(1);
+					basePos.addgRevQ(quality);
+				} else {
+					basePos.addaRev(1);
+					basePos.addaRevQ(quality);
+				}
+			}
+		}
+
+		return basePos;
+	}
+
+	private char randomBase() {
+		return BASES.charAt(random.nextInt(4));
+	}
+
+}
@@ -0,0 +1,64 @@
+package genepi.mut.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import genepi.mut.objects.BasePosition;
+import genepi.mut.objects.VariantLine;
+
+/**
+ * VariantLine.parseLine (LLR model) for a single position at increasing
+ * depth.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class VariantLineBenchmark {
+
+	@Param({ "100", "1000", "10000", "100000" })
+	public int depth;
+
+	private BasePosition basePos;
+
+	private VariantLine reused = new VariantLine();
+
+	@Setup
+	public void setup() {
+		basePos = new SyntheticData().createBasePosition(depth);
+	}
+
+	@Benchmark
+	public VariantLine parseLine() throws Exception {
+
+		VariantLine line = new VariantLine();
+		line.setRef('A');
+		line.parseLine(basePos, 0.01);
+
+		return line;
+	}
+
+	@Benchmark
+	public VariantLine parseLineReused() throws Exception {
+
+		reused.reset();
+		reused.setRef('A');
+		reused.parseLine(basePos, 0.01);
+
+		return reused;
+	}
+
+}
@@ -0,0 +1,94 @@
+package genepi.mut.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import genepi.io.text.LineWriter;
+import genepi.mut.util.VcfWriter;
+
+/**
+ * VcfWriter.createVCF for a variants file with 40 synthetic variants per
+ * sample.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class VcfWriterBenchmark {
+
+	@Param({ "10", "100", "1000" })
+	public int samples;
+
+	private File variants;
+
+	private File vcf;
+
+	@Setup
+	public void setup() throws Exception {
+
+		String reference = new SyntheticData().getReference();
+		Random random = new Random(42);
+
+		variants = File.createTempFile("variants", ".txt");
+		vcf = File.createTempFile("variants", ".vcf.gz");
+
+		LineWriter writer = new LineWriter(variants.getAbsolutePath());
+		writer.write("ID\tPos\tRef\tVariant\tVariantLevel\tMajorBase\tMajorLevel\tMinorBase\tMinorLevel\tCoverage\tType");
+
+		for (int i = 0; i < samples; i++) {
+
+			int pos = 0;
+
+			for (int j = 0; j < 40; j++) {
+
+				pos += 1 + random.nextInt(400);
+				char ref = reference.charAt(pos - 1);
+				char variant = ref == 'A' ? 'G' : 'A';
+
+				if (j % 5 == 0) {
+					// heteroplasmy
+					writer.write("sample" + i + "\t" + pos + "\t" + ref + "\t" + variant + "\t0.12\t" + ref
+							+ "\t0.88\t" + variant + "\t0.12\t1000\t2");
+				} else {
+					writer.write("sample" + i + "\t" + pos + "\t" + ref + "\t" + variant + "\t1.0\t" + variant
+							+ "\t1.0\t-\t0.0\t1000\t1");
+				}
+			}
+		}
+
+		writer.close();
+	}
+
+	@Benchmark
+	public File createVcf() throws IOException {
+
+		new VcfWriter().createVCF(variants.getAbsolutePath(), vcf.getAbsolutePath(), SyntheticData.REFERENCE, "chrM",
+				16569, "benchmark");
+
+		return vcf;
+	}
+
+	@TearDown
+	public void tearDown() {
+		variants.delete();
+		vcf.delete();
+	}
+
+}
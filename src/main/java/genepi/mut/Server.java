@@ -1,10 +1,12 @@
 package genepi.mut;
 
 import genepi.base.Toolbox;
+import genepi.mut.align.AlignPileupStep;
 import genepi.mut.align.AlignStep;
 import genepi.mut.annotate.BaseAnnotateTool;
 import genepi.mut.pileup.PileupStep;
 import genepi.mut.pileup.PileupToolLocal;
+import genepi.mut.pipeline.PipelineStep;
 import genepi.mut.sort.SortStep;
 import genepi.mut.stats.StatisticsTool;
 import genepi.mut.tools.CalcPrecision;
@@ -24,9 +26,15 @@ public class Server {
 		// sort file and output a BAM file with MapReduce + SecondarySort
 		toolbox.addTool("sort", SortStep.class);
 
+		// align SE and PE and count per POS with MapReduce, no sort
+		toolbox.addTool("align-analyse", AlignPileupStep.class);
+
 		// read in BAM file and count per POS with MapReduce
 		toolbox.addTool("analyse", PileupStep.class);
 
+		// align, sort and analyse with MapReduce or locally (--backend local)
+		toolbox.addTool("pipeline", PipelineStep.class);
+
 		// read in BAM file and count per POS locally
 		toolbox.addTool("analyse-local", PileupToolLocal.class);
 
@@ -0,0 +1,128 @@
+package genepi.mut.align;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import org.apache.hadoop.fs.Path;
+
+import genepi.hadoop.common.WorkflowContext;
+import genepi.mut.align.paired.PairedAlignerPileupJob;
+import genepi.mut.align.single.SingleAlignerPileupJob;
+import genepi.mut.pileup.PileupJob;
+import genepi.mut.pileup.PileupMapper;
+import genepi.mut.pileup.PileupStep;
+import genepi.mut.util.HadoopJobStep;
+
+/**
+ * Aligns FASTQ files and feeds the aligned reads directly into the pileup,
+ * replaces AlignStep, SortStep and PileupStep when no sorted BAM files are
+ * needed. Single-end data needs one job. Paired-end data needs one job per
+ * pair (pileup partials, see PairedAlignerPileupJob) and a job that merges
+ * them. Takes the parameters of AlignStep and PileupStep.
+ */
+public class AlignPileupStep extends HadoopJobStep {
+
+	@Override
+	public boolean run(WorkflowContext context) {
+
+		String input = context.get("input");
+		String inType = context.get("inType");
+		String output = context.get("bwaOut");
+		String folder = getFolder(AlignPileupStep.class);
+
+		if (inType.equals("se")) {
+
+			SingleAlignerPileupJob job = new SingleAlignerPileupJob("Align and Pileup SingleEnd");
+			job.setInput(input);
+			PileupStep.configure(job, context);
+			job.setFolder(folder);
+			job.setJarByClass(AlignPileupStep.class);
+
+			if (!executeHadoopJob(job, context)) {
+				context.error("Alignment and pileup failed!");
+				return false;
+			}
+
+			return PileupStep.report(job, context);
+
+		} else if (inType.equals("pe")) {
+
+			String chunkLength = context.get("chunkLength");
+
+			HashMap<String, List<String>> mapPairs = AlignStep.generatePEPairs(input);
+
+			List<PairedAlignerPileupJob> jobs = new ArrayList<PairedAlignerPileupJob>();
+
+			List<String> partials = new ArrayList<String>();
+
+			List<String> samples = new ArrayList<String>();
+
+			int round = 0;
+
+			for (String key : mapPairs.keySet()) {
+
+				List<String> values = mapPairs.get(key);
+
+				if (values.size() != 2) {
+					context.error("Pair is missing for " + key);
+					return false;
+				}
+
+				String roundOutput = output + "/" + round;
+
+				PairedAlignerPileupJob job = new PairedAlignerPileupJob("Align and Pileup PairedEnd:" + round);
+				PileupStep.configure(job, context);
+				job.setInput(values.get(0), values.get(1));
+				job.setOutput(roundOutput);
+				job.setChunkLength(chunkLength);
+				job.setFolder(folder);
+				job.setJarByClass(AlignPileupStep.class);
+
+				if (!executeHadoopJob(job, context)) {
+					context.error("Alignment and pileup failed!");
+					return false;
+				}
+
+				jobs.add(job);
+				partials.add(roundOutput);
+
+				// reads are assigned to the file of the first mate, which
+				// one that is depends on the reads, not the file order
+				for (String value : values) {
+					samples.add(PileupMapper.getSampleName(new Path(value).getName()));
+				}
+
+				round++;
+			}
+
+			if (jobs.isEmpty()) {
+				context.error("No pairs found in " + input);
+				return false;
+			}
+
+			PileupJob merge = new PileupJob("Merge Pileups");
+			merge.setInput(partials.toArray(new String[partials.size()]));
+			PileupStep.configure(merge, context);
+			merge.setPartialInput(true);
+			merge.setSamples(samples.toArray(new String[samples.size()]));
+			merge.setFolder(folder);
+			merge.setJarByClass(AlignPileupStep.class);
+
+			if (!executeHadoopJob(merge, context)) {
+				context.error("Merging the pileups failed!");
+				return false;
+			}
+
+			for (PairedAlignerPileupJob job : jobs) {
+				merge.addCounters(job);
+			}
+
+			return PileupStep.report(merge, context);
+		}
+
+		context.error("Input type " + inType + " can not be aligned.");
+		return false;
+	}
+
+}
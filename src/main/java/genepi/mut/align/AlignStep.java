@@ -16,8 +16,10 @@ import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 
+import genepi.hadoop.CacheStore;
 import genepi.hadoop.HdfsUtil;
 import genepi.hadoop.common.WorkflowContext;
+import genepi.io.FileUtil;
 import genepi.mut.align.paired.PairedAlignerJob;
 import genepi.mut.align.single.SingleAlignerJob;
 import genepi.mut.util.HadoopJobStep;
@@ -62,7 +64,7 @@ public class AlignStep extends HadoopJobStep {
 			
 			String chunkLength = context.get("chunkLength");
 
-			generatePEPairs(input);
+			mapPairs = generatePEPairs(input);
 
 			int round = 0;
 
@@ -104,7 +106,11 @@ public class AlignStep extends HadoopJobStep {
 
 	}
 
-	private void generatePEPairs(String input) {
+	// input files grouped by the name of their first read
+	public static HashMap<String, List<String>> generatePEPairs(String input) {
+
+		HashMap<String, List<String>> mapPairs = new HashMap<String, List<String>>();
+
 		try {
 			FileSystem fileSystem;
 			fileSystem = FileSystem.get(HdfsUtil.getConfiguration());
@@ -152,6 +158,21 @@ public class AlignStep extends HadoopJobStep {
 		catch (IOException e) { // TODO Auto-generated catch block
 			e.printStackTrace();
 		}
+
+		return mapPairs;
+	}
+
+	// distributes the jbwa libraries, extracted on the nodes as "jbwaLib"
+	public static void addJbwaLib(CacheStore cache, String folder) {
+
+		String hdfsPath = HdfsUtil.path(REF_DIRECTORY, "jbwa-native.tar");
+		if (!HdfsUtil.exists(hdfsPath)) {
+			String jbwa = FileUtil.path(folder, "jbwa-native.tar");
+			HdfsUtil.put(jbwa, hdfsPath);
+		}
+
+		log.info("Archive path is: " + hdfsPath);
+		cache.addArchive("jbwaLib", hdfsPath);
 	}
 
 }
@@ -0,0 +1,144 @@
+package genepi.mut.align;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.github.lindenb.jbwa.jni.AlnRgn;
+
+import htsjdk.samtools.DefaultSAMRecordFactory;
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMLineParser;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.ValidationStringency;
+import htsjdk.samtools.util.SequenceUtil;
+
+/**
+ * Creates SAM records from the jbwa results. Secondary alignments and
+ * alignments with an alignment score below 30 (as defined by BWA) are
+ * skipped. One instance per thread, the header is only read.
+ */
+public class AlignedReadBuilder {
+
+	public static final int MIN_ALIGNMENT_SCORE = 30;
+
+	private SAMLineParser parser;
+
+	private StringBuilder samRecordBuilder = new StringBuilder();
+
+	public AlignedReadBuilder(SAMFileHeader header) {
+		parser = new SAMLineParser(new DefaultSAMRecordFactory(), ValidationStringency.SILENT, header, null, null);
+	}
+
+	// single end read, returns null if the alignment is skipped
+	public SAMRecord build(String name, String seq, String qual, AlnRgn alignedRead) {
+
+		if (alignedRead.getAs() < MIN_ALIGNMENT_SCORE) {
+			return null;
+		}
+
+		// don't output secondary alignments!!
+		// see https://github.com/lh3/bwa/blob/master/bwamem.h
+		if (alignedRead.getSecondary() >= 0) {
+			return null;
+		}
+
+		boolean reverse = alignedRead.getStrand() == '-';
+
+		// reset builder
+		samRecordBuilder.setLength(0);
+
+		// READNAME
+		samRecordBuilder.append(name);
+		samRecordBuilder.append("\t");
+
+		// FLAGS REVERSE or FORWARD, PRIMARY ALIGNMENT
+		samRecordBuilder.append(reverse ? 16 : 0);
+		samRecordBuilder.append("\t");
+
+		// REFERENCE
+		samRecordBuilder.append(alignedRead.getChrom());
+		samRecordBuilder.append("\t");
+
+		// LEFT MOST POS
+		samRecordBuilder.append(alignedRead.getPos());
+		samRecordBuilder.append("\t");
+
+		// QUAL
+		samRecordBuilder.append(alignedRead.getMQual());
+		samRecordBuilder.append("\t");
+
+		// CIGAR
+		samRecordBuilder.append(alignedRead.getCigar());
+		samRecordBuilder.append("\t");
+
+		// RNEXT (REF NAME OF THE MATE)
+		// PNEXT (POS OF THE MATE) LENGTH OF TEMPLATE
+		samRecordBuilder.append("*\t0\t0\t");
+
+		// SEQ
+		if (reverse) {
+			byte[] temp = seq.getBytes();
+			SequenceUtil.reverseComplement(temp);
+			samRecordBuilder.append(new String(temp));
+		} else {
+			samRecordBuilder.append(seq);
+		}
+
+		samRecordBuilder.append("\t");
+
+		// QUAL
+		if (reverse) {
+			byte[] temp = qual.getBytes();
+			SequenceUtil.reverseQualities(temp);
+			samRecordBuilder.append(new String(temp));
+		} else {
+			samRecordBuilder.append(qual);
+		}
+
+		samRecordBuilder.append("\t");
+
+		samRecordBuilder.append("NM:i:" + alignedRead.getNm());
+		samRecordBuilder.append("\t");
+		samRecordBuilder.append("AS:i:" + alignedRead.getAs());
+
+		return parser.parseLine(samRecordBuilder.toString());
+	}
+
+	// SAM lines of one pair as returned by BwaMem.align(L1, L2)
+	public List<SAMRecord> parsePaired(String read) {
+		return parsePaired(read, null);
+	}
+
+	// same as parsePaired(read), lines gets the SAM lines of the returned records
+	public List<SAMRecord> parsePaired(String read, List<String> lines) {
+
+		List<SAMRecord> records = new ArrayList<SAMRecord>(2);
+
+		/**
+		 * hack to write a valid SAM since BWA MEM outputs tabs at the end,
+		 * samtools can not handle this
+		 */
+		read = read.replaceAll("\\t+$", "");
+		read = read.replaceAll("\\s+$", "");
+
+		for (String tile : read.split("\t+\n")) {
+
+			SAMRecord samRecord = parser.parseLine(tile);
+
+			Integer score = samRecord.getIntegerAttribute("AS");
+
+			if (score == null || score < MIN_ALIGNMENT_SCORE) {
+				continue;
+			}
+
+			records.add(samRecord);
+
+			if (lines != null) {
+				lines.add(tile);
+			}
+		}
+
+		return records;
+	}
+
+}
@@ -0,0 +1,62 @@
+package genepi.mut.align.paired;
+
+import java.io.IOException;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
+import org.seqdoop.hadoop_bam.FastqInputFormat;
+
+import genepi.hadoop.CacheStore;
+import genepi.mut.align.AlignStep;
+import genepi.mut.objects.BasePositionHadoop;
+import genepi.mut.objects.PositionKey;
+import genepi.mut.objects.SingleRead;
+import genepi.mut.pileup.PileupJob;
+
+/**
+ * Aligns a pair of FASTQ files and builds the pileup in the reducers
+ * (PairedAlignerReducer in pileup mode). The partial pileups are written as
+ * sequence files and merged by a PileupJob with partial input, only the QC
+ * counters are read here.
+ */
+public class PairedAlignerPileupJob extends PileupJob {
+
+	public PairedAlignerPileupJob(String name) {
+		super(name);
+		set("pileup", true);
+	}
+
+	@Override
+	public void setupJob(Job job) {
+		job.setJarByClass(PairedAlignerPileupJob.class);
+		job.setInputFormatClass(FastqInputFormat.class);
+		job.setMapperClass(PairedAlignerMap.class);
+		job.setReducerClass(PairedAlignerReducer.class);
+		job.setMapOutputKeyClass(Text.class);
+		job.setMapOutputValueClass(SingleRead.class);
+		job.setOutputKeyClass(PositionKey.class);
+		job.setOutputValueClass(BasePositionHadoop.class);
+		job.setOutputFormatClass(SequenceFileOutputFormat.class);
+	}
+
+	@Override
+	protected void setupDistributedCache(CacheStore cache) {
+		super.setupDistributedCache(cache);
+		AlignStep.addJbwaLib(cache, folder);
+	}
+
+	@Override
+	public void cleanupJob(Job job) {
+		try {
+			readCounters(job);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	public void setChunkLength(String chunkLength) {
+		set("chunkLength", chunkLength);
+	}
+
+}
@@ -7,22 +7,24 @@ import java.util.List;
 
 import genepi.hadoop.CacheStore;
 import genepi.io.FileUtil;
+import genepi.mut.align.AlignedReadBuilder;
 import genepi.mut.objects.SingleRead;
+import genepi.mut.pileup.PileupCollector;
+import genepi.mut.pileup.PileupMapper;
 import genepi.mut.util.ReferenceUtil;
-import htsjdk.samtools.DefaultSAMRecordFactory;
 import htsjdk.samtools.SAMFileHeader;
-import htsjdk.samtools.SAMLineParser;
 import htsjdk.samtools.SAMRecord;
-import htsjdk.samtools.ValidationStringency;
 
 import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.mapreduce.Reducer;
 
 import com.github.lindenb.jbwa.jni.BwaIndex;
 import com.github.lindenb.jbwa.jni.BwaMem;
 import com.github.lindenb.jbwa.jni.ShortRead;
 
-public class PairedAlignerReducer extends Reducer<Text, SingleRead, Text, Text> {
+// emits SAM lines or, in pileup mode, partial pileups (see PairedAlignerPileupJob)
+public class PairedAlignerReducer extends Reducer<Text, SingleRead, Writable, Writable> {
 
 	SingleRead first = new SingleRead();
 	SingleRead second = new SingleRead();
@@ -36,6 +38,11 @@ public class PairedAlignerReducer extends Reducer<Text, SingleRead, Text, Text>
 	int countReads;
 	int trimBasesStart;
 	int trimBasesEnd;
+	// reads go straight into the pileup, no SAM output
+	boolean pileup;
+	PileupCollector collector;
+	AlignedReadBuilder builder;
+	List<String> lines = new ArrayList<String>();
 
 	enum Counters {
 
@@ -71,6 +78,17 @@ public class PairedAlignerReducer extends Reducer<Text, SingleRead, Text, Text>
 		index = new BwaIndex(new File(refString));
 		mem = new BwaMem(index);
 
+		pileup = context.getConfiguration().getBoolean("pileup", false);
+
+		if (pileup) {
+			// records need all reference sequences for BAQ
+			builder = new AlignedReadBuilder(ReferenceUtil.createHeader(refString));
+			collector = new PileupCollector(context.getConfiguration(), refString);
+		} else {
+			// SAM lines are only filtered, the sort job reads them with its own header
+			builder = new AlignedReadBuilder(new SAMFileHeader());
+		}
+
 	}
 
 	protected void reduce(Text key, java.lang.Iterable<SingleRead> values, Context context)
@@ -137,6 +155,10 @@ public class PairedAlignerReducer extends Reducer<Text, SingleRead, Text, Text>
 
 		}
 
+		if (pileup) {
+			collector.close(context);
+		}
+
 		index.close();
 		mem.dispose();
 
@@ -150,31 +172,22 @@ public class PairedAlignerReducer extends Reducer<Text, SingleRead, Text, Text>
 
 			String read = result[i];
 			String sample = ((SingleRead) L1.get(i / 2)).getFilename();
-			
-			/**
-			 * hack to write a valid SAM since BWA MEM outputs tabs at the end,
-			 * samtools can not handle this
-			 */
-			read = read.replaceAll("\\t+$", "");
-			read = read.replaceAll("\\s+$", "");
-			String tiles[] = read.split("\t+\n");
-
-			for (String tile : tiles) {
-				
-				SAMLineParser parser = new SAMLineParser(new DefaultSAMRecordFactory(), 
-		                ValidationStringency.SILENT, new SAMFileHeader(), 
-		                null, null); 
-				
-				SAMRecord samRecord = parser.parseLine(tile);
-				
-				if(samRecord.getIntegerAttribute("AS")<30){
-					continue;
+
+			if (pileup) {
+				String id = PileupMapper.getSampleName(sample);
+				for (SAMRecord samRecord : builder.parsePaired(read)) {
+					collector.analyseRead(id, samRecord, context);
 				}
-				
+				continue;
+			}
+
+			lines.clear();
+			builder.parsePaired(read, lines);
+
+			for (String tile : lines) {
 				out.clear();
 				out.set(tile);
 				context.write(new Text(sample), out);
-
 			}
 
 		}
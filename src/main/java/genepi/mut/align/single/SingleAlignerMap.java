@@ -4,6 +4,7 @@ import java.io.File;
 import java.io.IOException;
 
 import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.mapreduce.Mapper;
 import org.apache.hadoop.mapreduce.lib.input.FileSplit;
 import org.seqdoop.hadoop_bam.SequencedFragment;
@@ -15,14 +16,16 @@ import com.github.lindenb.jbwa.jni.ShortRead;
 
 import genepi.hadoop.CacheStore;
 import genepi.io.FileUtil;
+import genepi.mut.align.AlignedReadBuilder;
+import genepi.mut.pileup.PileupCollector;
+import genepi.mut.pileup.PileupMapper;
 import genepi.mut.util.ReferenceUtil;
 import htsjdk.samtools.SAMFileHeader;
-import htsjdk.samtools.SAMLineParser;
 import htsjdk.samtools.SAMRecord;
 import htsjdk.samtools.SAMSequenceRecord;
-import htsjdk.samtools.util.SequenceUtil;
 
-public class SingleAlignerMap extends Mapper<Object, SequencedFragment, Text, Text> {
+// emits SAM lines or, in pileup mode, partial pileups (see SingleAlignerPileupJob)
+public class SingleAlignerMap extends Mapper<Object, SequencedFragment, Writable, Writable> {
 
 	BwaIndex index;
 	BwaMem mem;
@@ -30,8 +33,11 @@ public class SingleAlignerMap extends Mapper<Object, SequencedFragment, Text, Te
 	String filename;
 	private Text outValue = new Text();
 	private SAMFileHeader header = new SAMFileHeader();
-	private SAMLineParser parser = null;
-	StringBuilder samRecordBuilder = new StringBuilder();
+	private AlignedReadBuilder builder = null;
+	// reads go straight into the pileup, no SAM output
+	private boolean pileup;
+	private PileupCollector collector;
+	private String sample;
 
 	enum Counters {
 
@@ -67,8 +73,19 @@ public class SingleAlignerMap extends Mapper<Object, SequencedFragment, Text, Te
 			System.exit(-1);
 		}
 
-		header = new SAMFileHeader();
-		parser = new SAMLineParser(header);
+		pileup = context.getConfiguration().getBoolean("pileup", false);
+
+		if (pileup) {
+			// records need all reference sequences for BAQ
+			header = ReferenceUtil.createHeader(refString);
+			collector = new PileupCollector(context.getConfiguration(), refString);
+			sample = PileupMapper.getSampleName(filename);
+			collector.getAnalyser(sample);
+		} else {
+			header = new SAMFileHeader();
+		}
+
+		builder = new AlignedReadBuilder(header);
 
 	}
 
@@ -89,101 +106,17 @@ public class SingleAlignerMap extends Mapper<Object, SequencedFragment, Text, Te
 				header.addSequence(new SAMSequenceRecord(alignedRead.getChrom(), length));
 			}
 
-			// reset builder
-			samRecordBuilder.setLength(0);
-			
-			//as defined by BWA
-			if(alignedRead.getAs()<30) {
-				continue;
-			}
-
-			// READNAME
-			samRecordBuilder.append(key.toString());
-			samRecordBuilder.append("\t");
-
-			// see for secondary:
-			// https://github.com/lh3/bwa/blob/master/bwamem.h
-			// see for flags: http://picard.sourceforge.net/explain-flags.html
-
-			if (alignedRead.getStrand() == '-') {
-
-				if (alignedRead.getSecondary() < 0) {
-					// FLAGS REVERSE, PRIMARY ALIGNMENT
-					samRecordBuilder.append(16);
-				} else {
-					// don't output secondary alignments!!
-					continue;
-				}
-
-			} else {
-
-				if (alignedRead.getSecondary() < 0) {
-					// FLAGS FORWARD, PRIMARY ALIGNMENT
-					samRecordBuilder.append(0);
-				} else {
-					// don't output secondary alignments!!
-					continue;
-				}
-			}
-
-			samRecordBuilder.append("\t");
-
-			// REFERENCE
-			samRecordBuilder.append(alignedRead.getChrom());
-
-			samRecordBuilder.append("\t");
-
-			// LEFT MOST POS
-			samRecordBuilder.append(alignedRead.getPos());
-
-			samRecordBuilder.append("\t");
-
-			// QUAL
-			samRecordBuilder.append(alignedRead.getMQual());
-
-			samRecordBuilder.append("\t");
+			SAMRecord samRecord = builder.build(key.toString(), seq, qual, alignedRead);
 
-			// CIGAR
-			samRecordBuilder.append(alignedRead.getCigar());
-
-			samRecordBuilder.append("\t");
-
-			// RNEXT (REF NAME OF THE MATE)
-			// PNEXT (POS OF THE MATE) LENGTH OF TEMPLATE
-			samRecordBuilder.append("*\t0\t0\t");
-
-			// SEQ REVERSE
-			if (alignedRead.getStrand() == '-') {
-				byte[] temp = value.getSequence().toString().getBytes();
-				SequenceUtil.reverseComplement(temp);
-				samRecordBuilder.append(new String(temp));
-			}
-
-			else {
-				// SEQ FORWARD
-				samRecordBuilder.append(value.getSequence());
+			if (samRecord == null) {
+				continue;
 			}
 
-			samRecordBuilder.append("\t");
-
-			// QUAL REVERSE
-			if (alignedRead.getStrand() == '-') {
-				byte[] temp = value.getQuality().toString().getBytes();
-				SequenceUtil.reverseQualities(temp);
-				samRecordBuilder.append(new String(temp));
-			} else {
-				// QUAL FORWARD
-				samRecordBuilder.append(value.getQuality());
+			if (pileup) {
+				collector.analyseRead(sample, samRecord, context);
+				continue;
 			}
 
-			samRecordBuilder.append("\t");
-
-			samRecordBuilder.append("NM:i:" + alignedRead.getNm());
-			samRecordBuilder.append("\t");
-			samRecordBuilder.append("AS:i:" + alignedRead.getAs());
-
-			SAMRecord samRecord = parser.parseLine(samRecordBuilder.toString());
-
 			outValue.set(filename + "\t" + samRecord.getSAMString());
 			
 			context.write(null, outValue);
@@ -192,4 +125,13 @@ public class SingleAlignerMap extends Mapper<Object, SequencedFragment, Text, Te
 
 	}
 
+	@Override
+	protected void cleanup(Context context) throws IOException, InterruptedException {
+
+		if (pileup) {
+			collector.close(context);
+		}
+
+	}
+
 }
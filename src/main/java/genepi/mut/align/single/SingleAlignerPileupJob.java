@@ -0,0 +1,35 @@
+package genepi.mut.align.single;
+
+import org.apache.hadoop.mapreduce.Job;
+import org.seqdoop.hadoop_bam.FastqInputFormat;
+
+import genepi.hadoop.CacheStore;
+import genepi.mut.align.AlignStep;
+import genepi.mut.pileup.PileupJob;
+
+/**
+ * Aligns single-end reads and builds the pileup in the same map tasks
+ * (SingleAlignerMap in pileup mode). The reducers call the variants as in
+ * PileupJob, so neither SAM output nor a sort job is needed.
+ */
+public class SingleAlignerPileupJob extends PileupJob {
+
+	public SingleAlignerPileupJob(String name) {
+		super(name);
+		set("pileup", true);
+	}
+
+	@Override
+	public void setupJob(Job job) {
+		super.setupJob(job);
+		job.setInputFormatClass(FastqInputFormat.class);
+		job.setMapperClass(SingleAlignerMap.class);
+	}
+
+	@Override
+	protected void setupDistributedCache(CacheStore cache) {
+		super.setupDistributedCache(cache);
+		AlignStep.addJbwaLib(cache, folder);
+	}
+
+}
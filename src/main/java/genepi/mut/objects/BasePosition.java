@@ -1,8 +1,5 @@
 package genepi.mut.objects;
 
-import java.util.ArrayList;
-import java.util.List;
-
 public class BasePosition {
 
 	protected double llrFWD;
@@ -37,17 +34,17 @@ public class BasePosition {
 
 	protected int nRev = 0;
 
-	protected List<Byte> aForQ = new ArrayList<Byte>();
-	protected List<Byte> cForQ = new ArrayList<Byte>();
-	protected List<Byte> gForQ = new ArrayList<Byte>();
-	protected List<Byte> tForQ = new ArrayList<Byte>();
-	protected List<Byte> dForQ = new ArrayList<Byte>();
+	protected QualityHistogram aForQ = new QualityHistogram();
+	protected QualityHistogram cForQ = new QualityHistogram();
+	protected QualityHistogram gForQ = new QualityHistogram();
+	protected QualityHistogram tForQ = new QualityHistogram();
+	protected QualityHistogram dForQ = new QualityHistogram();
 	
-	protected List<Byte> aRevQ = new ArrayList<Byte>();
-	protected List<Byte> cRevQ = new ArrayList<Byte>();
-	protected List<Byte> gRevQ = new ArrayList<Byte>();
-	protected List<Byte> tRevQ = new ArrayList<Byte>();
-	protected List<Byte> dRevQ = new ArrayList<Byte>();
+	protected QualityHistogram aRevQ = new QualityHistogram();
+	protected QualityHistogram cRevQ = new QualityHistogram();
+	protected QualityHistogram gRevQ = new QualityHistogram();
+	protected QualityHistogram tRevQ = new QualityHistogram();
+	protected QualityHistogram dRevQ = new QualityHistogram();
 
 	public void add(BasePosition postion) {
 		aFor += postion.aFor;
@@ -62,6 +59,17 @@ public class BasePosition {
 		tRev += postion.tRev;
 		dRev += postion.dRev;
 		nRev += postion.nRev;
+
+		aForQ.add(postion.aForQ);
+		cForQ.add(postion.cForQ);
+		gForQ.add(postion.gForQ);
+		tForQ.add(postion.tForQ);
+		dForQ.add(postion.dForQ);
+		aRevQ.add(postion.aRevQ);
+		cRevQ.add(postion.cRevQ);
+		gRevQ.add(postion.gRevQ);
+		tRevQ.add(postion.tRevQ);
+		dRevQ.add(postion.dRevQ);
 	}
 
 	public void addaFor(int aFor) {
@@ -162,6 +170,13 @@ public class BasePosition {
 		this.nRev += nRev;
 	}
 
+	// estimated heap size in bytes, dominated by the allocated histograms
+	public long getMemory() {
+		return 128 + aForQ.getMemory() + cForQ.getMemory() + gForQ.getMemory() + tForQ.getMemory()
+				+ dForQ.getMemory() + aRevQ.getMemory() + cRevQ.getMemory() + gRevQ.getMemory()
+				+ tRevQ.getMemory() + dRevQ.getMemory();
+	}
+
 	public void clear() {
 
 		aFor = 0;
@@ -177,17 +192,17 @@ public class BasePosition {
 		dRev = 0;
 		nRev = 0;
 		
-		aForQ = new ArrayList<>();
-		cForQ = new ArrayList<>();
-		gForQ = new ArrayList<>();
-		tForQ = new ArrayList<>();
-		dForQ = new ArrayList<>();
+		aForQ.clear();
+		cForQ.clear();
+		gForQ.clear();
+		tForQ.clear();
+		dForQ.clear();
 		
-		aRevQ = new ArrayList<>();
-		cRevQ = new ArrayList<>();
-		gRevQ = new ArrayList<>();
-		tRevQ = new ArrayList<>();
-		dRevQ = new ArrayList<>();
+		aRevQ.clear();
+		cRevQ.clear();
+		gRevQ.clear();
+		tRevQ.clear();
+		dRevQ.clear();
 	}
 
 	public int getaFor() {
@@ -294,83 +309,83 @@ public class BasePosition {
 				+ nRev + "\t" + dFor + "\t" + dRev+ "\t" + llrFWD+ "\t" + llrREV;
 	}
 
-	public List<Byte> getaForQ() {
+	public QualityHistogram getaForQ() {
 		return aForQ;
 	}
 
-	public void setaForQ(List<Byte> aForQ) {
+	public void setaForQ(QualityHistogram aForQ) {
 		this.aForQ = aForQ;
 	}
 
-	public List<Byte> getcForQ() {
+	public QualityHistogram getcForQ() {
 		return cForQ;
 	}
 
-	public void setcForQ(List<Byte> cForQ) {
+	public void setcForQ(QualityHistogram cForQ) {
 		this.cForQ = cForQ;
 	}
 
-	public List<Byte> getgForQ() {
+	public QualityHistogram getgForQ() {
 		return gForQ;
 	}
 
-	public void setgForQ(List<Byte> gForQ) {
+	public void setgForQ(QualityHistogram gForQ) {
 		this.gForQ = gForQ;
 	}
 
-	public List<Byte> gettForQ() {
+	public QualityHistogram gettForQ() {
 		return tForQ;
 	}
 
-	public void settForQ(List<Byte> tForQ) {
+	public void settForQ(QualityHistogram tForQ) {
 		this.tForQ = tForQ;
 	}
 	
-	public List<Byte> getdForQ() {
+	public QualityHistogram getdForQ() {
 		return dForQ;
 	}
 
-	public void setdForQ(List<Byte> dForQ) {
+	public void setdForQ(QualityHistogram dForQ) {
 		this.dForQ = dForQ;
 	}
 
-	public List<Byte> getaRevQ() {
+	public QualityHistogram getaRevQ() {
 		return aRevQ;
 	}
 
-	public void setaRevQ(List<Byte> aRevQ) {
+	public void setaRevQ(QualityHistogram aRevQ) {
 		this.aRevQ = aRevQ;
 	}
 
-	public List<Byte> getcRevQ() {
+	public QualityHistogram getcRevQ() {
 		return cRevQ;
 	}
 
-	public void setcRevQ(List<Byte> cRevQ) {
+	public void setcRevQ(QualityHistogram cRevQ) {
 		this.cRevQ = cRevQ;
 	}
 
-	public List<Byte> getgRevQ() {
+	public QualityHistogram getgRevQ() {
 		return gRevQ;
 	}
 
-	public void setgRevQ(List<Byte> gRevQ) {
+	public void setgRevQ(QualityHistogram gRevQ) {
 		this.gRevQ = gRevQ;
 	}
 
-	public List<Byte> gettRevQ() {
+	public QualityHistogram gettRevQ() {
 		return tRevQ;
 	}
 
-	public void settRevQ(List<Byte> tRevQ) {
+	public void settRevQ(QualityHistogram tRevQ) {
 		this.tRevQ = tRevQ;
 	}
 	
-	public List<Byte> getdRevQ() {
+	public QualityHistogram getdRevQ() {
 		return dRevQ;
 	}
 
-	public void setdRevQ(List<Byte> dRevQ) {
+	public void setdRevQ(QualityHistogram dRevQ) {
 		this.dRevQ = dRevQ;
 	}
 
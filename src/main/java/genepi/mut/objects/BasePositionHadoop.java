@@ -3,140 +3,175 @@ package genepi.mut.objects;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
+import java.util.Iterator;
 
 import org.apache.hadoop.io.Writable;
-
+import org.apache.hadoop.io.WritableUtils;
+
+/**
+ * Wire format (version 2): version byte, twelve base counts as VInts and ten
+ * quality histograms. Each histogram is written as number of runs followed by
+ * (quality byte, count VInt) runs, so the size depends on the number of
+ * distinct qualities and not on coverage. With a merge target, values are
+ * added to the target while they are read (see PileupReducer).
+ */
 public class BasePositionHadoop implements Writable {
 
+	public static final byte FORMAT_VERSION = 2;
+
 	private BasePosition basePosition = new BasePosition();
-	
+
+	private BasePosition mergeTarget;
+
 	@Override
 	public void readFields(DataInput arg0) throws IOException {
-		
-		
-		basePosition.aFor = arg0.readInt();
-		basePosition.cFor = arg0.readInt();
-		basePosition.gFor = arg0.readInt();
-		basePosition.tFor = arg0.readInt();
-		basePosition.dFor = arg0.readInt();
-		basePosition.nFor = arg0.readInt();
-
-		basePosition.aRev = arg0.readInt();
-		basePosition.cRev = arg0.readInt();
-		basePosition.gRev = arg0.readInt();
-		basePosition.tRev = arg0.readInt();
-		basePosition.dRev = arg0.readInt();
-		basePosition.nRev = arg0.readInt();
-
-		basePosition.aForQ.clear();
-		basePosition.cForQ.clear();
-		basePosition.gForQ.clear();
-		basePosition.tForQ.clear();
-		basePosition.dForQ.clear();
-
-		basePosition.aRevQ.clear();
-		basePosition.cRevQ.clear();
-		basePosition.gRevQ.clear();
-		basePosition.tRevQ.clear();
-		basePosition.dRevQ.clear();
-
-		for (int i = 0; i < basePosition.aFor; i++) {
-			basePosition.aForQ.add(arg0.readByte());
-		}
-		for (int i = 0; i < basePosition.cFor; i++) {
-			basePosition.cForQ.add(arg0.readByte());
-		}
-		for (int i = 0; i < basePosition.gFor; i++) {
-			basePosition.gForQ.add(arg0.readByte());
-		}
-		for (int i = 0; i < basePosition.tFor; i++) {
-			basePosition.tForQ.add(arg0.readByte());
-		}
-		for (int i = 0; i < basePosition.dFor; i++) {
-			basePosition.dForQ.add(arg0.readByte());
-		}
-		for (int i = 0; i < basePosition.aRev; i++) {
-			basePosition.aRevQ.add(arg0.readByte());
-		}
-		for (int i = 0; i < basePosition.cRev; i++) {
-			basePosition.cRevQ.add(arg0.readByte());
-		}
-		for (int i = 0; i < basePosition.gRev; i++) {
-			basePosition.gRevQ.add(arg0.readByte());
-		}
-		for (int i = 0; i < basePosition.tRev; i++) {
-			basePosition.tRevQ.add(arg0.readByte());
-		}
-		for (int i = 0; i < basePosition.dRev; i++) {
-			basePosition.dRevQ.add(arg0.readByte());
+
+		byte version = arg0.readByte();
+
+		if (version != FORMAT_VERSION) {
+			throw new IOException("Unsupported BasePositionHadoop format version " + version);
 		}
+
+		// merging adds to the target, otherwise the position is replaced
+		boolean merge = mergeTarget != null;
+
+		BasePosition target = merge ? mergeTarget : basePosition;
+
+		target.aFor = (merge ? target.aFor : 0) + WritableUtils.readVInt(arg0);
+		target.cFor = (merge ? target.cFor : 0) + WritableUtils.readVInt(arg0);
+		target.gFor = (merge ? target.gFor : 0) + WritableUtils.readVInt(arg0);
+		target.tFor = (merge ? target.tFor : 0) + WritableUtils.readVInt(arg0);
+		target.dFor = (merge ? target.dFor : 0) + WritableUtils.readVInt(arg0);
+		target.nFor = (merge ? target.nFor : 0) + WritableUtils.readVInt(arg0);
+
+		target.aRev = (merge ? target.aRev : 0) + WritableUtils.readVInt(arg0);
+		target.cRev = (merge ? target.cRev : 0) + WritableUtils.readVInt(arg0);
+		target.gRev = (merge ? target.gRev : 0) + WritableUtils.readVInt(arg0);
+		target.tRev = (merge ? target.tRev : 0) + WritableUtils.readVInt(arg0);
+		target.dRev = (merge ? target.dRev : 0) + WritableUtils.readVInt(arg0);
+		target.nRev = (merge ? target.nRev : 0) + WritableUtils.readVInt(arg0);
+
+		readQualities(arg0, target.aForQ, merge);
+		readQualities(arg0, target.cForQ, merge);
+		readQualities(arg0, target.gForQ, merge);
+		readQualities(arg0, target.tForQ, merge);
+		readQualities(arg0, target.dForQ, merge);
+
+		readQualities(arg0, target.aRevQ, merge);
+		readQualities(arg0, target.cRevQ, merge);
+		readQualities(arg0, target.gRevQ, merge);
+		readQualities(arg0, target.tRevQ, merge);
+		readQualities(arg0, target.dRevQ, merge);
 	}
 
 	@Override
 	public void write(DataOutput arg0) throws IOException {
 
-		arg0.writeInt(basePosition.aFor);
-		arg0.writeInt(basePosition.cFor);
-		arg0.writeInt(basePosition.gFor);
-		arg0.writeInt(basePosition.tFor);
-		arg0.writeInt(basePosition.dFor);
-		arg0.writeInt(basePosition.nFor);
-
-		arg0.writeInt(basePosition.aRev);
-		arg0.writeInt(basePosition.cRev);
-		arg0.writeInt(basePosition.gRev);
-		arg0.writeInt(basePosition.tRev);
-		arg0.writeInt(basePosition.dRev);
-		arg0.writeInt(basePosition.nRev);
-		
-
-		for (int i = 0; i < basePosition.aFor; i++) {
-			arg0.writeByte(basePosition.aForQ.get(i));
-		}
+		arg0.writeByte(FORMAT_VERSION);
+
+		WritableUtils.writeVInt(arg0, basePosition.aFor);
+		WritableUtils.writeVInt(arg0, basePosition.cFor);
+		WritableUtils.writeVInt(arg0, basePosition.gFor);
+		WritableUtils.writeVInt(arg0, basePosition.tFor);
+		WritableUtils.writeVInt(arg0, basePosition.dFor);
+		WritableUtils.writeVInt(arg0, basePosition.nFor);
+
+		WritableUtils.writeVInt(arg0, basePosition.aRev);
+		WritableUtils.writeVInt(arg0, basePosition.cRev);
+		WritableUtils.writeVInt(arg0, basePosition.gRev);
+		WritableUtils.writeVInt(arg0, basePosition.tRev);
+		WritableUtils.writeVInt(arg0, basePosition.dRev);
+		WritableUtils.writeVInt(arg0, basePosition.nRev);
+
+		writeQualities(arg0, basePosition.aForQ);
+		writeQualities(arg0, basePosition.cForQ);
+		writeQualities(arg0, basePosition.gForQ);
+		writeQualities(arg0, basePosition.tForQ);
+		writeQualities(arg0, basePosition.dForQ);
+
+		writeQualities(arg0, basePosition.aRevQ);
+		writeQualities(arg0, basePosition.cRevQ);
+		writeQualities(arg0, basePosition.gRevQ);
+		writeQualities(arg0, basePosition.tRevQ);
+		writeQualities(arg0, basePosition.dRevQ);
 
-		for (int i = 0; i < basePosition.cFor; i++) {
-			arg0.writeByte(basePosition.cForQ.get(i));
-		}
+	}
 
-		for (int i = 0; i < basePosition.gFor; i++) {
-			arg0.writeByte(basePosition.gForQ.get(i));
-		}
+	private void readQualities(DataInput in, QualityHistogram qualities, boolean merge) throws IOException {
 
-		for (int i = 0; i < basePosition.tFor; i++) {
-			arg0.writeByte(basePosition.tForQ.get(i));
-		}
-		
-		for (int i = 0; i < basePosition.dFor; i++) {
-			arg0.writeByte(basePosition.dForQ.get(i));
+		if (!merge) {
+			qualities.clear();
 		}
 
-		for (int i = 0; i < basePosition.aRev; i++) {
-			arg0.writeByte(basePosition.aRevQ.get(i));
-		}
+		int runs = WritableUtils.readVInt(in);
 
-		for (int i = 0; i < basePosition.cRev; i++) {
-			arg0.writeByte(basePosition.cRevQ.get(i));
+		for (int i = 0; i < runs; i++) {
+			int quality = in.readByte();
+			int count = WritableUtils.readVInt(in);
+			qualities.add(quality, count);
 		}
+	}
 
-		for (int i = 0; i < basePosition.gRev; i++) {
-			arg0.writeByte(basePosition.gRevQ.get(i));
-		}
-		
-		for (int i = 0; i < basePosition.tRev; i++) {
-			arg0.writeByte(basePosition.tRevQ.get(i));
-		}
-		
-		for (int i = 0; i < basePosition.dRev; i++) {
-			arg0.writeByte(basePosition.dRevQ.get(i));
-		}
+	private void writeQualities(DataOutput out, QualityHistogram qualities) throws IOException {
+
+		WritableUtils.writeVInt(out, qualities.getDistinctQualities());
 
+		for (int q = qualities.getMinQuality(); q <= qualities.getMaxQuality(); q++) {
+			int count = qualities.getCount(q);
+			if (count > 0) {
+				out.writeByte(q);
+				WritableUtils.writeVInt(out, count);
+			}
+		}
 	}
-	
+
 	public void setBasePosition(BasePosition basePosition) {
 		this.basePosition = basePosition;
 	}
-	
+
 	public BasePosition getBasePosition() {
 		return basePosition;
 	}
-}
\ No newline at end of file
+
+	// merges all values of a reduce group into target. Hadoop reuses one value
+	// instance, after the first value the following ones are added to target
+	// while they are deserialized, without decoding them into a position first
+	public static void merge(Iterable<BasePositionHadoop> values, BasePosition target) {
+
+		target.clear();
+
+		Iterator<BasePositionHadoop> iterator = values.iterator();
+
+		if (!iterator.hasNext()) {
+			return;
+		}
+
+		BasePositionHadoop first = iterator.next();
+
+		target.add(first.getBasePosition());
+
+		first.setMergeTarget(target);
+
+		try {
+
+			while (iterator.hasNext()) {
+
+				BasePositionHadoop value = iterator.next();
+
+				// another instance was read without merge target
+				if (value != first) {
+					target.add(value.getBasePosition());
+				}
+			}
+
+		} finally {
+			first.setMergeTarget(null);
+		}
+	}
+
+	// while set, readFields adds the serialized counts and qualities directly
+	// to the target and leaves getBasePosition() unchanged
+	public void setMergeTarget(BasePosition mergeTarget) {
+		this.mergeTarget = mergeTarget;
+	}
+}
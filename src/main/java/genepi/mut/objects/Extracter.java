@@ -7,6 +7,7 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 
 import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
@@ -23,8 +24,9 @@ public class Extracter {
 		try {
 			fin = new FileInputStream(input);
 			BufferedInputStream in = new BufferedInputStream(fin);
-			GzipCompressorInputStream gzIn = new GzipCompressorInputStream(in);
-			TarArchiveInputStream tarIn = new TarArchiveInputStream(gzIn);
+			// plain tar archives (e.g. jbwa-native.tar) are read directly
+			InputStream tarStream = input.endsWith(".gz") ? new GzipCompressorInputStream(in) : in;
+			TarArchiveInputStream tarIn = new TarArchiveInputStream(tarStream);
 
 			TarArchiveEntry entry = null;
 
@@ -0,0 +1,185 @@
+package genepi.mut.objects;
+
+/**
+ * Log-likelihood terms of the LLR model for all alleles (A, C, G, T, D) and
+ * both strands of one position. The error probability 10^(-(q/10)) of the
+ * model only depends on q/10, so the quality histograms are collapsed into
+ * 13 buckets in a single pass and the log terms are evaluated once per bucket
+ * and strand instead of once per quality and allele. All terms are kept in
+ * flat arrays, an instance can be reused for every position.
+ */
+public class LikelihoodEngine {
+
+	public static final int BUCKETS = QualityHistogram.MAX_QUALITY / 10 + 1;
+
+	private static final int ALLELES = 5;
+
+	private static final int FWD = 0;
+
+	private static final int REV = 1;
+
+	// error probability per bucket, same values as Math.pow(10, (-q / 10))
+	private static final double[] ERROR = new double[BUCKETS];
+
+	static {
+		for (int bucket = 0; bucket < BUCKETS; bucket++) {
+			ERROR[bucket] = Math.pow(10, -bucket);
+		}
+	}
+
+	// [strand][allele][bucket]
+	private final double[] counts = new double[2 * ALLELES * BUCKETS];
+
+	// [strand][bucket]
+	private final double[] logMajor = new double[2 * BUCKETS];
+
+	private final double[] logMinor = new double[2 * BUCKETS];
+
+	// [strand][allele]
+	private final double[] major = new double[2 * ALLELES];
+
+	private final double[] minor = new double[2 * ALLELES];
+
+	// f is the top base percentage of the strand
+	public void compute(BasePosition base, double fFWD, double fREV) {
+
+		java.util.Arrays.fill(counts, 0);
+
+		collect(FWD, 0, base.getaForQ());
+		collect(FWD, 1, base.getcForQ());
+		collect(FWD, 2, base.getgForQ());
+		collect(FWD, 3, base.gettForQ());
+		collect(FWD, 4, base.getdForQ());
+
+		collect(REV, 0, base.getaRevQ());
+		collect(REV, 1, base.getcRevQ());
+		collect(REV, 2, base.getgRevQ());
+		collect(REV, 3, base.gettRevQ());
+		collect(REV, 4, base.getdRevQ());
+
+		logTerms(FWD, fFWD);
+		logTerms(REV, fREV);
+
+		for (int strand = FWD; strand <= REV; strand++) {
+			for (int allele = 0; allele < ALLELES; allele++) {
+				int row = (strand * ALLELES + allele) * BUCKETS;
+				major[strand * ALLELES + allele] = sum(row, logMajor, strand * BUCKETS);
+				minor[strand * ALLELES + allele] = sum(row, logMinor, strand * BUCKETS);
+			}
+		}
+	}
+
+	public double getLlrFWD(char top, char allele) {
+		return llr(FWD, top, allele);
+	}
+
+	public double getLlrREV(char top, char allele) {
+		return llr(REV, top, allele);
+	}
+
+	// same as |(first + second) - first| of the per allele calculation
+	private double llr(int strand, char top, char allele) {
+
+		int topIndex = index(top);
+		int alleleIndex = index(allele);
+
+		double fm0 = topIndex == -1 ? 0 : major[strand * ALLELES + topIndex];
+		double fm1 = fm0 + (alleleIndex == -1 ? 0 : minor[strand * ALLELES + alleleIndex]);
+
+		return Math.abs(fm1 - fm0);
+	}
+
+	// terms of a single histogram, used by the per allele calculation
+	public static double major(QualityHistogram qualities, double f) {
+		return single(qualities, f, true);
+	}
+
+	public static double minor(QualityHistogram qualities, double f) {
+		return single(qualities, f, false);
+	}
+
+	private static double single(QualityHistogram qualities, double f, boolean major) {
+
+		double tmp = 0;
+
+		if (qualities == null || qualities.isEmpty()) {
+			return tmp;
+		}
+
+		for (int bucket = qualities.getMinQuality() / 10; bucket <= qualities.getMaxQuality() / 10; bucket++) {
+
+			int count = 0;
+			for (int q = bucket * 10; q < bucket * 10 + 10 && q <= QualityHistogram.MAX_QUALITY; q++) {
+				count += qualities.getCount(q);
+			}
+
+			if (count > 0) {
+				double p = ERROR[bucket];
+				if (major) {
+					tmp = tmp + count * Math.log(((1 - f) * p + f * (1 - p)));
+				} else {
+					tmp = tmp + count * Math.log(((1 - f) * (1 - p) + (f * p)));
+				}
+			}
+		}
+
+		return tmp;
+	}
+
+	private void collect(int strand, int allele, QualityHistogram qualities) {
+
+		if (qualities == null || qualities.isEmpty()) {
+			return;
+		}
+
+		int row = (strand * ALLELES + allele) * BUCKETS;
+
+		for (int q = qualities.getMinQuality(); q <= qualities.getMaxQuality(); q++) {
+			counts[row + q / 10] += qualities.getCount(q);
+		}
+	}
+
+	private void logTerms(int strand, double f) {
+
+		int offset = strand * BUCKETS;
+
+		for (int bucket = 0; bucket < BUCKETS; bucket++) {
+			double p = ERROR[bucket];
+			logMajor[offset + bucket] = Math.log(((1 - f) * p + f * (1 - p)));
+			logMinor[offset + bucket] = Math.log(((1 - f) * (1 - p) + (f * p)));
+		}
+	}
+
+	// empty buckets are skipped, their log term can be -Infinity
+	private double sum(int row, double[] terms, int offset) {
+
+		double tmp = 0;
+
+		for (int bucket = 0; bucket < BUCKETS; bucket++) {
+			double count = counts[row + bucket];
+			if (count > 0) {
+				tmp = tmp + count * terms[offset + bucket];
+			}
+		}
+
+		return tmp;
+	}
+
+	private static int index(char allele) {
+		switch (allele) {
+		case 'A':
+			return 0;
+		case 'C':
+			return 1;
+		case 'G':
+			return 2;
+		case 'T':
+			return 3;
+		case 'D':
+			return 4;
+		default:
+			return -1;
+		}
+	}
+
+}
@@ -0,0 +1,166 @@
+package genepi.mut.objects;
+
+/**
+ * Dense pileup indexed by 1-based reference position. Insertions are kept in
+ * a small per-anchor side table (e.g. 309.1 is anchor 309, index 1).
+ */
+public class Pileup {
+
+	private BasePosition[] positions;
+
+	private BasePosition[][] insertions;
+
+	private int length;
+
+	// number of allocated positions and insertions
+	private int size;
+
+	public Pileup(int length) {
+		this.length = length;
+		this.positions = new BasePosition[length + 1];
+		this.insertions = new BasePosition[length + 1][];
+	}
+
+	// returns null if pos is outside the reference
+	public BasePosition getOrCreate(int pos) {
+
+		if (pos <= 0 || pos > length) {
+			return null;
+		}
+
+		BasePosition basePos = positions[pos];
+
+		if (basePos == null) {
+			basePos = new BasePosition();
+			basePos.setPos(pos);
+			positions[pos] = basePos;
+			size++;
+		}
+
+		return basePos;
+	}
+
+	// index starts with 1 (309.1, 309.2, ...)
+	public BasePosition getOrCreateInsertion(int pos, int index) {
+
+		if (pos <= 0 || pos > length || index <= 0) {
+			return null;
+		}
+
+		BasePosition[] anchor = insertions[pos];
+
+		if (anchor == null) {
+			anchor = new BasePosition[Math.max(index, 4)];
+			insertions[pos] = anchor;
+		} else if (anchor.length < index) {
+			BasePosition[] grown = new BasePosition[Math.max(index, anchor.length * 2)];
+			System.arraycopy(anchor, 0, grown, 0, anchor.length);
+			anchor = grown;
+			insertions[pos] = anchor;
+		}
+
+		BasePosition basePos = anchor[index - 1];
+
+		if (basePos == null) {
+			basePos = new BasePosition();
+			basePos.setPos(pos);
+			anchor[index - 1] = basePos;
+			size++;
+		}
+
+		return basePos;
+	}
+
+	public BasePosition get(int pos) {
+		if (pos <= 0 || pos > length) {
+			return null;
+		}
+		return positions[pos];
+	}
+
+	public BasePosition getInsertion(int pos, int index) {
+		if (pos <= 0 || pos > length || index <= 0) {
+			return null;
+		}
+		BasePosition[] anchor = insertions[pos];
+		if (anchor == null || anchor.length < index) {
+			return null;
+		}
+		return anchor[index - 1];
+	}
+
+	// number of insertion slots allocated for this anchor (slots may be null)
+	public int getInsertionCount(int pos) {
+		if (pos <= 0 || pos > length) {
+			return 0;
+		}
+		BasePosition[] anchor = insertions[pos];
+		return anchor == null ? 0 : anchor.length;
+	}
+
+	// merges counts and qualities of another pileup with the same length
+	public void add(Pileup other) {
+
+		int max = Math.min(length, other.length);
+
+		for (int pos = 1; pos <= max; pos++) {
+
+			BasePosition basePos = other.positions[pos];
+
+			if (basePos != null) {
+				getOrCreate(pos).add(basePos);
+			}
+
+			BasePosition[] anchor = other.insertions[pos];
+
+			if (anchor != null) {
+				for (int i = 0; i < anchor.length; i++) {
+					if (anchor[i] != null) {
+						getOrCreateInsertion(pos, i + 1).add(anchor[i]);
+					}
+				}
+			}
+		}
+	}
+
+	public int getLength() {
+		return length;
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	// estimated heap size in bytes of the index arrays and all positions
+	public long getMemory() {
+
+		long memory = 2 * (16 + 4L * (length + 1));
+
+		for (int pos = 1; pos <= length; pos++) {
+
+			if (positions[pos] != null) {
+				memory += positions[pos].getMemory();
+			}
+
+			BasePosition[] anchor = insertions[pos];
+
+			if (anchor != null) {
+				memory += 16 + 4L * anchor.length;
+				for (BasePosition basePos : anchor) {
+					if (basePos != null) {
+						memory += basePos.getMemory();
+					}
+				}
+			}
+		}
+
+		return memory;
+	}
+
+	public void clear() {
+		positions = new BasePosition[length + 1];
+		insertions = new BasePosition[length + 1][];
+		size = 0;
+	}
+
+}
@@ -0,0 +1,135 @@
+package genepi.mut.objects;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
+
+/**
+ * Map output key of the pileup job: sample, position and insertion index (0
+ * for the position itself, 1 for 309.1, ...). Keys sort by sample, then
+ * numerically by position and index. The serialized form (UTF sample, two
+ * ints) is compared on the raw bytes by Comparator.
+ */
+public class PositionKey implements WritableComparable<PositionKey> {
+
+	private String sample;
+
+	private int position;
+
+	private int index;
+
+	public void set(String sample, int position, int index) {
+		this.sample = sample;
+		this.position = position;
+		this.index = index;
+	}
+
+	public String getSample() {
+		return sample;
+	}
+
+	public int getPosition() {
+		return position;
+	}
+
+	public int getIndex() {
+		return index;
+	}
+
+	public boolean isInsertion() {
+		return index > 0;
+	}
+
+	@Override
+	public void readFields(DataInput in) throws IOException {
+		sample = in.readUTF();
+		position = in.readInt();
+		index = in.readInt();
+	}
+
+	@Override
+	public void write(DataOutput out) throws IOException {
+		out.writeUTF(sample);
+		out.writeInt(position);
+		out.writeInt(index);
+	}
+
+	@Override
+	public int compareTo(PositionKey other) {
+
+		int result = sample.compareTo(other.sample);
+
+		if (result != 0) {
+			return result;
+		}
+
+		if (position != other.position) {
+			return position < other.position ? -1 : 1;
+		}
+
+		if (index != other.index) {
+			return index < other.index ? -1 : 1;
+		}
+
+		return 0;
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		return other instanceof PositionKey && compareTo((PositionKey) other) == 0;
+	}
+
+	@Override
+	public int hashCode() {
+		return (sample.hashCode() * 31 + position) * 31 + index;
+	}
+
+	@Override
+	public String toString() {
+		return sample + ":" + (index > 0 ? position + "." + index : String.valueOf(position));
+	}
+
+	// sample ids are ASCII (see PileupMapper), so byte order is string order
+	public static class Comparator extends WritableComparator {
+
+		public Comparator() {
+			super(PositionKey.class);
+		}
+
+		@Override
+		public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+
+			int n1 = readUnsignedShort(b1, s1);
+			int n2 = readUnsignedShort(b2, s2);
+
+			int result = compareBytes(b1, s1 + 2, n1, b2, s2 + 2, n2);
+
+			if (result != 0) {
+				return result;
+			}
+
+			int offset1 = s1 + 2 + n1;
+			int offset2 = s2 + 2 + n2;
+
+			result = compareInts(readInt(b1, offset1), readInt(b2, offset2));
+
+			if (result != 0) {
+				return result;
+			}
+
+			return compareInts(readInt(b1, offset1 + 4), readInt(b2, offset2 + 4));
+		}
+
+		private static int compareInts(int a, int b) {
+			return a < b ? -1 : (a == b ? 0 : 1);
+		}
+	}
+
+	static { // register this comparator
+		WritableComparator.define(PositionKey.class, new Comparator());
+	}
+
+}
@@ -0,0 +1,63 @@
+package genepi.mut.objects;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+import org.apache.hadoop.conf.Configurable;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapreduce.Partitioner;
+
+/**
+ * Splits the (sorted) samples and their positions into contiguous ranges, one
+ * per reducer. Since keys are sorted within a reducer, the reducer outputs in
+ * partition order are sorted by sample and position and can be concatenated.
+ * Samples are read from "samples", samples missing there are hashed.
+ */
+public class PositionKeyPartitioner extends Partitioner<PositionKey, BasePositionHadoop> implements Configurable {
+
+	private Configuration conf;
+
+	private HashMap<String, Integer> samples = new HashMap<String, Integer>();
+
+	private int length;
+
+	@Override
+	public void setConf(Configuration conf) {
+
+		this.conf = conf;
+
+		length = Math.max(1, conf.getInt("referenceLength", 16569));
+
+		String[] names = conf.getStrings("samples", new String[0]);
+
+		Arrays.sort(names);
+
+		samples.clear();
+
+		for (int i = 0; i < names.length; i++) {
+			samples.put(names[i], i);
+		}
+	}
+
+	@Override
+	public Configuration getConf() {
+		return conf;
+	}
+
+	@Override
+	public int getPartition(PositionKey key, BasePositionHadoop value, int numPartitions) {
+
+		Integer sample = samples.get(key.getSample());
+
+		if (sample == null) {
+			return (key.getSample().hashCode() & Integer.MAX_VALUE) % numPartitions;
+		}
+
+		int position = Math.min(Math.max(key.getPosition(), 1), length) - 1;
+
+		long global = (long) sample * length + position;
+
+		return (int) (global * numPartitions / ((long) samples.size() * length));
+	}
+
+}
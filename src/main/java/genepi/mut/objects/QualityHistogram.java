@@ -0,0 +1,116 @@
+package genepi.mut.objects;
+
+/**
+ * Number of observed bases per Phred quality. Replaces the per-base quality
+ * lists, so memory and LLR calculation depend on the number of distinct
+ * qualities and not on coverage.
+ */
+public class QualityHistogram {
+
+	// covers all non-negative byte values (BAQ can cap up to 100)
+	public static final int MAX_QUALITY = 127;
+
+	private int[] counts;
+
+	private int total = 0;
+
+	private int minQuality = MAX_QUALITY + 1;
+
+	private int maxQuality = -1;
+
+	public void add(byte quality) {
+		add(quality, 1);
+	}
+
+	public void add(int quality, int count) {
+
+		if (count <= 0) {
+			return;
+		}
+
+		if (quality < 0) {
+			quality = 0;
+		} else if (quality > MAX_QUALITY) {
+			quality = MAX_QUALITY;
+		}
+
+		// allocated on first use, most alleles are never observed
+		if (counts == null) {
+			counts = new int[MAX_QUALITY + 1];
+		}
+
+		counts[quality] += count;
+		total += count;
+
+		if (quality < minQuality) {
+			minQuality = quality;
+		}
+
+		if (quality > maxQuality) {
+			maxQuality = quality;
+		}
+	}
+
+	public void add(QualityHistogram histogram) {
+
+		if (histogram == null || histogram.total == 0) {
+			return;
+		}
+
+		for (int q = histogram.minQuality; q <= histogram.maxQuality; q++) {
+			add(q, histogram.counts[q]);
+		}
+	}
+
+	public int getCount(int quality) {
+		if (counts == null || quality < 0 || quality > MAX_QUALITY) {
+			return 0;
+		}
+		return counts[quality];
+	}
+
+	public int getTotal() {
+		return total;
+	}
+
+	public boolean isEmpty() {
+		return total == 0;
+	}
+
+	// lowest observed quality, larger than getMaxQuality() if empty
+	public int getMinQuality() {
+		return minQuality;
+	}
+
+	public int getMaxQuality() {
+		return maxQuality;
+	}
+
+	// number of qualities with at least one observation
+	public int getDistinctQualities() {
+		int distinct = 0;
+		for (int q = minQuality; q <= maxQuality; q++) {
+			if (counts[q] > 0) {
+				distinct++;
+			}
+		}
+		return distinct;
+	}
+
+	// estimated heap size in bytes, the counts are only allocated on first use
+	public int getMemory() {
+		return counts == null ? 32 : 32 + 16 + 4 * (MAX_QUALITY + 1);
+	}
+
+	public void clear() {
+		if (counts != null && total > 0) {
+			for (int q = minQuality; q <= maxQuality; q++) {
+				counts[q] = 0;
+			}
+		}
+		total = 0;
+		minQuality = MAX_QUALITY + 1;
+		maxQuality = -1;
+	}
+
+}
@@ -1,10 +1,7 @@
 package genepi.mut.objects;
 
 import java.io.IOException;
-import java.text.DecimalFormat;
-import java.text.NumberFormat;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Locale;
 
 import genepi.io.table.reader.CsvTableReader;
@@ -20,11 +17,14 @@ public class VariantLine implements Comparable<VariantLine> {
 	private double llrFWD;
 	private double llrREV;
 
+	private LikelihoodEngine likelihoods;
+	private boolean likelihoodsComputed;
+
 	private char topBaseFWD;
 	private char topBaseREV;
 	private char minorBaseFWD;
 	private char minorBaseREV;
-	private ArrayList<Character> minors;
+	private ArrayList<Character> minors = new ArrayList<Character>();
 	private double aPercentageFWD;
 	private double cPercentageFWD;
 	private double gPercentageFWD;
@@ -77,14 +77,81 @@ public class VariantLine implements Comparable<VariantLine> {
 	private double CIAC_UP_FWD;
 	private double CIAC_LOW_REV;
 	private double CIAC_UP_REV;
-	NumberFormat df;
 
-	public VariantLine() {
+	// allele counts sorted in descending order, reused for every position
+	private int[] allelesFWD = new int[5];
+	private int[] allelesREV = new int[5];
+
+	static {
 		Locale.setDefault(new Locale("en", "US"));
-		df = DecimalFormat.getInstance(Locale.US);
-		df.setMinimumFractionDigits(2);
-		df.setMaximumFractionDigits(4);
-		df.setGroupingUsed(false);
+	}
+
+	/**
+	 * Clears all values so that one instance can be reused for many positions.
+	 */
+	public void reset() {
+		id = null;
+		position = 0;
+		ref = 0;
+		covFWD = 0;
+		covREV = 0;
+		topBaseFWD = 0;
+		topBaseREV = 0;
+		minorBaseFWD = 0;
+		minorBaseREV = 0;
+		minors.clear();
+		aPercentageFWD = 0;
+		cPercentageFWD = 0;
+		gPercentageFWD = 0;
+		tPercentageFWD = 0;
+		nPercentageFWD = 0;
+		dPercentageFWD = 0;
+		aPercentageREV = 0;
+		cPercentageREV = 0;
+		gPercentageREV = 0;
+		tPercentageREV = 0;
+		nPercentageREV = 0;
+		dPercentageREV = 0;
+		clearLlrs();
+		insPosition = null;
+		topBasePercentsFWD = 0;
+		minorBasePercentsFWD = 0;
+		topBasePercentsREV = 0;
+		minorBasePercentsREV = 0;
+		message = null;
+		type = 0;
+		varLevel = 0.0;
+		fwdOK = false;
+		revOK = false;
+		isInsertion = false;
+		isVariant = false;
+		oneSideVariant = false;
+		isDeletion = false;
+		isRevVariant = false;
+		CIW_LOW_FWD = 0;
+		CIW_UP_FWD = 0;
+		CIW_LOW_REV = 0;
+		CIW_UP_REV = 0;
+		CIAC_LOW_FWD = 0;
+		CIAC_UP_FWD = 0;
+		CIAC_LOW_REV = 0;
+		CIAC_UP_REV = 0;
+	}
+
+	private void clearLlrs() {
+		llrFWD = 0;
+		llrREV = 0;
+		llrAFWD = 0;
+		llrCFWD = 0;
+		llrGFWD = 0;
+		llrTFWD = 0;
+		llrAREV = 0;
+		llrCREV = 0;
+		llrGREV = 0;
+		llrTREV = 0;
+		llrDFWD = 0;
+		llrDREV = 0;
+		likelihoodsComputed = false;
 	}
 
 	public void parseLineFromFile(CsvTableReader cloudgeneReader) {
@@ -152,6 +219,8 @@ public class VariantLine implements Comparable<VariantLine> {
 		double nREVPercents = 0;
 		double dREVPercents = 0;
 
+		clearLlrs();
+
 		String id = base.getId();
 		int pos = base.getPos();
 		// set
@@ -213,41 +282,27 @@ public class VariantLine implements Comparable<VariantLine> {
 		this.setnPercentageREV(nREVPercents);
 		this.setdPercentageREV(dREVPercents);
 
-		ArrayList<Integer> allelesFWD = new ArrayList<Integer>();
-		allelesFWD.add(aFWD);
-		allelesFWD.add(cFWD);
-		allelesFWD.add(gFWD);
-		allelesFWD.add(tFWD);
-		allelesFWD.add(dFWD);
-
-		Collections.sort(allelesFWD, Collections.reverseOrder());
+		sortAlleles(allelesFWD, aFWD, cFWD, gFWD, tFWD, dFWD);
 		double topBasePercentsFWD = 0.0;
 		double minorBasePercentsFWD = 0.0;
 		
 		if (totalFWD > 0) {
 
-			topBasePercentsFWD = allelesFWD.get(0) / (double) totalFWD;
+			topBasePercentsFWD = allelesFWD[0] / (double) totalFWD;
 
-			minorBasePercentsFWD = allelesFWD.get(1) / (double) totalFWD;
+			minorBasePercentsFWD = allelesFWD[1] / (double) totalFWD;
 
 		}
 		
-		ArrayList<Integer> allelesREV = new ArrayList<Integer>();
-		allelesREV.add(aREV);
-		allelesREV.add(cREV);
-		allelesREV.add(gREV);
-		allelesREV.add(tREV);
-		allelesREV.add(dREV);
-
-		Collections.sort(allelesREV, Collections.reverseOrder());
+		sortAlleles(allelesREV, aREV, cREV, gREV, tREV, dREV);
 		double topBasePercentsREV = 0.0;
 		double minorBasePercentsREV = 0.0;
 
 		if (totalREV > 0) {
 
-			topBasePercentsREV = allelesREV.get(0) / (double) totalREV;
+			topBasePercentsREV = allelesREV[0] / (double) totalREV;
 
-			minorBasePercentsREV = allelesREV.get(1) / (double) totalREV;
+			minorBasePercentsREV = allelesREV[1] / (double) totalREV;
 
 		}
 		
@@ -312,12 +367,12 @@ public class VariantLine implements Comparable<VariantLine> {
 		minorBaseREV = detectMinorREV(minorBasePercentsREV);
 		this.setMinorBaseREV(minorBaseREV);
 		
-		minors = new ArrayList<>();
+		minors.clear();
 
 		// start with 1 and ignoring topbase!
 		for (int i = 1; i <= 4; i++) {
-			double minorPercentFWD = allelesFWD.get(i) / (double) totalFWD;
-			double minorPercentREV = allelesREV.get(i) / (double) totalREV;
+			double minorPercentFWD = allelesFWD[i] / (double) totalFWD;
+			double minorPercentREV = allelesREV[i] / (double) totalREV;
 			char minorFWD = detectMinorFWD(minorPercentFWD);
 			char minorREV = detectMinorREV(minorPercentREV);
 
@@ -334,48 +389,42 @@ public class VariantLine implements Comparable<VariantLine> {
 
 		// TODO combine this with LLR for all bases
 		if (minorBasePercentsFWD >= level || minorBasePercentsREV >= level) {
-			LlrObject llr = calcLlr(base, getMinorBaseFWD(), getMinorBaseREV());
-			this.setLlrFWD(llr.getLlrFWD());
-			this.setLlrREV(llr.getLlrREV());
+			this.setLlrFWD(likelihoods(base).getLlrFWD(getTopBaseFWD(), getMinorBaseFWD()));
+			this.setLlrREV(likelihoods(base).getLlrREV(getTopBaseREV(), getMinorBaseREV()));
 		}
 
 		if (getTopBaseFWD() != 'A') {
 			if ((aFWD / (double) totalFWD) >= level || (aREV / (double) totalREV) >= level) {
-				LlrObject llr = calcLlr(base, 'A');
-				this.setLlrAFWD(llr.getLlrFWD());
-				this.setLlrAREV(llr.getLlrREV());
+				this.setLlrAFWD(likelihoods(base).getLlrFWD(getTopBaseFWD(), 'A'));
+				this.setLlrAREV(likelihoods(base).getLlrREV(getTopBaseREV(), 'A'));
 			}
 		}
 
 		if (getTopBaseFWD() != 'C') {
 			if ((cFWD / (double) totalFWD) >= level || (cREV / (double) totalREV) >= level) {
-				LlrObject llr = calcLlr(base, 'C');
-				this.setLlrCFWD(llr.getLlrFWD());
-				this.setLlrCREV(llr.getLlrREV());
+				this.setLlrCFWD(likelihoods(base).getLlrFWD(getTopBaseFWD(), 'C'));
+				this.setLlrCREV(likelihoods(base).getLlrREV(getTopBaseREV(), 'C'));
 			}
 		}
 
 		if (getTopBaseFWD() != 'G') {
 			if ((gFWD / (double) totalFWD) >= level || (gREV / (double) totalREV) >= level) {
-				LlrObject llr = calcLlr(base, 'G');
-				this.setLlrGFWD(llr.getLlrFWD());
-				this.setLlrGREV(llr.getLlrREV());
+				this.setLlrGFWD(likelihoods(base).getLlrFWD(getTopBaseFWD(), 'G'));
+				this.setLlrGREV(likelihoods(base).getLlrREV(getTopBaseREV(), 'G'));
 			}
 		}
 
 		if (getTopBaseFWD() != 'T') {
 			if ((tFWD / (double) totalFWD) >= level || (tREV / (double) totalREV) >= level) {
-				LlrObject llr = calcLlr(base, 'T');
-				this.setLlrTFWD(llr.getLlrFWD());
-				this.setLlrTREV(llr.getLlrREV());
+				this.setLlrTFWD(likelihoods(base).getLlrFWD(getTopBaseFWD(), 'T'));
+				this.setLlrTREV(likelihoods(base).getLlrREV(getTopBaseREV(), 'T'));
 			}
 		}
 
 		if (getTopBaseFWD() != 'D') {
 			if ((dFWD / (double) totalFWD) >= level || (dREV / (double) totalREV) >= level) {
-				LlrObject llr = calcLlr(base, 'D');
-				this.setLlrDFWD(llr.getLlrFWD());
-				this.setLlrDREV(llr.getLlrREV());
+				this.setLlrDFWD(likelihoods(base).getLlrFWD(getTopBaseFWD(), 'D'));
+				this.setLlrDREV(likelihoods(base).getLlrREV(getTopBaseREV(), 'D'));
 			}
 		}
 	}
@@ -453,23 +502,34 @@ public class VariantLine implements Comparable<VariantLine> {
 		return '-';
 	}
 
-	private LlrObject calcLlr(BasePosition base, char minorBaseFWD) {
-		return calcLlr(base, minorBaseFWD, minorBaseFWD);
-	}
-
-	private LlrObject calcLlr(BasePosition base, char minorBaseFWD, char minorBaseREV) {
-
-		LlrObject llr = new LlrObject();
-		double fm0FWD = calcFirst(base);
-		double fm1FWD = calcFirst(base) + calcSecond(base, minorBaseFWD);
-
-		double fm0REV = calcFirstRev(base);
-		double fm1REV = calcFirstRev(base) + calcSecondR(base, minorBaseREV);
-
-		llr.setLlrFWD(Math.abs(fm1FWD - fm0FWD));
-		llr.setLlrREV(Math.abs(fm1REV - fm0REV));
-
-		return llr;
+	// all alleles and strands are computed on first use
+	private LikelihoodEngine likelihoods(BasePosition base) {
+		if (!likelihoodsComputed) {
+			if (likelihoods == null) {
+				likelihoods = new LikelihoodEngine();
+			}
+			likelihoods.compute(base, getTopBasePercentsFWD(), getTopBasePercentsREV());
+			likelihoodsComputed = true;
+		}
+		return likelihoods;
+	}
+
+	private static void sortAlleles(int[] alleles, int a, int c, int g, int t, int d) {
+		alleles[0] = a;
+		alleles[1] = c;
+		alleles[2] = g;
+		alleles[3] = t;
+		alleles[4] = d;
+		// insertion sort, descending
+		for (int i = 1; i < alleles.length; i++) {
+			int value = alleles[i];
+			int j = i - 1;
+			while (j >= 0 && alleles[j] < value) {
+				alleles[j + 1] = alleles[j];
+				j--;
+			}
+			alleles[j + 1] = value;
+		}
 	}
 
 	@Override
@@ -483,217 +543,53 @@ public class VariantLine implements Comparable<VariantLine> {
 	}
 
 	public double calcFirst(BasePosition base) {
-		char major = getTopBaseFWD();
-		double tmp = 0;
-		double f = getTopBasePercentsFWD();
-		switch (major) {
-		case 'A':
-			int aFWD = base.getaFor();
-			for (int i = 0; i < aFWD; i++) {
-				byte err = 20;
-				err = base.getaForQ().get(i);
-				double p = Math.pow(10, (-err / 10));
-				tmp = majorCalc(tmp, f, p);
-			}
-
-			break;
-		case 'C':
-			int cFWD = base.getcFor();
-			for (int i = 0; i < cFWD; i++) {
-				Byte err = base.getcForQ().get(i);
-				double p = Math.pow(10, (-err / 10));
-				tmp = majorCalc(tmp, f, p);
-			}
-			break;
-		case 'G':
-			int gFWD = base.getgFor();
-			for (int i = 0; i < gFWD; i++) {
-				Byte err = base.getgForQ().get(i);
-				double p = Math.pow(10, (-err / 10));
-				tmp = majorCalc(tmp, f, p);
-			}
-			break;
-		case 'T':
-			int tFWD = base.gettFor();
-			for (int i = 0; i < tFWD; i++) {
-				Byte err = base.gettForQ().get(i);
-				double p = Math.pow(10, (-err / 10));
-				tmp = majorCalc(tmp, f, p);
-			}
-			break;
-		case 'D':
-			int dFWD = base.getdFor();
-			for (int i = 0; i < dFWD; i++) {
-				Byte err = base.getdForQ().get(i);
-				double p = Math.pow(10, (-err / 10));
-				tmp = majorCalc(tmp, f, p);
-			}
-			break;
-		default:
-			break;
-		}
-		return tmp;
+		return LikelihoodEngine.major(getQualitiesFWD(base, getTopBaseFWD()), getTopBasePercentsFWD());
 	}
 
 	public double calcSecond(BasePosition base, char baseChar) {
-		char minor = baseChar;
-		double tmp = 0;
-		double f = getTopBasePercentsFWD();
-		switch (minor) {
-		case 'A':
-			int aFWD = base.getaFor();
-			for (int i = 0; i < aFWD; i++) {
-				Byte err = base.getaForQ().get(i);
-				double p = Math.pow(10, (-err / 10));
-				tmp = minorCalc(tmp, f, p);
-			}
-			break;
-		case 'C':
-			int cFWD = base.getcFor();
-			for (int i = 0; i < cFWD; i++) {
-				Byte err = base.getcForQ().get(i);
-				double p = Math.pow(10, (-err / 10));
-				tmp = minorCalc(tmp, f, p);
-			}
-			break;
-		case 'G':
-			int gFWD = base.getgFor();
-			for (int i = 0; i < gFWD; i++) {
-				Byte err = base.getgForQ().get(i);
-				double p = Math.pow(10, (-err / 10));
-				tmp = minorCalc(tmp, f, p);
-			}
-			break;
-		case 'T':
-			int tFWD = base.gettFor();
-			for (int i = 0; i < tFWD; i++) {
-				Byte err = base.gettForQ().get(i);
-				double p = Math.pow(10, (-err / 10));
-				tmp = minorCalc(tmp, f, p);
-			}
-			break;
-		case 'D':
-			int dFWD = base.getdFor();
-			for (int i = 0; i < dFWD; i++) {
-				Byte err = base.getdForQ().get(i);
-				double p = Math.pow(10, (-err / 10));
-				tmp = minorCalc(tmp, f, p);
-			}
-			break;
-		default:
-			break;
-		}
-		return tmp;
+		return LikelihoodEngine.minor(getQualitiesFWD(base, baseChar), getTopBasePercentsFWD());
 	}
 
-	private double majorCalc(double tmp, double f, double p) {
-		return tmp + Math.log(((1 - f) * p + f * (1 - p)));
+	public double calcFirstRev(BasePosition base) {
+		return LikelihoodEngine.major(getQualitiesREV(base, getTopBaseREV()), getTopBasePercentsREV());
 	}
 
-	private double minorCalc(double tmp, double f, double p) {
-		return tmp + Math.log(((1 - f) * (1 - p) + (f * p)));
+	public double calcSecondR(BasePosition base, char baseChar) {
+		return LikelihoodEngine.minor(getQualitiesREV(base, baseChar), getTopBasePercentsREV());
 	}
 
-	public double calcFirstRev(BasePosition base) {
-		char major = getTopBaseREV();
-		double tmp = 0;
-		double f = getTopBasePercentsREV();
-		switch (major) {
+	private QualityHistogram getQualitiesFWD(BasePosition base, char allele) {
+		switch (allele) {
 		case 'A':
-			int aREV = base.getaRev();
-			for (int i = 0; i < aREV; i++) {
-				Byte quality = base.getaRevQ().get(i);
-				double p = Math.pow(10, (-quality / 10));
-				tmp = majorCalc(tmp, f, p);
-			}
-			break;
+			return base.getaForQ();
 		case 'C':
-			int cREV = base.getcRev();
-			for (int i = 0; i < cREV; i++) {
-				Byte quality = base.getcRevQ().get(i);
-				double p = Math.pow(10, (-quality / 10));
-				tmp = majorCalc(tmp, f, p);
-			}
-			break;
+			return base.getcForQ();
 		case 'G':
-			int gREV = base.getgRev();
-			for (int i = 0; i < gREV; i++) {
-				Byte quality = base.getgRevQ().get(i);
-				double p = Math.pow(10, (-quality / 10));
-				tmp = majorCalc(tmp, f, p);
-			}
-			break;
+			return base.getgForQ();
 		case 'T':
-			int tREV = base.gettRev();
-			for (int i = 0; i < tREV; i++) {
-				Byte quality = base.gettRevQ().get(i);
-				double p = Math.pow(10, (-quality / 10));
-				tmp = majorCalc(tmp, f, p);
-			}
-			break;
+			return base.gettForQ();
 		case 'D':
-			int dREV = base.getdRev();
-			for (int i = 0; i < dREV; i++) {
-				Byte quality = base.getdRevQ().get(i);
-				double p = Math.pow(10, (-quality / 10));
-				tmp = majorCalc(tmp, f, p);
-			}
-			break;
+			return base.getdForQ();
 		default:
-			break;
+			return null;
 		}
-		return tmp;
 	}
 
-	public double calcSecondR(BasePosition base, char baseChar) {
-		char minor = baseChar;
-		double tmp = 0;
-		double f = getTopBasePercentsREV();
-		switch (minor) {
+	private QualityHistogram getQualitiesREV(BasePosition base, char allele) {
+		switch (allele) {
 		case 'A':
-			int aREV = base.getaRev();
-			for (int i = 0; i < aREV; i++) {
-				Byte quality = base.getaRevQ().get(i);
-				double p = Math.pow(10, (-quality / 10));
-				tmp = minorCalc(tmp, f, p);
-			}
-			break;
+			return base.getaRevQ();
 		case 'C':
-			int cREV = base.getcRev();
-			for (int i = 0; i < cREV; i++) {
-				Byte quality = base.getcRevQ().get(i);
-				double p = Math.pow(10, (-quality / 10));
-				tmp = minorCalc(tmp, f, p);
-			}
-			break;
+			return base.getcRevQ();
 		case 'G':
-			int gREV = base.getgRev();
-			for (int i = 0; i < gREV; i++) {
-				Byte quality = base.getgRevQ().get(i);
-				double p = Math.pow(10, (-quality / 10));
-				tmp = minorCalc(tmp, f, p);
-			}
-			break;
+			return base.getgRevQ();
 		case 'T':
-			int tREV = base.gettRev();
-			for (int i = 0; i < tREV; i++) {
-				Byte quality = base.gettRevQ().get(i);
-				double p = Math.pow(10, (-quality / 10));
-				tmp = minorCalc(tmp, f, p);
-			}
-			break;
+			return base.gettRevQ();
 		case 'D':
-			int dREV = base.getdRev();
-			for (int i = 0; i < dREV; i++) {
-				Byte quality = base.getdRevQ().get(i);
-				double p = Math.pow(10, (-quality / 10));
-				tmp = minorCalc(tmp, f, p);
-			}
-			break;
+			return base.getdRevQ();
 		default:
-			break;
+			return null;
 		}
-		return tmp;
 	}
 
 	public String getId() {
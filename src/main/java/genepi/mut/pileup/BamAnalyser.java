@@ -3,10 +3,15 @@ package genepi.mut.pileup;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Path;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.List;
+
 import org.broadinstitute.gatk.utils.baq.BAQ;
 import genepi.mut.objects.BasePosition;
+import genepi.mut.objects.Pileup;
 import genepi.mut.util.BaqAlt;
+import genepi.mut.util.BaqEngine;
+import genepi.mut.util.ReferenceProvider;
 import genepi.mut.util.ReferenceUtil;
 import htsjdk.samtools.CigarElement;
 import htsjdk.samtools.CigarOperator;
@@ -17,14 +22,18 @@ import htsjdk.samtools.reference.IndexedFastaSequenceFile;
 
 public class BamAnalyser {
 
-	final static String headerRaw = "SAMPLE\tPOS\tREF\tTOP-FWD\tMINOR-FWD\tTOP-REV\tMINOR-REV\tCOV-FWD\tCOV-REV\tCOV-TOTAL\tTYPE\tLEVEL\t%A\t%C\t%G\t%T\t%D\t%N\t%a\t%c\t%g\t%t\t%d\t%n\tTOP-FWD-PERCENT\tTOP-REV-PERCENT\tMINOR-FWD-PERCENT\tMINOR-REV-PERCENT\tLLRFWD\tLLRREV\tLLRAFWD\tLLRCFWD\tLLRGFWD\tLLRTFWD\tLLRAREV\tLLRCREV\tLLRGREV\tLLRTREV\tLLRDFWD\tLLRDREV\tMINORS";
+	public final static String headerRaw = "SAMPLE\tPOS\tREF\tTOP-FWD\tMINOR-FWD\tTOP-REV\tMINOR-REV\tCOV-FWD\tCOV-REV\tCOV-TOTAL\tTYPE\tLEVEL\t%A\t%C\t%G\t%T\t%D\t%N\t%a\t%c\t%g\t%t\t%d\t%n\tTOP-FWD-PERCENT\tTOP-REV-PERCENT\tMINOR-FWD-PERCENT\tMINOR-REV-PERCENT\tLLRFWD\tLLRREV\tLLRAFWD\tLLRCFWD\tLLRGFWD\tLLRTFWD\tLLRAREV\tLLRCREV\tLLRGREV\tLLRTREV\tLLRDFWD\tLLRDREV\tMINORS";
 
-	final static String headerVariants = "ID\tPos\tRef\tVariant\tVariantLevel\tMajorBase\tMajorLevel\tMinorBase\tMinorLevel\tCoverage\tType";
+	public final static String headerVariants = "ID\tPos\tRef\tVariant\tVariantLevel\tMajorBase\tMajorLevel\tMinorBase\tMinorLevel\tCoverage\tType";
 
-	HashMap<String, BasePosition> counts;
+	Pileup pileup;
 
 	IndexedFastaSequenceFile refReader;
 
+	ReferenceProvider reference;
+
+	String fastaPath;
+
 	String filename;
 
 	String referenceString;
@@ -45,6 +54,10 @@ public class BamAnalyser {
 
 	boolean baq;
 
+	BaqEngine baqEngine;
+
+	ReadQC qc;
+
 	enum versionEnum {
 
 		MTDNA, GENOME
@@ -60,30 +73,24 @@ public class BamAnalyser {
 	public BamAnalyser(String filename, String fastaPath, int baseQual, int mapQual, int alignQual, boolean baq,
 			int minCoverage, String version) {
 
-		Path path = new File(fastaPath).toPath();
-
-		FastaSequenceIndex fg;
-
-		try {
-			if (!new File(fastaPath + ".fai").exists()) {
+		this(filename, fastaPath, readReference(fastaPath), baseQual, mapQual, alignQual, baq, minCoverage, version);
 
-				fg = FastaSequenceIndexCreator.buildFromFasta(path);
+	}
 
-				fg.write(new File(fastaPath + ".fai").toPath());
+	// referenceString is the content of fastaPath (see readReference), so
+	// analysers of the same sample can share it
+	public BamAnalyser(String filename, String fastaPath, String referenceString, int baseQual, int mapQual,
+			int alignQual, boolean baq, int minCoverage, String version) {
 
-			}
+		this.fastaPath = fastaPath;
 
-		} catch (IOException e2) {
-			// TODO Auto-generated catch block
-			e2.printStackTrace();
-		}
+		this.referenceString = referenceString;
 
-		this.referenceString = ReferenceUtil.readInReference(fastaPath);
+		this.reference = new ReferenceProvider(referenceString);
 
-		this.refReader = new IndexedFastaSequenceFile(new File(fastaPath),
-				new FastaSequenceIndex(new File(fastaPath + ".fai")));
+		this.pileup = new Pileup(referenceString.length());
 
-		this.counts = new HashMap<String, BasePosition>(referenceString.length());
+		this.qc = new ReadQC(referenceString.length());
 
 		this.baseQual = baseQual;
 
@@ -110,161 +117,232 @@ public class BamAnalyser {
 
 	}
 
-	public HashMap<String, BasePosition> getCounts() {
-		return counts;
+	// creates the fasta index if needed and reads the reference
+	public static String readReference(String fastaPath) {
+
+		Path path = new File(fastaPath).toPath();
+
+		FastaSequenceIndex fg;
+
+		try {
+			if (!new File(fastaPath + ".fai").exists()) {
+
+				fg = FastaSequenceIndexCreator.buildFromFasta(path);
+
+				fg.write(new File(fastaPath + ".fai").toPath());
+
+			}
+
+		} catch (IOException e2) {
+			// TODO Auto-generated catch block
+			e2.printStackTrace();
+		}
+
+		return ReferenceUtil.readInReference(fastaPath);
+	}
+
+	// the file is only opened for reads of other sequences than the reference
+	private IndexedFastaSequenceFile getRefReader() {
+
+		if (refReader == null) {
+			refReader = new IndexedFastaSequenceFile(new File(fastaPath),
+					new FastaSequenceIndex(new File(fastaPath + ".fai")));
+		}
+
+		return refReader;
+	}
+
+	public void close() throws IOException {
+
+		if (refReader != null) {
+			refReader.close();
+			refReader = null;
+		}
+	}
+
+	public BaqEngine getBaqEngine() {
+		return baqEngine;
+	}
+
+	public void setBaqEngine(BaqEngine baqEngine) {
+		this.baqEngine = baqEngine;
+	}
+
+	public Pileup getPileup() {
+		return pileup;
 	}
 
-	public void setCounts(HashMap<String, BasePosition> counts) {
-		this.counts = counts;
+	public void setPileup(Pileup pileup) {
+		this.pileup = pileup;
+	}
+
+	public ReadQC getQC() {
+		return qc;
 	}
 
 	public void analyseRead(SAMRecord samRecord, boolean deletions, boolean insertions) throws Exception {
 
-		if (samRecord.getMappingQuality() < mapQual) {
+		int filter = filterRead(samRecord);
+
+		qc.addRead(samRecord, filter, filter == ReadQC.PASSED && !reference.isReferenceOf(samRecord));
+
+		if (filter != ReadQC.PASSED) {
 			return;
 		}
 
+		if (baq) {
+			baqRead(samRecord);
+		}
+
+		countRead(samRecord, deletions, insertions);
+	}
+
+	// BAQ of a whole batch runs in parallel on the engine, if one is set
+	public void analyseReads(List<SAMRecord> samRecords, boolean deletions, boolean insertions) throws Exception {
+
+		List<SAMRecord> validRecords = new ArrayList<SAMRecord>(samRecords.size());
+
+		for (SAMRecord samRecord : samRecords) {
+
+			int filter = filterRead(samRecord);
+
+			qc.addRead(samRecord, filter, filter == ReadQC.PASSED && !reference.isReferenceOf(samRecord));
+
+			if (filter == ReadQC.PASSED) {
+				validRecords.add(samRecord);
+			}
+		}
+
+		if (baq) {
+
+			if (baqEngine != null) {
+				baqEngine.baqReads(validRecords);
+			} else {
+				for (SAMRecord samRecord : validRecords) {
+					baqRead(samRecord);
+				}
+			}
+		}
+
+		for (SAMRecord samRecord : validRecords) {
+			countRead(samRecord, deletions, insertions);
+		}
+	}
+
+	// first failing filter of the read (see ReadQC) or ReadQC.PASSED
+	private int filterRead(SAMRecord samRecord) {
+
+		if (samRecord.getMappingQuality() < mapQual) {
+			return ReadQC.BAD_MAPPING;
+		}
+
 		if (samRecord.getReadUnmappedFlag()) {
-			return;
+			return ReadQC.UNMAPPED;
 		}
 
 		if (samRecord.getDuplicateReadFlag()) {
-			return;
+			return ReadQC.DUPLICATE;
 		}
 
 		if (samRecord.getReadLength() <= 25) {
-			return;
+			return ReadQC.SHORT_READ;
 		}
 
-		if (ReferenceUtil.getTagFromSamRecord(samRecord.getAttributes(), "AS") < alignQual) {
-			return;
+		if (ReferenceUtil.getTagFromSamRecord(samRecord, "AS") < alignQual) {
+			return ReadQC.BAD_ALIGNMENT;
 		}
 
-		if (baq) {
+		return ReadQC.PASSED;
+	}
 
-			if (version.equalsIgnoreCase(versionEnum.MTDNA.name())) {
+	private void baqRead(SAMRecord samRecord) {
 
-				baqHMMAltered.baqRead(samRecord, refReader,
+		// reference windows come from memory, the file is only used for other sequences
+		boolean inMemory = reference.isReferenceOf(samRecord);
+
+		if (version.equalsIgnoreCase(versionEnum.MTDNA.name())) {
+
+			if (inMemory) {
+				baqHMMAltered.baqRead(samRecord, reference,
 						genepi.mut.util.BaqAlt.CalculationMode.CALCULATE_AS_NECESSARY,
 						genepi.mut.util.BaqAlt.QualityMode.OVERWRITE_QUALS);
-
 			} else {
+				baqHMMAltered.baqRead(samRecord, getRefReader(),
+						genepi.mut.util.BaqAlt.CalculationMode.CALCULATE_AS_NECESSARY,
+						genepi.mut.util.BaqAlt.QualityMode.OVERWRITE_QUALS);
+			}
+
+		} else {
 
-				baqHMM.baqRead(samRecord, refReader,
+			if (inMemory) {
+				BaqEngine.baqRead(baqHMM, samRecord, reference);
+			} else {
+				baqHMM.baqRead(samRecord, getRefReader(),
 						org.broadinstitute.gatk.utils.baq.BAQ.CalculationMode.CALCULATE_AS_NECESSARY,
 						org.broadinstitute.gatk.utils.baq.BAQ.QualityMode.OVERWRITE_QUALS);
-
 			}
+
 		}
+	}
 
-		String readString = samRecord.getReadString();
+	// walks the cigar once and counts matched bases, deletions and insertions
+	// directly from the raw read bases
+	private void countRead(SAMRecord samRecord, boolean deletions, boolean insertions) {
 
-		for (int i = 0; i < readString.length(); i++) {
+		byte[] bases = samRecord.getReadBases();
 
-			int currentPos = samRecord.getReferencePositionAtReadPosition(i + 1);
+		byte[] qualities = samRecord.getBaseQualities();
 
-			// if e.g softclips/insertions are included pos is 0, so skip them
-			// immediately!
-			if (currentPos > 0) {
+		boolean reverse = (samRecord.getFlags() & 0x10) == 0x10;
 
-				if (samRecord.getBaseQualities()[i] >= baseQual) {
+		int currentReferencePos = samRecord.getAlignmentStart();
 
-					String key = filename + ":" + currentPos;
+		int sequencePos = 0;
 
-					BasePosition basePos = counts.get(key);
+		for (CigarElement cigarElement : samRecord.getCigar().getCigarElements()) {
 
-					if (basePos == null) {
-						basePos = new BasePosition();
-						counts.put(key, basePos);
-					}
+			CigarOperator operator = cigarElement.getOperator();
 
-					char base = readString.charAt(i);
-
-					if ((samRecord.getFlags() & 0x10) == 0x10) {
-						// context.getCounter("mtdna", "REV-READ").increment(1);
-						switch (base) {
-						case 'A':
-							basePos.addaRev(1);
-							basePos.addaRevQ(samRecord.getBaseQualities()[i]);
-							break;
-						case 'C':
-							basePos.addcRev(1);
-							basePos.addcRevQ(samRecord.getBaseQualities()[i]);
-							break;
-						case 'G':
-							basePos.addgRev(1);
-							basePos.addgRevQ(samRecord.getBaseQualities()[i]);
-							break;
-						case 'T':
-							basePos.addtRev(1);
-							basePos.addtRevQ(samRecord.getBaseQualities()[i]);
-							break;
-						case 'N':
-							basePos.addnRev(1);
-							break;
-						default:
-							break;
-						}
-					} else {
-						// context.getCounter("mtdna", "FWD-READ").increment(1);
-						switch (base) {
-						case 'A':
-							basePos.addaFor(1);
-							basePos.addaForQ(samRecord.getBaseQualities()[i]);
-							break;
-						case 'C':
-							basePos.addcFor(1);
-							basePos.addcForQ(samRecord.getBaseQualities()[i]);
-							break;
-						case 'G':
-							basePos.addgFor(1);
-							basePos.addgForQ(samRecord.getBaseQualities()[i]);
-							break;
-						case 'T':
-							basePos.addtFor(1);
-							basePos.addtForQ(samRecord.getBaseQualities()[i]);
-							break;
-						case 'N':
-							basePos.addnFor(1);
-							break;
-						default:
-							break;
-						}
-					}
+			int length = cigarElement.getLength();
 
-				} // end base quality
-			}
-		}
+			switch (operator) {
 
-		if (deletions || insertions) {
+			case M:
+			case EQ:
+			case X:
 
-			Integer currentReferencePos = samRecord.getAlignmentStart();
+				for (int i = 0; i < length; i++) {
 
-			int sequencePos = 0;
+					byte quality = qualities[sequencePos + i];
 
-			for (CigarElement cigarElement : samRecord.getCigar().getCigarElements()) {
+					qc.addBaseQuality(quality);
 
-				Integer cigarElementLength = cigarElement.getLength();
+					if (quality >= baseQual) {
 
-				if (deletions && cigarElement.getOperator() == CigarOperator.D) {
+						// outside of reference (e.g. circular reads), ignored by variant calling
+						BasePosition basePos = pileup.getOrCreate(currentReferencePos + i);
 
-					// start of D is currentRefPos: Don't add 1 before!
-					Integer cigarElementStart = currentReferencePos;
+						if (basePos != null) {
+							countBase(basePos, bases[sequencePos + i], quality, reverse);
+						}
+					}
+				}
+				break;
 
-					Integer cigarElementEnd = currentReferencePos + cigarElementLength;
+			case D:
 
-					while (cigarElementStart < cigarElementEnd) {
+				if (deletions) {
 
-						String key = filename + ":" + cigarElementStart;
+					// start of D is currentRefPos: Don't add 1 before!
+					for (int i = 0; i < length; i++) {
 
-						BasePosition basePos = counts.get(key);
+						BasePosition basePos = pileup.getOrCreate(currentReferencePos + i);
 
 						if (basePos == null) {
-							basePos = new BasePosition();
-							counts.put(key, basePos);
+							continue;
 						}
 
-						if ((samRecord.getFlags() & 0x10) == 0x10) {
+						if (reverse) {
 							basePos.adddRev(1);
 							// no quality for missing value, set fake for our
 							// LLR model
@@ -273,103 +351,95 @@ public class BamAnalyser {
 							basePos.adddFor(1);
 							basePos.adddForQ((byte) 40);
 						}
-
-						cigarElementStart++;
 					}
-
 				}
+				break;
+
+			case I:
 
-				if (insertions && cigarElement.getOperator() == CigarOperator.I) {
+				if (insertions) {
 
 					// returns e.g. 310 but Insertion need to be added to last pos (so 309)
 					int currentReferencePosIns = currentReferencePos - 1;
 
-					int i = 1;
-
-					int length = cigarElement.getLength();
-
-					while (i <= length) {
-
-						char insBase = samRecord.getReadString().charAt(sequencePos + i - 1);
-
-						byte quality = samRecord.getBaseQualities()[sequencePos + i - 1];
-
-						String key = filename + ":" + currentReferencePosIns + "." + i;
-
-						BasePosition basePos = counts.get(key);
+					for (int i = 1; i <= length; i++) {
 
-						i++;
+						BasePosition basePos = pileup.getOrCreateInsertion(currentReferencePosIns, i);
 
-						if (basePos == null) {
-							basePos = new BasePosition();
-							counts.put(key, basePos);
-						}
-
-						if ((samRecord.getFlags() & 0x10) == 0x10) {
-
-							switch (insBase) {
-							case 'A':
-								basePos.addaRev(1);
-								basePos.addaRevQ(quality);
-								break;
-							case 'C':
-								basePos.addcRev(1);
-								basePos.addcRevQ(quality);
-								break;
-							case 'G':
-								basePos.addgRev(1);
-								basePos.addgRevQ(quality);
-								break;
-							case 'T':
-								basePos.addtRev(1);
-								basePos.addtRevQ(quality);
-								break;
-							case 'N':
-								basePos.addnRev(1);
-								break;
-							default:
-								break;
-							}
-						} else {
-
-							switch (insBase) {
-							case 'A':
-								basePos.addaFor(1);
-								basePos.addaForQ(quality);
-								break;
-							case 'C':
-								basePos.addcFor(1);
-								basePos.addcForQ(quality);
-								break;
-							case 'G':
-								basePos.addgFor(1);
-								basePos.addgForQ(quality);
-								break;
-							case 'T':
-								basePos.addtFor(1);
-								basePos.addtForQ(quality);
-								break;
-							case 'N':
-								basePos.addnFor(1);
-								break;
-							default:
-								break;
-							}
+						if (basePos != null) {
+							countBase(basePos, bases[sequencePos + i - 1], qualities[sequencePos + i - 1], reverse);
 						}
 					}
 				}
+				break;
 
-				// only M and D operators consume bases
-				if (cigarElement.getOperator().consumesReferenceBases()) {
-					currentReferencePos = currentReferencePos + cigarElement.getLength();
-				}
+			default:
+				// soft clips are skipped, hard clips and padding consume nothing
+				break;
+			}
 
-				// give back current readPos, only increase if read bases are consumed!
-				if (cigarElement.getOperator().consumesReadBases()) {
-					sequencePos = sequencePos + cigarElement.getLength();
-				}
+			// only M and D operators consume bases
+			if (operator.consumesReferenceBases()) {
+				currentReferencePos = currentReferencePos + length;
 			}
 
+			// give back current readPos, only increase if read bases are consumed!
+			if (operator.consumesReadBases()) {
+				sequencePos = sequencePos + length;
+			}
+		}
+	}
+
+	private void countBase(BasePosition basePos, byte base, byte quality, boolean reverse) {
+
+		if (reverse) {
+			switch (base) {
+			case 'A':
+				basePos.addaRev(1);
+				basePos.addaRevQ(quality);
+				break;
+			case 'C':
+				basePos.addcRev(1);
+				basePos.addcRevQ(quality);
+				break;
+			case 'G':
+				basePos.addgRev(1);
+				basePos.addgRevQ(quality);
+				break;
+			case 'T':
+				basePos.addtRev(1);
+				basePos.addtRevQ(quality);
+				break;
+			case 'N':
+				basePos.addnRev(1);
+				break;
+			default:
+				break;
+			}
+		} else {
+			switch (base) {
+			case 'A':
+				basePos.addaFor(1);
+				basePos.addaForQ(quality);
+				break;
+			case 'C':
+				basePos.addcFor(1);
+				basePos.addcForQ(quality);
+				break;
+			case 'G':
+				basePos.addgFor(1);
+				basePos.addgForQ(quality);
+				break;
+			case 'T':
+				basePos.addtFor(1);
+				basePos.addtForQ(quality);
+				break;
+			case 'N':
+				basePos.addnFor(1);
+				break;
+			default:
+				break;
+			}
 		}
 	}
 
@@ -381,6 +451,10 @@ public class BamAnalyser {
 		this.referenceString = referenceString;
 	}
 
+	public String getFilename() {
+		return filename;
+	}
+
 	public void setFilename(String filename) {
 		this.filename = filename;
 	}
@@ -0,0 +1,157 @@
+package genepi.mut.pileup;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import org.apache.hadoop.io.WritableUtils;
+
+import genepi.mut.objects.BasePosition;
+import genepi.mut.objects.BasePositionHadoop;
+import genepi.mut.objects.Pileup;
+
+/**
+ * Binary dump of the pileup of one sample, so that variants can be called
+ * again (e.g. with another --level) without reading the BAM file. After a
+ * header (magic, version, key, pileup length) each entry is written as
+ * position, insertion index (0 for the position itself) and the
+ * BasePositionHadoop format; position 0 ends the file. The key holds all
+ * settings that change the pileup, checkpoints with another key are ignored.
+ */
+public class PileupCheckpoint {
+
+	public static final String MAGIC = "mutserve-pileup";
+
+	public static final int VERSION = 1;
+
+	public static void write(File file, Pileup pileup, String key) throws IOException {
+
+		// written to a temp file first, an interrupted run leaves no checkpoint
+		File tmp = new File(file.getPath() + ".tmp");
+
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+
+		try {
+
+			out.writeUTF(MAGIC);
+			out.writeInt(VERSION);
+			out.writeUTF(key);
+			WritableUtils.writeVInt(out, pileup.getLength());
+
+			BasePositionHadoop value = new BasePositionHadoop();
+
+			for (int pos = 1; pos <= pileup.getLength(); pos++) {
+
+				writeEntry(out, pos, 0, pileup.get(pos), value);
+
+				for (int i = 1; i <= pileup.getInsertionCount(pos); i++) {
+					writeEntry(out, pos, i, pileup.getInsertion(pos, i), value);
+				}
+			}
+
+			WritableUtils.writeVInt(out, 0);
+
+		} finally {
+			out.close();
+		}
+
+		Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	// true if the checkpoint exists and was written with the same key
+	public static boolean matches(File file, String key) {
+
+		if (!file.exists()) {
+			return false;
+		}
+
+		try {
+
+			DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+
+			try {
+				return readHeader(in, key);
+			} finally {
+				in.close();
+			}
+
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	// returns null if the checkpoint was written with another key
+	public static Pileup read(File file, String key) throws IOException {
+
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+
+		try {
+
+			if (!readHeader(in, key)) {
+				return null;
+			}
+
+			Pileup pileup = new Pileup(WritableUtils.readVInt(in));
+
+			BasePositionHadoop value = new BasePositionHadoop();
+
+			int pos;
+
+			while ((pos = WritableUtils.readVInt(in)) != 0) {
+
+				int index = WritableUtils.readVInt(in);
+
+				BasePosition basePos;
+
+				if (index == 0) {
+					basePos = pileup.getOrCreate(pos);
+				} else {
+					basePos = pileup.getOrCreateInsertion(pos, index);
+				}
+
+				if (basePos == null) {
+					throw new IOException("Position " + pos + " outside of pileup in " + file.getName());
+				}
+
+				value.setBasePosition(basePos);
+				value.readFields(in);
+			}
+
+			return pileup;
+
+		} finally {
+			in.close();
+		}
+	}
+
+	private static boolean readHeader(DataInputStream in, String key) throws IOException {
+		try {
+			return MAGIC.equals(in.readUTF()) && in.readInt() == VERSION && key.equals(in.readUTF());
+		} catch (EOFException e) {
+			return false;
+		}
+	}
+
+	private static void writeEntry(DataOutputStream out, int pos, int index, BasePosition basePos,
+			BasePositionHadoop value) throws IOException {
+
+		if (basePos == null) {
+			return;
+		}
+
+		WritableUtils.writeVInt(out, pos);
+		WritableUtils.writeVInt(out, index);
+
+		value.setBasePosition(basePos);
+		value.write(out);
+	}
+
+}
@@ -0,0 +1,238 @@
+package genepi.mut.pileup;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapreduce.TaskInputOutputContext;
+
+import genepi.hadoop.PreferenceStore;
+import genepi.mut.objects.BasePosition;
+import genepi.mut.objects.BasePositionHadoop;
+import genepi.mut.objects.Pileup;
+import genepi.mut.objects.PositionKey;
+import htsjdk.samtools.SAMRecord;
+
+/**
+ * In-task pileup of the reads seen by a map or reduce task, one analyser per
+ * sample. Positions are emitted as partial pileups (PositionKey,
+ * BasePositionHadoop) when the pileups of all samples exceed the memory bound
+ * and when the task ends, the QC of all analysers is reported as counters.
+ * Used by PileupMapper and by the aligners in pileup mode.
+ */
+public class PileupCollector {
+
+	// reads between two estimates of the pileup memory
+	static final int CHECK_INTERVAL = 1000;
+
+	private Map<String, BamAnalyser> analysers = new LinkedHashMap<String, BamAnalyser>();
+
+	// last estimate per analyser, only analysers that got reads are estimated again
+	private Map<BamAnalyser, Long> memory = new HashMap<BamAnalyser, Long>();
+
+	private Set<BamAnalyser> changed = new HashSet<BamAnalyser>();
+
+	private long totalMemory;
+
+	private int reads;
+
+	private String fastaPath;
+
+	private String version;
+
+	private int baseQual;
+
+	private int mapQual;
+
+	private int alignQual;
+
+	private int minCoverage;
+
+	private boolean baq;
+
+	private boolean deletions;
+
+	private boolean insertions;
+
+	// all pileups are flushed when their estimated heap size is larger
+	private long pileupMemory;
+
+	private PositionKey outKey = new PositionKey();
+
+	private BasePositionHadoop baseHadoop = new BasePositionHadoop();
+
+	public PileupCollector(Configuration conf, String fastaPath) {
+
+		this.fastaPath = fastaPath;
+
+		version = new PreferenceStore(conf).getString("server.version");
+
+		baseQual = conf.getInt("baseQual", 20);
+
+		mapQual = conf.getInt("mapQual", 20);
+
+		alignQual = conf.getInt("alignQual", 30);
+
+		minCoverage = conf.getInt("minCoverage", 30);
+
+		baq = conf.getBoolean("baq", true);
+
+		//default is to ignore deletions
+		deletions = conf.getBoolean("deletions", false);
+		//default is to ignore insertions
+		insertions = conf.getBoolean("insertions", false);
+
+		// memory ceiling of the in-task pileup in MB, default a quarter of the heap
+		pileupMemory = conf.getLong("pileupMemory", 0) * 1024 * 1024;
+
+		if (pileupMemory <= 0) {
+			pileupMemory = Runtime.getRuntime().maxMemory() / 4;
+		}
+	}
+
+	public BamAnalyser getAnalyser(String sample) {
+
+		BamAnalyser analyser = analysers.get(sample);
+
+		if (analyser == null) {
+			analyser = new BamAnalyser(sample, fastaPath, baseQual, mapQual, alignQual, baq, minCoverage, version);
+			analysers.put(sample, analyser);
+		}
+
+		return analyser;
+	}
+
+	public void analyseRead(String sample, SAMRecord samRecord,
+			TaskInputOutputContext<?, ?, ? super PositionKey, ? super BasePositionHadoop> context)
+			throws IOException, InterruptedException {
+
+		BamAnalyser analyser = getAnalyser(sample);
+
+		try {
+
+			//analyse SAM read
+			analyser.analyseRead(samRecord, deletions, insertions);
+
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+
+		changed.add(analyser);
+
+		reads++;
+
+		if (reads % CHECK_INTERVAL != 0) {
+			return;
+		}
+
+		// the estimate follows the allocated quality histograms
+		for (BamAnalyser update : changed) {
+			long estimate = update.getPileup().getMemory();
+			Long last = memory.put(update, estimate);
+			totalMemory += estimate - (last == null ? 0 : last);
+		}
+
+		changed.clear();
+
+		// partial pileups are merged by the reducer
+		if (totalMemory > pileupMemory) {
+
+			context.getCounter("mtdna", "PILEUP-FLUSHES").increment(1);
+
+			totalMemory = 0;
+
+			for (BamAnalyser flushed : analysers.values()) {
+				flush(flushed, context);
+				long estimate = flushed.getPileup().getMemory();
+				memory.put(flushed, estimate);
+				totalMemory += estimate;
+			}
+		}
+	}
+
+	// reports the QC and emits all remaining positions
+	public void close(TaskInputOutputContext<?, ?, ? super PositionKey, ? super BasePositionHadoop> context)
+			throws IOException, InterruptedException {
+
+		for (BamAnalyser analyser : analysers.values()) {
+			countStats(context, analyser.getQC());
+			flush(analyser, context);
+			analyser.close();
+		}
+	}
+
+	// emits the merged positions in position order and starts an empty pileup
+	private void flush(BamAnalyser analyser,
+			TaskInputOutputContext<?, ?, ? super PositionKey, ? super BasePositionHadoop> context)
+			throws IOException, InterruptedException {
+
+		Pileup pileup = analyser.getPileup();
+
+		String sample = analyser.getFilename();
+
+		for (int pos = 1; pos <= pileup.getLength(); pos++) {
+
+			BasePosition basePos = pileup.get(pos);
+
+			if (basePos != null) {
+
+				outKey.set(sample, pos, 0);
+
+				baseHadoop.setBasePosition(basePos);
+
+				context.write(outKey, baseHadoop);
+			}
+
+			for (int i = 1; i <= pileup.getInsertionCount(pos); i++) {
+
+				BasePosition insPos = pileup.getInsertion(pos, i);
+
+				if (insPos != null) {
+
+					outKey.set(sample, pos, i);
+
+					baseHadoop.setBasePosition(insPos);
+
+					context.write(outKey, baseHadoop);
+				}
+			}
+
+		}
+
+		pileup.clear();
+
+	}
+
+	// filters are evaluated once by the analyser, its QC is reported as counters
+	private void countStats(TaskInputOutputContext<?, ?, ?, ?> context, ReadQC qc) {
+
+		context.getCounter("mtdna", "OVERALL-READS").increment(qc.getOverall());
+		context.getCounter("mtdna", "FILTERED").increment(qc.getFiltered());
+		context.getCounter("mtdna", "UNFILTERED").increment(qc.getUnfiltered());
+
+		for (int filter = 0; filter < ReadQC.FILTERS.length; filter++) {
+			context.getCounter("mtdna", ReadQC.FILTERS[filter]).increment(qc.getFiltered(filter));
+		}
+
+		// mapping quality is the first filter
+		context.getCounter("mtdna", "GOOD-MAPPING").increment(qc.getOverall() - qc.getFiltered(ReadQC.BAD_MAPPING));
+		context.getCounter("mtdna", "WRONG-REF").increment(qc.getWrongReference());
+
+		// aligned bases of passed reads, below baseQual they are not counted
+		context.getCounter("mtdna", "GOOD-QUAL").increment(qc.getBases(baseQual));
+		context.getCounter("mtdna", "BAD-QUAL").increment(qc.getBases() - qc.getBases(baseQual));
+
+		context.getCounter("mtdna", "FWD-READ").increment(qc.getFwdReads());
+		context.getCounter("mtdna", "REV-READ").increment(qc.getRevReads());
+		context.getCounter("mtdna", "BASES").increment(qc.getBases());
+		context.getCounter("mtdna", "BASE-QUALITY-SUM").increment(qc.getBaseQualitySum());
+		context.getCounter("mtdna", "PAIRS").increment(qc.getPairs());
+		context.getCounter("mtdna", "INSERT-SIZE-SUM").increment(qc.getInsertSizeSum());
+
+	}
+
+}
@@ -1,10 +1,25 @@
 package genepi.mut.pileup;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
-
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.PathFilter;
+import org.apache.hadoop.io.IOUtils;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.CounterGroup;
 import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.lib.input.SequenceFileInputFormat;
 import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
 import org.seqdoop.hadoop_bam.AnySAMInputFormat;
 
@@ -13,12 +28,16 @@ import genepi.hadoop.HadoopJob;
 import genepi.hadoop.HdfsUtil;
 import genepi.mut.align.AlignStep;
 import genepi.mut.objects.BasePositionHadoop;
+import genepi.mut.objects.PositionKey;
+import genepi.mut.objects.PositionKeyPartitioner;
+import genepi.mut.util.RawFileWriter;
 
 public class PileupJob extends HadoopJob {
 
 	private String refArchive;
-	private String folder;
+	protected String folder;
 	private String pathRawLocal;
+	private boolean rawBinary = false;
 	private String pathVariantsHDFS;
 	private String pathVariantsLocal;
 	private long overall;
@@ -34,25 +53,44 @@ public class PileupJob extends HadoopJob {
 	private long filtered;
 	private long unfiltered;
 	private long fwdRead, revRead;
+	private long bases, baseQualitySum;
+	private long pairs, insertSizeSum;
+	private boolean combiner = false;
+	// input are partial pileups (sequence files) instead of BAM files
+	private boolean partialInput = false;
+	private String[] samples;
+	private String[] inputs;
 	
 	public PileupJob(String name) {
 		super(name);
 		set("mapred.map.tasks.speculative.execution", false);
 		set("mapred.reduce.tasks.speculative.execution", false);
-		set("mapreduce.map.java.opts", "-Xmx4000M");
-		set("mapred.child.java.opts", "-Xmx4000M");
+		setMapperMemory(4000);
 		//TODO check effect on reads. this happens when circular reads are split
 		set("hadoopbam.samheaderreader.validation-stringency", "LENIENT");
 	}
 
 	@Override
 	public void setupJob(Job job) {
-		job.setInputFormatClass(AnySAMInputFormat.class);
-		job.setMapperClass(PileupMapper.class);
-		job.setCombinerClass(PileupCombiner.class);
+		if (partialInput) {
+			job.setInputFormatClass(SequenceFileInputFormat.class);
+			job.setMapperClass(Mapper.class);
+		} else {
+			job.setInputFormatClass(AnySAMInputFormat.class);
+			job.setMapperClass(PileupMapper.class);
+		}
+		// mappers already emit merged positions, a combiner only helps after flushes
+		if (combiner || partialInput) {
+			job.setCombinerClass(PileupCombiner.class);
+		}
 		job.setReducerClass(PileupReducer.class);
-		job.setMapOutputKeyClass(Text.class);
+		job.setMapOutputKeyClass(PositionKey.class);
 		job.setMapOutputValueClass(BasePositionHadoop.class);
+		job.setSortComparatorClass(PositionKey.Comparator.class);
+		job.setPartitionerClass(PositionKeyPartitioner.class);
+
+		// reducers get contiguous ranges of the sorted samples, parts stay in order
+		job.getConfiguration().setStrings("samples", samples);
 
 		job.setOutputKeyClass(Text.class);
 		job.setOutputValueClass(Text.class);
@@ -60,6 +98,60 @@ public class PileupJob extends HadoopJob {
 		job.setOutputFormatClass(TextOutputFormat.class);
 	}
 
+	@Override
+	public boolean execute() {
+
+		// without the samples the partitioner hashes and the merged files are not sorted
+		if (samples == null) {
+			try {
+				samples = findSamples();
+			} catch (IOException e) {
+				log.error("Samples of the input files could not be determined.", e);
+				return false;
+			}
+		}
+
+		if (samples.length == 0) {
+			log.error("No input files found.");
+			return false;
+		}
+
+		return super.execute();
+	}
+
+	@Override
+	public void setInput(String... inputs) {
+		super.setInput(inputs);
+		this.inputs = inputs;
+	}
+
+	// sample names of the input files, see PileupMapper.getSampleName
+	protected String[] findSamples() throws IOException {
+
+		List<String> samples = new ArrayList<String>();
+
+		if (inputs == null) {
+			return new String[0];
+		}
+
+		for (String path : inputs) {
+
+			Path input = new Path(path);
+
+			FileSystem fileSystem = input.getFileSystem(HdfsUtil.getConfiguration());
+
+			FileStatus status = fileSystem.getFileStatus(input);
+
+			FileStatus[] files = status.isDirectory() ? fileSystem.listStatus(input) : new FileStatus[] { status };
+
+			for (FileStatus file : files) {
+				samples.add(PileupMapper.getSampleName(file.getPath().getName()));
+			}
+		}
+
+		return samples.toArray(new String[samples.size()]);
+	}
+
 	@Override
 	protected void setupDistributedCache(CacheStore cache) {
 
@@ -78,26 +170,16 @@ public class PileupJob extends HadoopJob {
 
 		try {
 			// write raw file
-			HdfsUtil.mergeFolderBinary(pathRawLocal, super.getOutput(), BamAnalyser.headerRaw);
+			if (rawBinary) {
+				mergeRawBinary(super.getOutput(), pathRawLocal);
+			} else {
+				HdfsUtil.mergeFolderBinary(pathRawLocal, super.getOutput(), BamAnalyser.headerRaw);
+			}
 
 			// write variants file
 			HdfsUtil.mergeFolderBinary(pathVariantsLocal, pathVariantsHDFS, BamAnalyser.headerVariants);
 
-			CounterGroup counters = job.getCounters().getGroup("mtdna");
-			overall = counters.findCounter("OVERALL-READS").getValue();
-			goodQual = counters.findCounter("GOOD-QUAL").getValue();
-			badQual = counters.findCounter("BAD-QUAL").getValue();
-			badALigment = counters.findCounter("BAD-ALIGNMENT").getValue();
-			shortRead = counters.findCounter("SHORT-READ").getValue();
-			dupl = counters.findCounter("DUPLICATE").getValue();
-			unmapped = counters.findCounter("UNMAPPED").getValue();
-			badMapping = counters.findCounter("BAD-MAPPING").getValue();
-			wrongRef = counters.findCounter("WRONG-REF").getValue();
-			goodMapping = counters.findCounter("GOOD-MAPPING").getValue();
-			filtered = counters.findCounter("FILTERED").getValue();
-			unfiltered = counters.findCounter("UNFILTERED").getValue();
-			fwdRead = counters.findCounter("FWD-READ").getValue();
-			revRead = counters.findCounter("REV-READ").getValue();
+			readCounters(job);
 
 		} catch (Exception e) {
 			e.printStackTrace();
@@ -105,6 +187,31 @@ public class PileupJob extends HadoopJob {
 
 	}
 
+	// QC counters of the tasks that analysed the reads
+	protected void readCounters(Job job) throws IOException {
+
+		CounterGroup counters = job.getCounters().getGroup("mtdna");
+		overall = counters.findCounter("OVERALL-READS").getValue();
+		goodQual = counters.findCounter("GOOD-QUAL").getValue();
+		badQual = counters.findCounter("BAD-QUAL").getValue();
+		badALigment = counters.findCounter("BAD-ALIGNMENT").getValue();
+		shortRead = counters.findCounter("SHORT-READ").getValue();
+		dupl = counters.findCounter("DUPLICATE").getValue();
+		unmapped = counters.findCounter("UNMAPPED").getValue();
+		badMapping = counters.findCounter("BAD-MAPPING").getValue();
+		wrongRef = counters.findCounter("WRONG-REF").getValue();
+		goodMapping = counters.findCounter("GOOD-MAPPING").getValue();
+		filtered = counters.findCounter("FILTERED").getValue();
+		unfiltered = counters.findCounter("UNFILTERED").getValue();
+		fwdRead = counters.findCounter("FWD-READ").getValue();
+		revRead = counters.findCounter("REV-READ").getValue();
+		bases = counters.findCounter("BASES").getValue();
+		baseQualitySum = counters.findCounter("BASE-QUALITY-SUM").getValue();
+		pairs = counters.findCounter("PAIRS").getValue();
+		insertSizeSum = counters.findCounter("INSERT-SIZE-SUM").getValue();
+
+	}
+
 	@Override
 	public void setOutput(String output) {
 
@@ -116,6 +223,39 @@ public class PileupJob extends HadoopJob {
 		this.pathRawLocal = localPath;
 	}
 
+	// reducers write columnar raw files next to their (empty) text output
+	public void setRawBinary(boolean rawBinary) {
+
+		set("rawBinary", rawBinary);
+		this.rawBinary = rawBinary;
+	}
+
+	// blocks of the columnar format are self-contained, the committed parts are
+	// concatenated in partition order
+	private void mergeRawBinary(String hdfsFolder, String localPath) throws IOException {
+
+		FileSystem fileSystem = FileSystem.get(HdfsUtil.getConfiguration());
+
+		FileStatus[] files = fileSystem.listStatus(new Path(hdfsFolder), new PathFilter() {
+			@Override
+			public boolean accept(Path path) {
+				return path.getName().endsWith(RawFileWriter.EXTENSION);
+			}
+		});
+
+		Arrays.sort(files);
+
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(localPath));
+
+		for (FileStatus file : files) {
+			InputStream in = fileSystem.open(file.getPath());
+			IOUtils.copyBytes(in, out, 65536, false);
+			in.close();
+		}
+
+		out.close();
+	}
+
 	public void setVariantsPathHdfs(String hdfsPath) {
 
 		set("variantsHdfs", hdfsPath);
@@ -127,6 +267,59 @@ public class PileupJob extends HadoopJob {
 		this.pathVariantsLocal = localPath;
 	}
 
+	// heap of the map tasks in MB
+	public void setMapperMemory(int memory) {
+		set("mapreduce.map.java.opts", "-Xmx" + memory + "M");
+		set("mapred.child.java.opts", "-Xmx" + memory + "M");
+	}
+
+	// longest sequence of the reference, positions of the partitioner ranges
+	public void setReferenceLength(int length) {
+		set("referenceLength", String.valueOf(length));
+	}
+
+	// memory ceiling of the in-mapper pileup in MB, default a quarter of the heap
+	public void setPileupMemory(int memory) {
+		set("pileupMemory", String.valueOf(memory));
+	}
+
+	// merges flushed partial pileups on the map side, worth it for tasks with many samples
+	public void setCombiner(boolean combiner) {
+		this.combiner = combiner;
+	}
+
+	// adds the QC counters of a job that analysed reads for this job
+	public void addCounters(PileupJob other) {
+		overall += other.overall;
+		goodQual += other.goodQual;
+		badQual += other.badQual;
+		badALigment += other.badALigment;
+		shortRead += other.shortRead;
+		dupl += other.dupl;
+		unmapped += other.unmapped;
+		badMapping += other.badMapping;
+		wrongRef += other.wrongRef;
+		goodMapping += other.goodMapping;
+		filtered += other.filtered;
+		unfiltered += other.unfiltered;
+		fwdRead += other.fwdRead;
+		revRead += other.revRead;
+		bases += other.bases;
+		baseQualitySum += other.baseQualitySum;
+		pairs += other.pairs;
+		insertSizeSum += other.insertSizeSum;
+	}
+
+	// reads the partial pileups written by the aligners in pileup mode
+	public void setPartialInput(boolean partialInput) {
+		this.partialInput = partialInput;
+	}
+
+	// samples used by the partitioner, default are the names of the input files
+	public void setSamples(String... samples) {
+		this.samples = samples;
+	}
+
 	public void setMappingQuality(String mapQual) {
 		set("mapQual", mapQual);
 	}
@@ -275,6 +468,14 @@ public class PileupJob extends HadoopJob {
 		this.revRead = revRead;
 	}
 
+	public double getMeanBaseQuality() {
+		return bases == 0 ? 0 : (double) baseQualitySum / bases;
+	}
+
+	public double getMeanInsertSize() {
+		return pairs == 0 ? 0 : (double) insertSizeSum / pairs;
+	}
+
 	public void setFolder(String folder) {
 		this.folder = folder;
 	}
@@ -1,24 +1,20 @@
 package genepi.mut.pileup;
 
 import genepi.hadoop.CacheStore;
-import genepi.hadoop.PreferenceStore;
-import genepi.mut.objects.BasePosition;
 import genepi.mut.objects.BasePositionHadoop;
+import genepi.mut.objects.PositionKey;
 import genepi.mut.util.ReferenceUtil;
-import htsjdk.samtools.SAMRecord;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.HashMap;
 
 import org.apache.hadoop.io.LongWritable;
-import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Mapper;
 import org.apache.hadoop.mapreduce.lib.input.FileSplit;
 import org.seqdoop.hadoop_bam.FileVirtualSplit;
 import org.seqdoop.hadoop_bam.SAMRecordWritable;
 
-public class PileupMapper extends Mapper<LongWritable, SAMRecordWritable, Text, BasePositionHadoop> {
+public class PileupMapper extends Mapper<LongWritable, SAMRecordWritable, PositionKey, BasePositionHadoop> {
 
 	enum Counters {
 
@@ -26,137 +22,53 @@ public class PileupMapper extends Mapper<LongWritable, SAMRecordWritable, Text,
 
 	}
 
-	BamAnalyser analyser;
+	PileupCollector collector;
 
 	String filename;
 
-	int mapQual;
-
-	int alignQual;
-	
-	int minCoverage;
-	
-	boolean deletions;
-	
-	boolean insertions;
-
 	protected void setup(Context context) throws IOException, InterruptedException {
 
 		// required for BAM splits
 		if (context.getInputSplit().getClass().equals(FileVirtualSplit.class)) {
-			filename = ((FileVirtualSplit) context.getInputSplit()).getPath().getName().replace(".bam", "");
+			filename = getSampleName(((FileVirtualSplit) context.getInputSplit()).getPath().getName());
 		} else {
-			filename = ((FileSplit) context.getInputSplit()).getPath().getName().replace(".bam", "").replace(".sam", "")
-					.replace(".cram", "");
+			filename = getSampleName(((FileSplit) context.getInputSplit()).getPath().getName());
 		}
-		
-		//replace all non digits/chars with an underscore
-		filename = filename.replaceAll("\\W+", "_");
 
 		CacheStore cache = new CacheStore(context.getConfiguration());
 
-		PreferenceStore store = new PreferenceStore(context.getConfiguration());
-
-		String version = store.getString("server.version");
-
-		int baseQual = context.getConfiguration().getInt("baseQual", 20);
-		
-		mapQual = context.getConfiguration().getInt("mapQual", 20);
-
-		alignQual = context.getConfiguration().getInt("alignQual", 30);
-		
-		minCoverage = context.getConfiguration().getInt("minCoverage", 30);
-
-		boolean baq = context.getConfiguration().getBoolean("baq", true);
-		
 		String refAsArchive = cache.getArchive("reference");
 		
 		File referencePath = new File(refAsArchive);
 
 		String fastaPath = ReferenceUtil.findFileinDir(referencePath, ".fasta");
 		
-		analyser = new BamAnalyser(filename, fastaPath, baseQual, mapQual, alignQual, baq, minCoverage, version);
-		
-		//default is to ignore deletions
-		deletions = context.getConfiguration().getBoolean("deletions", false);
-		//default is to ignore deletions
-		insertions = context.getConfiguration().getBoolean("insertions", false);
+		collector = new PileupCollector(context.getConfiguration(), fastaPath);
+
+		// counters are also reported for splits without reads
+		collector.getAnalyser(filename);
 
 	}
 
 	@Override
 	protected void cleanup(Context context) throws IOException, InterruptedException {
 
-		BasePositionHadoop baseHadoop = new BasePositionHadoop();
-		
-		HashMap<String, BasePosition> counts = analyser.getCounts();
-
-		Text outKey = new Text();
-
-		for (String key : counts.keySet()) {
-
-			BasePosition basePos = counts.get(key);
-
-			outKey.set(key);
-
-			baseHadoop.setBasePosition(basePos);
-			
-			context.write(outKey, baseHadoop);
-
-		}
+		collector.close(context);
 
 	}
 
 	public void map(LongWritable key, SAMRecordWritable value, Context context)
 			throws IOException, InterruptedException {
-		try {
 
-			countStats(context, value.get());
-					
-			//analyse SAM read			
-			analyser.analyseRead(value.get(), deletions, insertions);
+		collector.analyseRead(filename, value.get(), context);
 
-		} catch (Exception e) {
-			e.printStackTrace();
-		}
 	}
 
-	private void countStats(Context context, SAMRecord samRecord) throws Exception {
-
-		context.getCounter("mtdna", "OVERALL-READS").increment(1);
-
-		if (samRecord.getMappingQuality() < mapQual) {
-			context.getCounter("mtdna", "FILTERED").increment(1);
-			context.getCounter("mtdna", "BAD-MAPPING").increment(1);
-			return;
-		}
-
-		if (samRecord.getReadUnmappedFlag()) {
-			context.getCounter("mtdna", "FILTERED").increment(1);
-			context.getCounter("mtdna", "UNMAPPED").increment(1);
-			return;
-		}
-
-		if (samRecord.getDuplicateReadFlag()) {
-			context.getCounter("mtdna", "FILTERED").increment(1);
-			context.getCounter("mtdna", "DUPLICATE").increment(1);
-			return;
-		}
-
-		if (samRecord.getReadLength() <= 25) {
-			context.getCounter("mtdna", "FILTERED").increment(1);
-			context.getCounter("mtdna", "SHORT-READ").increment(1);
-			return;
-		}
-
-		if (ReferenceUtil.getTagFromSamRecord(samRecord.getAttributes(), "AS") < alignQual) {
-			context.getCounter("mtdna", "FILTERED").increment(1);
-			context.getCounter("mtdna", "BAD-ALIGNMENT").increment(1);
-			return;
-		}
-
-		context.getCounter("mtdna", "UNFILTERED").increment(1);
-
+	// sample id of an input file, also used by PileupJob to sort the samples
+	public static String getSampleName(String fileName) {
+		String name = fileName.replace(".bam", "").replace(".sam", "").replace(".cram", "");
+		//replace all non digits/chars with an underscore
+		return name.replaceAll("\\W+", "_");
 	}
 
 }
@@ -2,32 +2,43 @@ package genepi.mut.pileup;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
 
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
 
 import genepi.hadoop.CacheStore;
 import genepi.hadoop.HdfsUtil;
 import genepi.hadoop.io.HdfsLineWriter;
 import genepi.mut.objects.BasePosition;
 import genepi.mut.objects.BasePositionHadoop;
+import genepi.mut.objects.PositionKey;
 import genepi.mut.objects.VariantLine;
 import genepi.mut.objects.VariantResult;
+import genepi.mut.util.RawFileWriter;
 import genepi.mut.util.ReferenceUtil;
 import genepi.mut.util.VariantCaller;
 
-public class PileupReducer extends Reducer<Text, BasePositionHadoop, Text, Text> {
+public class PileupReducer extends Reducer<PositionKey, BasePositionHadoop, Text, Text> {
 
 	private BasePosition basePos = new BasePosition();
 
+	// reused for every position to keep the reducer free of garbage
+	private VariantLine line = new VariantLine();
+
+	private Text raw = new Text();
+
 	String reference;
 
 	String hdfsVariants;
 
 	HdfsLineWriter writer;
 
+	// columnar raw file per task, replaces the text output if configured
+	RawFileWriter rawWriter;
+
 	double level;
 	 
 	int minCoverage;
@@ -47,68 +58,26 @@ public class PileupReducer extends Reducer<Text, BasePositionHadoop, Text, Text>
 		hdfsVariants = context.getConfiguration().get("variantsHdfs");
 		HdfsUtil.create(hdfsVariants + "/" + context.getTaskAttemptID());
 		writer = new HdfsLineWriter(hdfsVariants + "/" + context.getTaskAttemptID());
-	}
-
-	protected void reduce(Text key, java.lang.Iterable<BasePositionHadoop> values, Context context)
-			throws java.io.IOException, InterruptedException {
 
-		basePos.clear();
-
-		List<Byte> combinedAFor = new ArrayList<Byte>();
-		List<Byte> combinedCFor = new ArrayList<Byte>();
-		List<Byte> combinedGFor = new ArrayList<Byte>();
-		List<Byte> combinedTFor = new ArrayList<Byte>();
-		List<Byte> combinedDFor = new ArrayList<Byte>();
-		List<Byte> combinedARev = new ArrayList<Byte>();
-		List<Byte> combinedCRev = new ArrayList<Byte>();
-		List<Byte> combinedGRev = new ArrayList<Byte>();
-		List<Byte> combinedTRev = new ArrayList<Byte>();
-		List<Byte> combinedDRev = new ArrayList<Byte>();
-
-		for (BasePositionHadoop valueHadoop : values) {
-
-			BasePosition value = valueHadoop.getBasePosition();
-
-			basePos.add(value);
-
-			combinedAFor.addAll(value.getaForQ());
-			combinedCFor.addAll(value.getcForQ());
-			combinedGFor.addAll(value.getgForQ());
-			combinedTFor.addAll(value.gettForQ());
-			combinedDFor.addAll(value.getdForQ());
-			combinedARev.addAll(value.getaRevQ());
-			combinedCRev.addAll(value.getcRevQ());
-			combinedGRev.addAll(value.getgRevQ());
-			combinedTRev.addAll(value.gettRevQ());
-			combinedDRev.addAll(value.getdRevQ());
+		if (context.getConfiguration().getBoolean("rawBinary", false)) {
+			// work output of the attempt, only committed attempts reach the output folder
+			Path rawPath = new Path(FileOutputFormat.getWorkOutputPath(context),
+					FileOutputFormat.getUniqueFile(context, "raw", RawFileWriter.EXTENSION));
+			FileSystem fileSystem = rawPath.getFileSystem(context.getConfiguration());
+			rawWriter = new RawFileWriter(fileSystem.create(rawPath));
 		}
+	}
 
-		basePos.setaForQ(combinedAFor);
-		basePos.setcForQ(combinedCFor);
-		basePos.setgForQ(combinedGFor);
-		basePos.settForQ(combinedTFor);
-		basePos.setdForQ(combinedDFor);
-
-		basePos.setaRevQ(combinedARev);
-		basePos.setcRevQ(combinedCRev);
-		basePos.setgRevQ(combinedGRev);
-		basePos.settRevQ(combinedTRev);
-		basePos.setdRevQ(combinedDRev);
+	protected void reduce(PositionKey key, java.lang.Iterable<BasePositionHadoop> values, Context context)
+			throws java.io.IOException, InterruptedException {
 
-		basePos.setId(key.toString().split(":")[0]);
+		BasePositionHadoop.merge(values, basePos);
 
-		String positionKey = key.toString().split(":")[1];
+		basePos.setId(key.getSample());
 
-		int pos;
+		int pos = key.getPosition();
 
-		boolean insertion = false;
-
-		if (positionKey.contains(".")) {
-			pos = Integer.valueOf(positionKey.split("\\.")[0]);
-			insertion = true;
-		} else {
-			pos = Integer.valueOf(positionKey);
-		}
+		boolean insertion = key.isInsertion();
 
 		basePos.setPos(pos);
 
@@ -116,7 +85,7 @@ public class PileupReducer extends Reducer<Text, BasePositionHadoop, Text, Text>
 
 			char ref = 'N';
 
-			VariantLine line = new VariantLine();
+			line.reset();
 
 			if (!insertion) {
 
@@ -126,7 +95,7 @@ public class PileupReducer extends Reducer<Text, BasePositionHadoop, Text, Text>
 
 				ref = '-';
 
-				line.setInsPosition(positionKey);
+				line.setInsPosition(pos + "." + key.getIndex());
 
 				line.setInsertion(true);
 			}
@@ -208,7 +177,16 @@ public class PileupReducer extends Reducer<Text, BasePositionHadoop, Text, Text>
 
 			}
 
-			context.write(null, new Text(line.toRawString()));
+			if (rawWriter != null) {
+
+				rawWriter.write(line);
+
+			} else {
+
+				raw.set(line.toRawString());
+
+				context.write(null, raw);
+			}
 
 		}
 
@@ -216,6 +194,10 @@ public class PileupReducer extends Reducer<Text, BasePositionHadoop, Text, Text>
 
 	protected void cleanup(Context context) throws IOException, InterruptedException {
 		writer.close();
+
+		if (rawWriter != null) {
+			rawWriter.close();
+		}
 	}
 
 }
@@ -3,8 +3,10 @@ package genepi.mut.pileup;
 import genepi.hadoop.PreferenceStore;
 import genepi.hadoop.common.WorkflowContext;
 import genepi.mut.util.HadoopJobStep;
+import genepi.mut.util.ReferenceUtil;
 
 import java.io.File;
+import java.io.IOException;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.util.Locale;
@@ -24,19 +26,6 @@ public class PileupStep extends HadoopJobStep {
 		} else {
 			input = context.get("input");
 		}
-		String rawHdfs = context.get("rawHdfs");
-		String rawLocal = context.get("rawLocal");
-		String variantsHdfs = context.get("variantsHdfs");
-		String variantsLocal = context.get("variantsLocal");
-		String mappingQual = context.get("mapQuality");
-		String minCoverage = context.get("minCoverage");
-		String baseQual = context.get("baseQuality");
-		String alignQual = context.get("alignQuality");
-		String archive = context.get("archive");
-		String level = context.get("level");
-		Boolean baq = Boolean.valueOf(context.get("baq"));
-		boolean deletions = Boolean.valueOf(context.get("deletions"));
-		boolean insertions = Boolean.valueOf(context.get("insertions"));
 
 		PileupJob bamJob = new PileupJob("Generate Pileup") {
 			@Override
@@ -58,8 +47,45 @@ public class PileupStep extends HadoopJobStep {
 			}
 		};
 		bamJob.setInput(input);
+		configure(bamJob, context);
+		bamJob.setJarByClass(PileupStep.class);
+		bamJob.setFolder(folder);
+
+		boolean successful = executeHadoopJob(bamJob, context);
+
+		if (!successful) {
+			context.error("QC Quality Control failed!");
+			return false;
+		}
+
+		return report(bamJob, context);
+
+	}
+
+	// parameters of the pileup and variant calling, shared with AlignPileupStep
+	public static void configure(PileupJob bamJob, WorkflowContext context) {
+
+		String rawHdfs = context.get("rawHdfs");
+		String rawLocal = context.get("rawLocal");
+		String variantsHdfs = context.get("variantsHdfs");
+		String variantsLocal = context.get("variantsLocal");
+		String mappingQual = context.get("mapQuality");
+		String minCoverage = context.get("minCoverage");
+		String baseQual = context.get("baseQuality");
+		String alignQual = context.get("alignQuality");
+		String archive = context.get("archive");
+		String level = context.get("level");
+		Boolean baq = Boolean.valueOf(context.get("baq"));
+		boolean deletions = Boolean.valueOf(context.get("deletions"));
+		boolean insertions = Boolean.valueOf(context.get("insertions"));
+		boolean binaryRaw = Boolean.valueOf(context.get("binaryRaw"));
+		String mapperMemory = context.get("mapperMemory");
+		String pileupMemory = context.get("pileupMemory");
+		boolean combiner = Boolean.valueOf(context.get("combiner"));
+
 		bamJob.setOutput(rawHdfs);
 		bamJob.setRawLocal(rawLocal);
+		bamJob.setRawBinary(binaryRaw);
 		bamJob.setVariantsPathHdfs(variantsHdfs);
 		bamJob.setVariantsPathLocal(variantsLocal);
 		
@@ -71,46 +97,61 @@ public class PileupStep extends HadoopJobStep {
 		bamJob.setLevel(level);
 		bamJob.setDeletions(deletions);
 		bamJob.setInsertions(insertions);
-		bamJob.setArchive(archive);
-		bamJob.setJarByClass(PileupStep.class);
-		bamJob.setFolder(folder);
-
-		boolean successful = executeHadoopJob(bamJob, context);
-
-		if (successful) {
-
-			// print qc statistics
-			DecimalFormat df = (DecimalFormat) NumberFormat.getInstance(Locale.US);
-
-			StringBuffer text = new StringBuffer();
-
-			text.append("<b> Statistics:</b> <br>");
-			text.append("Overall Reads: " + df.format(bamJob.getOverall()) + "<br>");
-			text.append("Filtered Reads: " + df.format(bamJob.getFiltered()) + "<br>");
-			text.append("Passed Reads: " + df.format(bamJob.getUnfiltered()) + "<br>");
-			text.append("<br>");
-			text.append("Filtered Reads:" + "<br>");
-			text.append("Read Mapping Quality BAD: " + df.format(bamJob.getBadMapping()) + "<br>");
-			text.append("Unmapped Reads: " + df.format(bamJob.getUnmapped()) + "<br>");
-			text.append("Wrong Reference in BAM: " + df.format(bamJob.getWrongRef()) + "<br>");
-			text.append("Bad Alignment: " + df.format(bamJob.getBadALigment()) + "<br>");
-			text.append("Duplicates: " + df.format(bamJob.getDupl()) + "<br>");
-			text.append("Short Reads (<25 bp): " + df.format(bamJob.getShortRead()) + "<br>");
-			context.ok(text.toString());
-
-			if (bamJob.getUnfiltered() == 0) {
-				context.error("No reads passed Quality Control!");
-				return false;
+		if (mapperMemory != null) {
+			bamJob.setMapperMemory(Integer.parseInt(mapperMemory));
+		}
+		if (pileupMemory != null) {
+			bamJob.setPileupMemory(Integer.parseInt(pileupMemory));
+		}
+		bamJob.setCombiner(combiner);
+		try {
+			// positions of the partitioner ranges
+			int referenceLength = ReferenceUtil.readReferenceLength(archive);
+			if (referenceLength > 0) {
+				bamJob.setReferenceLength(referenceLength);
 			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		bamJob.setArchive(archive);
+	}
 
-		} else {
-
-			context.error("QC Quality Control failed!");
+	// QC counters of the analysed reads, fails if no read passed
+	public static boolean report(PileupJob bamJob, WorkflowContext context) {
+
+		// print qc statistics
+		DecimalFormat df = (DecimalFormat) NumberFormat.getInstance(Locale.US);
+
+		StringBuffer text = new StringBuffer();
+
+		text.append("<b> Statistics:</b> <br>");
+		text.append("Overall Reads: " + df.format(bamJob.getOverall()) + "<br>");
+		text.append("Filtered Reads: " + df.format(bamJob.getFiltered()) + "<br>");
+		text.append("Passed Reads: " + df.format(bamJob.getUnfiltered()) + "<br>");
+		text.append("<br>");
+		text.append("Filtered Reads:" + "<br>");
+		text.append("Read Mapping Quality BAD: " + df.format(bamJob.getBadMapping()) + "<br>");
+		text.append("Unmapped Reads: " + df.format(bamJob.getUnmapped()) + "<br>");
+		text.append("Bad Alignment: " + df.format(bamJob.getBadALigment()) + "<br>");
+		text.append("Duplicates: " + df.format(bamJob.getDupl()) + "<br>");
+		text.append("Short Reads (<25 bp): " + df.format(bamJob.getShortRead()) + "<br>");
+		text.append("<br>");
+		text.append("Passed Reads:" + "<br>");
+		text.append("Forward Reads: " + df.format(bamJob.getFwdRead()) + "<br>");
+		text.append("Reverse Reads: " + df.format(bamJob.getRevRead()) + "<br>");
+		text.append("Wrong Reference in BAM: " + df.format(bamJob.getWrongRef()) + "<br>");
+		text.append("Bases Quality GOOD: " + df.format(bamJob.getGoodQual()) + "<br>");
+		text.append("Bases Quality BAD: " + df.format(bamJob.getBadQual()) + "<br>");
+		text.append("Mean Base Quality: " + df.format(bamJob.getMeanBaseQuality()) + "<br>");
+		text.append("Mean Insert Size: " + df.format(bamJob.getMeanInsertSize()) + "<br>");
+		context.ok(text.toString());
+
+		if (bamJob.getUnfiltered() == 0) {
+			context.error("No reads passed Quality Control!");
 			return false;
-
 		}
-		return successful;
 
+		return true;
 	}
 
-}
\ No newline at end of file
+}
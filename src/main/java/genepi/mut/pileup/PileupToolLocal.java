@@ -3,25 +3,36 @@ package genepi.mut.pileup;
 import java.io.File;
 import java.io.FilenameFilter;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import genepi.base.Tool;
 import genepi.io.FileUtil;
+import genepi.io.table.writer.CsvTableWriter;
 import genepi.io.text.LineWriter;
-import genepi.mut.objects.BasePosition;
-import genepi.mut.objects.VariantLine;
-import genepi.mut.objects.VariantResult;
+import genepi.mut.objects.Pileup;
+import genepi.mut.stats.CoverageStatistics;
+import genepi.mut.util.BaqEngine;
 import genepi.mut.util.FastaWriter;
+import genepi.mut.util.MemoryReferenceSource;
+import genepi.mut.util.RawFileWriter;
 import genepi.mut.util.ReferenceUtil;
 import genepi.mut.util.ReferenceUtil.Reference;
-import genepi.mut.util.VariantCaller;
 import genepi.mut.util.VcfWriter;
 import htsjdk.samtools.SAMRecord;
 import htsjdk.samtools.SAMRecordIterator;
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SAMSequenceRecord;
 import htsjdk.samtools.SamReader;
 import htsjdk.samtools.SamReaderFactory;
 import htsjdk.samtools.ValidationStringency;
+import htsjdk.samtools.util.Interval;
 
 public class PileupToolLocal extends Tool {
 
@@ -29,6 +40,27 @@ public class PileupToolLocal extends Tool {
 	String mode = "mtdna";
 	String command;
 
+	// name of intervals that continue a split region
+	static final String SPLIT = "split";
+
+	// variants are determined and written on the main thread
+	private PileupWriter pileupWriter;
+
+	// columnar raw file, used instead of the text raw file with --binaryRaw
+	private RawFileWriter writerRawBinary;
+
+	// coverage statistics per sample (--statistics), taken from the written lines
+	private CoverageStatistics statistics;
+
+	private CsvTableWriter writerStatistics;
+
+	// read QC per sample (--qc), collected by the analysers
+	private LineWriter writerQC;
+
+	// shared by all readers, CRAMs are decoded with the in-memory reference
+	private SamReaderFactory readerFactory = SamReaderFactory.makeDefault()
+			.validationStringency(ValidationStringency.SILENT);
+
 	public PileupToolLocal(String[] args) {
 		super(args);
 		command = Arrays.toString(args);
@@ -50,6 +82,13 @@ public class PileupToolLocal extends Tool {
 		addFlag("deletions", "Call deletions");
 		addFlag("insertions", "Call insertions (beta)");
 		addFlag("writeFasta", "Write fasta");
+		addFlag("binaryRaw", "Write the raw file in the columnar binary format (_raw.mraw)");
+		addOptionalParameter("threads", "number of threads", Tool.STRING);
+		addOptionalParameter("contig", "contig to analyse (default: detected mtDNA contig)", Tool.STRING);
+		addOptionalParameter("region", "regions to analyse, e.g. chrM:1-16569,chr1:629000-634000", Tool.STRING);
+		addOptionalParameter("checkpoints", "folder for per-sample pileup checkpoints", Tool.STRING);
+		addOptionalParameter("statistics", "output file for coverage statistics per sample", Tool.STRING);
+		addOptionalParameter("qc", "output file for read QC metrics per sample", Tool.STRING);
 	}
 
 	@Override
@@ -75,6 +114,8 @@ public class PileupToolLocal extends Tool {
 
 		boolean writeFasta = isFlagSet("writeFasta");
 
+		boolean binaryRaw = isFlagSet("binaryRaw");
+
 		double level;
 		if (getValue("level") == null) {
 			level = 0.01;
@@ -110,6 +151,23 @@ public class PileupToolLocal extends Tool {
 			minCoverage = Integer.parseInt((String) getValue("minCoverage"));
 		}
 
+		int threads;
+		if (getValue("threads") == null) {
+			threads = 1;
+		} else {
+			threads = Math.max(1, Integer.parseInt((String) getValue("threads")));
+		}
+
+		String contig = (String) getValue("contig");
+
+		String region = (String) getValue("region");
+
+		String checkpoints = (String) getValue("checkpoints");
+
+		String statisticsFile = (String) getValue("statistics");
+
+		String qcFile = (String) getValue("qc");
+
 		String refPath = (String) getValue("reference");
 
 		LineWriter writerRaw = null;
@@ -159,18 +217,37 @@ public class PileupToolLocal extends Tool {
 			}
 
 			String varFile = prefix + ".txt";
-			String rawFile = prefix + "_raw.txt";
+			String rawFile = prefix + "_raw" + (binaryRaw ? RawFileWriter.EXTENSION : ".txt");
 
 			try {
 				writerVar = new LineWriter(new File(varFile).getAbsolutePath());
 				writerVar.write(BamAnalyser.headerVariants);
 
-				writerRaw = new LineWriter(new File(rawFile).getAbsolutePath());
-				writerRaw.write(BamAnalyser.headerRaw);
+				if (binaryRaw) {
+					writerRawBinary = new RawFileWriter(new File(rawFile).getAbsolutePath());
+				} else {
+					writerRaw = new LineWriter(new File(rawFile).getAbsolutePath());
+					writerRaw.write(BamAnalyser.headerRaw);
+				}
+
+				if (statisticsFile != null) {
+					statistics = new CoverageStatistics();
+					writerStatistics = new CsvTableWriter(new File(statisticsFile).getAbsolutePath(), ',', true);
+					writerStatistics.setColumns(CoverageStatistics.COLUMNS);
+				}
+
+				if (qcFile != null) {
+					writerQC = new LineWriter(new File(qcFile).getAbsolutePath());
+					writerQC.write(ReadQC.header);
+				}
+
+				pileupWriter = new PileupWriter(writerVar, writerRaw, writerRawBinary, level);
+				pileupWriter.setStatistics(statistics);
 
 			} catch (IOException e) {
-				// TODO Auto-generated catch block
+				System.out.println("Error. Can not create output files: " + e.getMessage());
 				e.printStackTrace();
+				return 1;
 			}
 
 			long start = System.currentTimeMillis();
@@ -186,45 +263,148 @@ public class PileupToolLocal extends Tool {
 			System.out.println("BAQ: " + baq);
 			System.out.println("Deletions: " + deletions);
 			System.out.println("Insertions: " + insertions);
+			System.out.println("Threads: " + threads);
+			if (region != null) {
+				System.out.println("Region: " + region);
+			} else if (contig != null) {
+				System.out.println("Contig: " + contig);
+			}
+			if (checkpoints != null) {
+				System.out.println("Checkpoints: " + new File(checkpoints).getAbsolutePath());
+				new File(checkpoints).mkdirs();
+			}
 			System.out.println("");
 
-			for (File file : files) {
+			// each interval needs two threads (pileup and prefetcher), files are
+			// split by interval if there are less files than that
+			int parts = Math.max(1, threads / (2 * files.length));
 
-				Reference reference = ReferenceUtil.determineReference(file);
+			int workers = Math.max(1, Math.min(files.length * parts, threads / 2));
 
-				if (reference == Reference.hg19) {
+			ExecutorService executor = Executors.newFixedThreadPool(workers);
 
-					System.out.println("File " + file.getName()
-							+ " excluded! File is aligned to Yoruba (Reference length 16571) and not rCRS. ");
+			// BAQ of read batches is spread over the remaining threads
+			BaqEngine baqEngine = null;
 
-					continue;
+			int baqThreads = threads - 2 * workers;
 
-				}
+			if (baq && baqThreads > 1) {
+				baqEngine = new BaqEngine(refPath, mode, baqThreads);
+			}
+
+			String referenceString = BamAnalyser.readReference(refPath);
+
+			// samples waiting for variant detection, in input order
+			LinkedList<Sample> pending = new LinkedList<Sample>();
+
+			// settings that change the pileup, level and minCoverage do not
+			String settings = baseQ + ";" + mapQ + ";" + alignQ + ";" + baq + ";" + deletions + ";" + insertions
+					+ ";" + contig + ";" + region + ";" + mode + ";" + new File(refPath).length();
+
+			MemoryReferenceSource referenceSource = null;
+
+			try {
+
+				referenceSource = new MemoryReferenceSource(refPath);
+
+				readerFactory = SamReaderFactory.makeDefault().validationStringency(ValidationStringency.SILENT)
+						.referenceSource(referenceSource);
 
-				else if (reference == Reference.rcrs || reference == Reference.precisionId) {
+				for (File file : files) {
 
-					BamAnalyser analyser = new BamAnalyser(file.getName(), refPath, baseQ, mapQ, alignQ, baq,
-							minCoverage, mode);
+					// the header of this reader is used for all checks, the reader
+					// itself for the first interval
+					SamReader reader = readerFactory.open(file);
 
-					System.out.println("Processing: " + file.getName());
-					System.out.println("Detected reference: " + reference.toString());
+					Reference reference = ReferenceUtil.determineReference(reader.getFileHeader()
+							.getSequenceDictionary());
 
-					try {
+					if (reference == Reference.hg19) {
 
-						analyseReads(file, analyser, deletions, insertions);
+						System.out.println("File " + file.getName()
+								+ " excluded! File is aligned to Yoruba (Reference length 16571) and not rCRS. ");
 
-						determineVariants(analyser, writerRaw, writerVar, level);
+						reader.close();
+
+						continue;
 
-					} catch (Exception e) {
-						// TODO Auto-generated catch block
-						e.printStackTrace();
-						return 1;
 					}
 
-				} else {
-					System.out.println(
-							"File " + file.getName() + " excluded. Can not identify a valid reference length!");
-					continue;
+					else if (reference == Reference.rcrs || reference == Reference.precisionId) {
+
+						System.out.println("Processing: " + file.getName());
+						System.out.println("Detected reference: " + reference.toString());
+
+						Sample sample = new Sample();
+
+						if (checkpoints != null) {
+							sample.checkpoint = new File(checkpoints, file.getName() + ".pileup");
+							sample.checkpointKey = file.getName() + ";" + file.length() + ";" + file.lastModified()
+									+ ";" + settings;
+						}
+
+						if (sample.checkpoint != null
+								&& PileupCheckpoint.matches(sample.checkpoint, sample.checkpointKey)) {
+
+							System.out.println("Pileup loaded from checkpoint " + sample.checkpoint.getName());
+
+							reader.close();
+
+							BamAnalyser analyser = new BamAnalyser(file.getName(), refPath, referenceString, baseQ,
+									mapQ, alignQ, baq, minCoverage, mode);
+
+							sample.tasks.add(submitCheckpoint(executor, sample, analyser));
+
+							// nothing new to write
+							sample.checkpoint = null;
+
+						} else {
+
+							List<Interval> intervals = determineIntervals(file, reader, parts, contig, region);
+
+							// each interval gets its own analyser (pileup and BAQ), the
+							// reference is read once
+							for (int i = 0; i < intervals.size(); i++) {
+
+								BamAnalyser analyser = new BamAnalyser(file.getName(), refPath, referenceString,
+										baseQ, mapQ, alignQ, baq, minCoverage, mode);
+
+								analyser.setBaqEngine(baqEngine);
+
+								sample.tasks.add(submitReads(executor, file, i == 0 ? reader : null, analyser,
+										deletions, insertions, intervals.get(i)));
+							}
+						}
+
+						pending.add(sample);
+
+						// keep at most one waiting sample per worker in memory
+						if (pending.size() > workers) {
+							completeSample(pending.removeFirst());
+						}
+
+					} else {
+						System.out.println(
+								"File " + file.getName() + " excluded. Can not identify a valid reference length!");
+						reader.close();
+						continue;
+					}
+				}
+
+				while (!pending.isEmpty()) {
+					completeSample(pending.removeFirst());
+				}
+
+			} catch (Exception e) {
+				e.printStackTrace();
+				return 1;
+			} finally {
+				executor.shutdownNow();
+				if (baqEngine != null) {
+					baqEngine.close();
+				}
+				if (referenceSource != null) {
+					referenceSource.close();
 				}
 			}
 
@@ -235,6 +415,18 @@ public class PileupToolLocal extends Tool {
 					writerRaw.close();
 				}
 
+				if (writerRawBinary != null) {
+					writerRawBinary.close();
+				}
+
+				if (writerStatistics != null) {
+					writerStatistics.close();
+				}
+
+				if (writerQC != null) {
+					writerQC.close();
+				}
+
 			} catch (IOException e) {
 				// TODO Auto-generated catch block
 				e.printStackTrace();
@@ -242,7 +434,13 @@ public class PileupToolLocal extends Tool {
 
 			if (output.endsWith("vcf.gz") || output.endsWith("vcf")) {
 				VcfWriter writer = new VcfWriter();
-				writer.createVCF(varFile, output, refPath, "chrM", 16569, version + ";" + command);
+				try {
+					writer.createVCF(varFile, output, refPath, "chrM", 16569, version + ";" + command);
+				} catch (IOException e) {
+					System.out.println("Error. Can not write VCF file " + output + ": " + e.getMessage());
+					e.printStackTrace();
+					return 1;
+				}
 			}
 
 			if (writeFasta) {
@@ -258,157 +456,233 @@ public class PileupToolLocal extends Tool {
 		return 0;
 	}
 
-	// mapper
-	private void analyseReads(File file, BamAnalyser analyser, boolean deletions, boolean insertions) throws Exception {
-
-		// TODO double check if primary and secondary alignment is used for
-		// CNV-Server
-		final SamReader reader = SamReaderFactory.makeDefault().validationStringency(ValidationStringency.SILENT)
-				.open(file);
+	private Future<BamAnalyser> submitReads(ExecutorService executor, final File file, final SamReader reader,
+			final BamAnalyser analyser, final boolean deletions, final boolean insertions, final Interval interval) {
 
-		SAMRecordIterator fileIterator = reader.iterator();
+		return executor.submit(new Callable<BamAnalyser>() {
+			@Override
+			public BamAnalyser call() throws Exception {
+				analyseReads(file, reader, analyser, deletions, insertions, interval);
+				return analyser;
+			}
+		});
+	}
 
-		while (fileIterator.hasNext()) {
+	private Future<BamAnalyser> submitCheckpoint(ExecutorService executor, final Sample sample,
+			final BamAnalyser analyser) {
 
-			SAMRecord record = fileIterator.next();
+		final File checkpoint = sample.checkpoint;
 
-			analyser.analyseRead(record, deletions, insertions);
+		final String key = sample.checkpointKey;
 
-		}
-		reader.close();
+		return executor.submit(new Callable<BamAnalyser>() {
+			@Override
+			public BamAnalyser call() throws Exception {
+				Pileup pileup = PileupCheckpoint.read(checkpoint, key);
+				if (pileup == null) {
+					throw new IOException("Checkpoint " + checkpoint.getName() + " has changed.");
+				}
+				analyser.setPileup(pileup);
+				return analyser;
+			}
+		});
 	}
 
-	// reducer
-	private void determineVariants(BamAnalyser analyser, LineWriter writerRaw, LineWriter writerVariants, double level)
-			throws IOException {
+	// merges the intervals of a sample, stores the checkpoint and calls variants
+	private void completeSample(Sample sample) throws Exception {
 
-		HashMap<String, BasePosition> counts = analyser.getCounts();
+		BamAnalyser analyser = mergePileups(sample.tasks);
 
-		String reference = analyser.getReferenceString();
+		if (sample.checkpoint != null) {
+			PileupCheckpoint.write(sample.checkpoint, analyser.getPileup(), sample.checkpointKey);
+		}
 
-		for (String key : counts.keySet()) {
+		pileupWriter.write(analyser);
 
-			String idKey = key.split(":")[0];
+		if (statistics != null && statistics.getCount() > 0) {
+			statistics.write(writerStatistics, analyser.getFilename());
+			statistics.reset();
+		}
 
-			String positionKey = key.split(":")[1];
+		// no reads are seen for samples loaded from a checkpoint
+		if (writerQC != null && analyser.getQC().getOverall() > 0) {
+			writerQC.write(analyser.getQC().toString(analyser.getFilename()));
+		}
 
-			int pos;
+		analyser.close();
+	}
 
-			boolean insertion = false;
+	// waits for all intervals of a sample and merges them into the first pileup
+	private BamAnalyser mergePileups(List<Future<BamAnalyser>> tasks) throws Exception {
 
-			if (positionKey.contains(".")) {
-				pos = Integer.valueOf(positionKey.split("\\.")[0]);
-				insertion = true;
-			} else {
-				pos = Integer.valueOf(positionKey);
-			}
+		BamAnalyser analyser = tasks.get(0).get();
 
-			if (pos > 0 && pos <= reference.length()) {
+		for (int i = 1; i < tasks.size(); i++) {
+			BamAnalyser other = tasks.get(i).get();
+			analyser.getPileup().add(other.getPileup());
+			analyser.getQC().merge(other.getQC());
+			other.close();
+		}
 
-				char ref = 'N';
+		return analyser;
+	}
 
-				BasePosition basePos = counts.get(key);
-				basePos.setId(idKey);
+	// intervals of an indexed file: the given regions or contig, otherwise the
+	// detected mtDNA contig. They are split into parts of equal reference
+	// length, null stands for the whole file
+	private List<Interval> determineIntervals(File file, SamReader reader, int parts, String contig, String region)
+			throws IOException {
 
-				basePos.setPos(pos);
+		List<Interval> intervals = new ArrayList<Interval>();
 
-				VariantLine line = new VariantLine();
+		if (reader.hasIndex()) {
 
-				if (!insertion) {
+			SAMSequenceDictionary dictionary = reader.getFileHeader().getSequenceDictionary();
 
-					ref = reference.charAt(pos - 1);
+			List<Interval> regions = new ArrayList<Interval>();
 
-				} else {
+			if (region != null) {
 
-					ref = '-';
+				for (String value : region.split(",")) {
+					regions.add(parseRegion(value.trim(), dictionary));
+				}
 
-					line.setInsertion(true);
+			} else {
 
-					line.setInsPosition(positionKey);
+				if (contig == null) {
+					contig = ReferenceUtil.determineContig(dictionary);
 				}
 
-				line.setRef(ref);
+				if (contig != null) {
+					regions.add(parseRegion(contig, dictionary));
+				} else if (parts > 1) {
+					for (SAMSequenceRecord sequence : dictionary.getSequences()) {
+						regions.add(new Interval(sequence.getSequenceName(), 1, sequence.getSequenceLength()));
+					}
+				}
+			}
 
-				// create all required frequencies for one position
-				// applies checkBases()
-				line.parseLine(basePos, level);
+			long total = 0;
 
-				boolean isHeteroplasmy = false;
+			for (Interval interval : regions) {
+				total += interval.length();
+			}
 
-				for (char base : line.getMinors()) {
+			long chunk = Math.max(1, (total + parts - 1) / parts);
 
-					// this only works since minorFWD and minorREV are equal
-					double minorPercentageFwd = VariantCaller.getMinorPercentageFwd(line, base);
+			for (Interval interval : regions) {
+				for (long start = interval.getStart(); start <= interval.getEnd(); start += chunk) {
+					long end = Math.min(interval.getEnd(), start + chunk - 1);
+					if (start == interval.getStart()) {
+						intervals.add(new Interval(interval.getContig(), (int) start, (int) end));
+					} else {
+						intervals.add(new Interval(interval.getContig(), (int) start, (int) end, false, SPLIT));
+					}
+				}
+			}
 
-					double minorPercentageRev = VariantCaller.getMinorPercentageRev(line, base);
+		} else if (region != null || contig != null) {
+			System.out.println("No index found for " + file.getName() + ", reading the whole file.");
+		}
 
-					double llrFwd = VariantCaller.determineLlrFwd(line, base);
+		if (intervals.isEmpty()) {
+			intervals.add(null);
+		}
 
-					double llrRev = VariantCaller.determineLlrRev(line, base);
+		return intervals;
+	}
 
-					VariantResult varResult = VariantCaller.determineLowLevelVariant(line, minorPercentageFwd,
-							minorPercentageRev, llrFwd, llrRev, level, base);
+	// chrM, chrM:1000 (until the end) or chrM:1000-2000
+	static Interval parseRegion(String value, SAMSequenceDictionary dictionary) {
 
-					if (varResult.getType() == VariantCaller.LOW_LEVEL_VARIANT) {
+		String name = value;
 
-						isHeteroplasmy = true;
+		int start = 1;
 
-						// set correct minor base for output result!
-						varResult.setMinor(base);
+		int end = -1;
 
-						double hetLevel = VariantCaller.calcVariantLevel(line, minorPercentageFwd, minorPercentageRev);
+		int colon = value.lastIndexOf(':');
 
-						double levelTop = VariantCaller.calcLevelTop(line);
+		if (colon != -1 && dictionary.getSequence(value) == null) {
 
-						double levelMinor = VariantCaller.calcLevelMinor(line, minorPercentageFwd, minorPercentageRev);
+			name = value.substring(0, colon);
 
-						varResult.setLevelTop(levelTop);
+			String[] range = value.substring(colon + 1).split("-");
 
-						varResult.setLevelMinor(levelMinor);
+			start = Integer.parseInt(range[0]);
 
-						varResult.setLevel(hetLevel);
+			if (range.length > 1) {
+				end = Integer.parseInt(range[1]);
+			}
+		}
 
-						String res = VariantCaller.writeVariant(varResult);
+		SAMSequenceRecord sequence = dictionary.getSequence(name);
 
-						writerVariants.write(res);
-					}
-				}
+		if (sequence == null) {
+			throw new IllegalArgumentException("Contig " + name + " not found in header.");
+		}
 
-				if (!isHeteroplasmy) {
+		if (end == -1 || end > sequence.getSequenceLength()) {
+			end = sequence.getSequenceLength();
+		}
 
-					VariantResult varResult = VariantCaller.determineVariants(line, analyser.getMinCoverage());
+		if (start < 1 || start > end) {
+			throw new IllegalArgumentException("Invalid region " + value);
+		}
 
-					if (varResult != null) {
+		return new Interval(name, start, end);
+	}
 
-						double hetLevel = VariantCaller.calcVariantLevel(line, line.getMinorBasePercentsFWD(),
-								line.getMinorBasePercentsREV());
+	// mapper
+	private void analyseReads(File file, SamReader reader, BamAnalyser analyser, boolean deletions,
+			boolean insertions, Interval interval) throws Exception {
 
-						double levelTop = VariantCaller.calcLevelTop(line);
+		// TODO double check if primary and secondary alignment is used for
+		// CNV-Server
+		if (reader == null) {
+			reader = readerFactory.open(file);
+		}
 
-						double levelMinor = VariantCaller.calcLevelMinor(line, line.getMinorBasePercentsFWD(),
-								line.getMinorBasePercentsREV());
+		SAMRecordIterator fileIterator;
 
-						varResult.setLevelTop(levelTop);
+		if (interval == null) {
+			fileIterator = reader.iterator();
+		} else {
+			fileIterator = reader.query(interval.getContig(), interval.getStart(), interval.getEnd(), false);
+		}
+
+		// decompression and decoding run ahead in a separate thread
+		ReadPrefetcher prefetcher = new ReadPrefetcher(fileIterator);
+		prefetcher.start();
+
+		try {
+
+			List<SAMRecord> batch;
 
-						varResult.setLevelMinor(levelMinor);
+			while ((batch = prefetcher.nextBatch()) != null) {
 
-						varResult.setLevel(hetLevel);
+				if (interval != null && SPLIT.equals(interval.getName())) {
 
-						String res = VariantCaller.writeVariant(varResult);
-						
-						System.out.println(res);
+					List<SAMRecord> records = new ArrayList<SAMRecord>(batch.size());
 
-						writerVariants.write(res);
+					for (SAMRecord record : batch) {
+						// reads overlapping the start of a split belong to the previous interval
+						if (record.getAlignmentStart() >= interval.getStart()) {
+							records.add(record);
+						}
 					}
-				}
-				// raw data
-				if (writerRaw != null) {
-					String raw = line.toRawString();
-					writerRaw.write(raw);
+
+					batch = records;
 				}
 
+				analyser.analyseReads(batch, deletions, insertions);
 			}
+
+		} finally {
+			prefetcher.close();
 		}
+
+		reader.close();
 	}
 
 	public static void main(String[] args) {
@@ -423,4 +697,15 @@ public class PileupToolLocal extends Tool {
 
 	}
 
+	// pileup tasks of one input file and its checkpoint (null if none is written)
+	private static class Sample {
+
+		List<Future<BamAnalyser>> tasks = new ArrayList<Future<BamAnalyser>>();
+
+		File checkpoint;
+
+		String checkpointKey;
+
+	}
+
 }
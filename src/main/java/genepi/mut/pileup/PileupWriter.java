@@ -0,0 +1,176 @@
+package genepi.mut.pileup;
+
+import java.io.IOException;
+
+import genepi.io.text.LineWriter;
+import genepi.mut.objects.BasePosition;
+import genepi.mut.objects.Pileup;
+import genepi.mut.objects.VariantLine;
+import genepi.mut.objects.VariantResult;
+import genepi.mut.stats.CoverageStatistics;
+import genepi.mut.util.RawFileWriter;
+import genepi.mut.util.VariantCaller;
+
+/**
+ * Determines the variants of an analysed sample and writes them together with
+ * the raw lines (text and/or columnar). Used by PileupToolLocal and the local
+ * pipeline, samples are written one after the other by a single thread.
+ */
+public class PileupWriter {
+
+	// one instance is reused for all positions
+	private VariantLine line = new VariantLine();
+
+	private LineWriter writerVariants;
+
+	private LineWriter writerRaw;
+
+	private RawFileWriter writerRawBinary;
+
+	private CoverageStatistics statistics;
+
+	private double level;
+
+	public PileupWriter(LineWriter writerVariants, LineWriter writerRaw, RawFileWriter writerRawBinary, double level) {
+		this.writerVariants = writerVariants;
+		this.writerRaw = writerRaw;
+		this.writerRawBinary = writerRawBinary;
+		this.level = level;
+	}
+
+	// coverage of all written lines is added to the statistics
+	public void setStatistics(CoverageStatistics statistics) {
+		this.statistics = statistics;
+	}
+
+	public void write(BamAnalyser analyser) throws IOException {
+
+		Pileup pileup = analyser.getPileup();
+
+		String reference = analyser.getReferenceString();
+
+		String id = analyser.getFilename();
+
+		for (int pos = 1; pos <= pileup.getLength() && pos <= reference.length(); pos++) {
+
+			BasePosition basePos = pileup.get(pos);
+
+			if (basePos != null) {
+				basePos.setId(id);
+				basePos.setPos(pos);
+				write(analyser, basePos, reference.charAt(pos - 1), null);
+			}
+
+			// insertions are reported after their anchor position
+			for (int i = 1; i <= pileup.getInsertionCount(pos); i++) {
+
+				BasePosition insPos = pileup.getInsertion(pos, i);
+
+				if (insPos != null) {
+					insPos.setId(id);
+					insPos.setPos(pos);
+					write(analyser, insPos, '-', pos + "." + i);
+				}
+			}
+		}
+	}
+
+	private void write(BamAnalyser analyser, BasePosition basePos, char ref, String insPosition) throws IOException {
+
+		line.reset();
+
+		if (insPosition != null) {
+
+			line.setInsertion(true);
+
+			line.setInsPosition(insPosition);
+		}
+
+		line.setRef(ref);
+
+		// create all required frequencies for one position
+		// applies checkBases()
+		line.parseLine(basePos, level);
+
+		boolean isHeteroplasmy = false;
+
+		for (char base : line.getMinors()) {
+
+			// this only works since minorFWD and minorREV are equal
+			double minorPercentageFwd = VariantCaller.getMinorPercentageFwd(line, base);
+
+			double minorPercentageRev = VariantCaller.getMinorPercentageRev(line, base);
+
+			double llrFwd = VariantCaller.determineLlrFwd(line, base);
+
+			double llrRev = VariantCaller.determineLlrRev(line, base);
+
+			VariantResult varResult = VariantCaller.determineLowLevelVariant(line, minorPercentageFwd,
+					minorPercentageRev, llrFwd, llrRev, level, base);
+
+			if (varResult.getType() == VariantCaller.LOW_LEVEL_VARIANT) {
+
+				isHeteroplasmy = true;
+
+				// set correct minor base for output result!
+				varResult.setMinor(base);
+
+				double hetLevel = VariantCaller.calcVariantLevel(line, minorPercentageFwd, minorPercentageRev);
+
+				double levelTop = VariantCaller.calcLevelTop(line);
+
+				double levelMinor = VariantCaller.calcLevelMinor(line, minorPercentageFwd, minorPercentageRev);
+
+				varResult.setLevelTop(levelTop);
+
+				varResult.setLevelMinor(levelMinor);
+
+				varResult.setLevel(hetLevel);
+
+				String res = VariantCaller.writeVariant(varResult);
+
+				writerVariants.write(res);
+			}
+		}
+
+		if (!isHeteroplasmy) {
+
+			VariantResult varResult = VariantCaller.determineVariants(line, analyser.getMinCoverage());
+
+			if (varResult != null) {
+
+				double hetLevel = VariantCaller.calcVariantLevel(line, line.getMinorBasePercentsFWD(),
+						line.getMinorBasePercentsREV());
+
+				double levelTop = VariantCaller.calcLevelTop(line);
+
+				double levelMinor = VariantCaller.calcLevelMinor(line, line.getMinorBasePercentsFWD(),
+						line.getMinorBasePercentsREV());
+
+				varResult.setLevelTop(levelTop);
+
+				varResult.setLevelMinor(levelMinor);
+
+				varResult.setLevel(hetLevel);
+
+				String res = VariantCaller.writeVariant(varResult);
+
+				writerVariants.write(res);
+			}
+		}
+		// raw data
+		if (writerRaw != null) {
+			String raw = line.toRawString();
+			writerRaw.write(raw);
+		}
+
+		if (writerRawBinary != null) {
+			writerRawBinary.write(line);
+		}
+
+		if (statistics != null) {
+			statistics.add(line.getCovFWD() + line.getCovREV());
+		}
+	}
+
+}
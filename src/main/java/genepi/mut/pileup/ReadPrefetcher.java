@@ -0,0 +1,134 @@
+package genepi.mut.pileup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMRecordIterator;
+
+/**
+ * Reads and decodes records in a background thread and hands them over in
+ * batches through a bounded queue. The reader blocks if consumers are slower
+ * (e.g. BAQ), so at most capacity * batchSize records are kept in memory.
+ * nextBatch can be called from several consumer threads.
+ */
+public class ReadPrefetcher {
+
+	public static final int DEFAULT_BATCH_SIZE = 1000;
+
+	public static final int DEFAULT_CAPACITY = 16;
+
+	private static final List<SAMRecord> END = Collections.emptyList();
+
+	private SAMRecordIterator iterator;
+
+	private int batchSize;
+
+	private BlockingQueue<List<SAMRecord>> queue;
+
+	private Thread thread;
+
+	private volatile Exception error;
+
+	public ReadPrefetcher(SAMRecordIterator iterator) {
+		this(iterator, DEFAULT_BATCH_SIZE, DEFAULT_CAPACITY);
+	}
+
+	public ReadPrefetcher(SAMRecordIterator iterator, int batchSize, int capacity) {
+		this.iterator = iterator;
+		this.batchSize = batchSize;
+		this.queue = new ArrayBlockingQueue<List<SAMRecord>>(capacity);
+	}
+
+	public void start() {
+
+		thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				readRecords();
+			}
+		}, "read-prefetcher");
+
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	private void readRecords() {
+
+		try {
+
+			List<SAMRecord> batch = new ArrayList<SAMRecord>(batchSize);
+
+			while (iterator.hasNext()) {
+
+				SAMRecord record = iterator.next();
+
+				// decode bases, qualities and cigar here and not in the consumer
+				record.eagerDecode();
+				batch.add(record);
+
+				if (batch.size() == batchSize) {
+					queue.put(batch);
+					batch = new ArrayList<SAMRecord>(batchSize);
+				}
+
+				if (Thread.currentThread().isInterrupted()) {
+					return;
+				}
+			}
+
+			if (!batch.isEmpty()) {
+				queue.put(batch);
+			}
+
+		} catch (InterruptedException e) {
+			return;
+		} catch (Exception e) {
+			error = e;
+		}
+
+		try {
+			queue.put(END);
+		} catch (InterruptedException e) {
+			return;
+		}
+	}
+
+	// returns null if all records are consumed
+	public List<SAMRecord> nextBatch() throws IOException, InterruptedException {
+
+		List<SAMRecord> batch = queue.take();
+
+		if (batch == END) {
+
+			// let other consumers see the end too
+			queue.put(END);
+
+			if (error != null) {
+				throw new IOException("Reading records failed", error);
+			}
+
+			return null;
+		}
+
+		return batch;
+	}
+
+	public void close() throws InterruptedException {
+
+		if (thread != null) {
+			thread.interrupt();
+			// unblock a waiting put
+			queue.clear();
+			thread.join();
+			thread = null;
+		}
+
+		iterator.close();
+	}
+
+}
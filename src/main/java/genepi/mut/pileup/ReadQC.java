@@ -0,0 +1,272 @@
+package genepi.mut.pileup;
+
+import htsjdk.samtools.SAMRecord;
+
+/**
+ * QC metrics of one sample, collected by BamAnalyser while the reads are
+ * analysed: filter reasons, strand balance, read depth per position, insert
+ * sizes and qualities of all aligned bases. Depth is kept as a
+ * difference array (+1 at the alignment start, -1 after the end), so each
+ * read costs two updates. Analysers of the same sample are combined with
+ * merge().
+ */
+public class ReadQC {
+
+	public static final int PASSED = -1;
+
+	public static final int BAD_MAPPING = 0;
+
+	public static final int UNMAPPED = 1;
+
+	public static final int DUPLICATE = 2;
+
+	public static final int SHORT_READ = 3;
+
+	public static final int BAD_ALIGNMENT = 4;
+
+	// counter names, same as in the Hadoop job
+	public static final String[] FILTERS = { "BAD-MAPPING", "UNMAPPED", "DUPLICATE", "SHORT-READ", "BAD-ALIGNMENT" };
+
+	public static final int MAX_INSERT_SIZE = 1000;
+
+	public static final int MAX_QUALITY = 93;
+
+	public static final String header = "SAMPLE\tOVERALL-READS\tUNFILTERED\tFILTERED\tBAD-MAPPING\tUNMAPPED\tDUPLICATE\tSHORT-READ\tBAD-ALIGNMENT\tFWD-READ\tREV-READ\tFWD-RATIO\tWRONG-REF\tMEAN-DEPTH\tMIN-DEPTH\tMAX-DEPTH\tMEAN-BASE-QUALITY\tMEDIAN-INSERT-SIZE";
+
+	private long overall;
+
+	private long[] filtered = new long[FILTERS.length];
+
+	private long fwdReads;
+
+	private long revReads;
+
+	// passed reads aligned to another sequence than the reference
+	private long wrongReference;
+
+	private int[] depth;
+
+	// last bucket holds all larger inserts
+	private long[] insertSizes = new long[MAX_INSERT_SIZE + 1];
+
+	private long[] qualities = new long[MAX_QUALITY + 1];
+
+	public ReadQC(int length) {
+		depth = new int[length + 2];
+	}
+
+	public void addRead(SAMRecord samRecord, int filter, boolean otherReference) {
+
+		overall++;
+
+		if (filter != PASSED) {
+			filtered[filter]++;
+			return;
+		}
+
+		if (otherReference) {
+			wrongReference++;
+		}
+
+		if (samRecord.getReadNegativeStrandFlag()) {
+			revReads++;
+		} else {
+			fwdReads++;
+		}
+
+		int start = Math.max(1, samRecord.getAlignmentStart());
+		int end = Math.min(depth.length - 2, samRecord.getAlignmentEnd());
+
+		if (start <= end) {
+			depth[start]++;
+			depth[end + 1]--;
+		}
+
+		// each pair once
+		if (samRecord.getReadPairedFlag() && samRecord.getFirstOfPairFlag() && !samRecord.getMateUnmappedFlag()) {
+			int insertSize = Math.abs(samRecord.getInferredInsertSize());
+			if (insertSize > 0) {
+				insertSizes[Math.min(insertSize, MAX_INSERT_SIZE)]++;
+			}
+		}
+	}
+
+	public void addBaseQuality(byte quality) {
+		qualities[Math.min(Math.max(quality, 0), MAX_QUALITY)]++;
+	}
+
+	public void merge(ReadQC other) {
+
+		overall += other.overall;
+		fwdReads += other.fwdReads;
+		revReads += other.revReads;
+		wrongReference += other.wrongReference;
+
+		for (int i = 0; i < filtered.length; i++) {
+			filtered[i] += other.filtered[i];
+		}
+
+		for (int i = 0; i < depth.length && i < other.depth.length; i++) {
+			depth[i] += other.depth[i];
+		}
+
+		for (int i = 0; i < insertSizes.length; i++) {
+			insertSizes[i] += other.insertSizes[i];
+		}
+
+		for (int i = 0; i < qualities.length; i++) {
+			qualities[i] += other.qualities[i];
+		}
+	}
+
+	public long getOverall() {
+		return overall;
+	}
+
+	public long getFiltered() {
+		long sum = 0;
+		for (long count : filtered) {
+			sum += count;
+		}
+		return sum;
+	}
+
+	public long getFiltered(int filter) {
+		return filtered[filter];
+	}
+
+	public long getUnfiltered() {
+		return fwdReads + revReads;
+	}
+
+	public long getWrongReference() {
+		return wrongReference;
+	}
+
+	public long getFwdReads() {
+		return fwdReads;
+	}
+
+	public long getRevReads() {
+		return revReads;
+	}
+
+	// read depth per position (1-based), index 0 is unused
+	public int[] getDepth() {
+
+		int[] result = new int[depth.length - 1];
+
+		int current = 0;
+
+		for (int pos = 1; pos < result.length; pos++) {
+			current += depth[pos];
+			result[pos] = current;
+		}
+
+		return result;
+	}
+
+	public long[] getInsertSizes() {
+		return insertSizes;
+	}
+
+	public long[] getBaseQualities() {
+		return qualities;
+	}
+
+	public long getBases() {
+		long sum = 0;
+		for (long count : qualities) {
+			sum += count;
+		}
+		return sum;
+	}
+
+	// bases with at least the given quality
+	public long getBases(int minQuality) {
+		long sum = 0;
+		for (int q = Math.max(minQuality, 0); q < qualities.length; q++) {
+			sum += qualities[q];
+		}
+		return sum;
+	}
+
+	public long getBaseQualitySum() {
+		long sum = 0;
+		for (int q = 0; q < qualities.length; q++) {
+			sum += q * qualities[q];
+		}
+		return sum;
+	}
+
+	public long getPairs() {
+		long sum = 0;
+		for (long count : insertSizes) {
+			sum += count;
+		}
+		return sum;
+	}
+
+	// larger inserts are counted as MAX_INSERT_SIZE
+	public long getInsertSizeSum() {
+		long sum = 0;
+		for (int size = 0; size < insertSizes.length; size++) {
+			sum += size * insertSizes[size];
+		}
+		return sum;
+	}
+
+	public double getMeanBaseQuality() {
+		long bases = getBases();
+		return bases == 0 ? 0 : (double) getBaseQualitySum() / bases;
+	}
+
+	public int getMedianInsertSize() {
+		long pairs = getPairs();
+		long seen = 0;
+		for (int size = 0; size < insertSizes.length; size++) {
+			seen += insertSizes[size];
+			if (pairs > 0 && seen * 2 >= pairs) {
+				return size;
+			}
+		}
+		return 0;
+	}
+
+	public String toString(String sample) {
+
+		int[] depth = getDepth();
+
+		long sum = 0;
+		int min = Integer.MAX_VALUE;
+		int max = 0;
+
+		for (int pos = 1; pos < depth.length; pos++) {
+			sum += depth[pos];
+			min = Math.min(min, depth[pos]);
+			max = Math.max(max, depth[pos]);
+		}
+
+		int positions = depth.length - 1;
+
+		StringBuilder builder = new StringBuilder();
+
+		builder.append(sample).append('\t').append(overall).append('\t').append(getUnfiltered()).append('\t')
+				.append(getFiltered());
+
+		for (long count : filtered) {
+			builder.append('\t').append(count);
+		}
+
+		builder.append('\t').append(fwdReads).append('\t').append(revReads);
+		builder.append('\t').append(getUnfiltered() == 0 ? 0 : (double) fwdReads / getUnfiltered());
+		builder.append('\t').append(wrongReference);
+		builder.append('\t').append(positions == 0 ? 0 : (double) sum / positions);
+		builder.append('\t').append(positions == 0 ? 0 : min).append('\t').append(max);
+		builder.append('\t').append(getMeanBaseQuality());
+		builder.append('\t').append(getMedianInsertSize());
+
+		return builder.toString();
+	}
+
+}
@@ -0,0 +1,70 @@
+package genepi.mut.pipeline;
+
+import genepi.hadoop.common.WorkflowContext;
+import genepi.mut.align.AlignPileupStep;
+import genepi.mut.align.AlignStep;
+import genepi.mut.pileup.PileupStep;
+import genepi.mut.sort.SortStep;
+
+/**
+ * Runs the MapReduce steps one after the other, intermediate files are
+ * written to HDFS. With "writeBam" set to false, FASTQ input is aligned and
+ * analysed without sorted BAM files (see AlignPileupStep).
+ */
+public class HadoopBackend implements PipelineBackend {
+
+	@Override
+	public boolean run(WorkflowContext context, final String folder) {
+
+		String inType = context.get("inType");
+
+		boolean writeBam = !"false".equals(context.get("writeBam"));
+
+		if ((inType.equals("se") || inType.equals("pe")) && !writeBam) {
+
+			AlignPileupStep alignPileup = new AlignPileupStep() {
+				@Override
+				public String getFolder(Class clazz) {
+					return folder;
+				}
+			};
+
+			return alignPileup.run(context);
+		}
+
+		if (inType.equals("se") || inType.equals("pe")) {
+
+			AlignStep align = new AlignStep() {
+				@Override
+				public String getFolder(Class clazz) {
+					return folder;
+				}
+			};
+
+			if (!align.run(context)) {
+				return false;
+			}
+
+			SortStep sort = new SortStep() {
+				@Override
+				public String getFolder(Class clazz) {
+					return folder;
+				}
+			};
+
+			if (!sort.run(context)) {
+				return false;
+			}
+		}
+
+		PileupStep pileup = new PileupStep() {
+			@Override
+			public String getFolder(Class clazz) {
+				return folder;
+			}
+		};
+
+		return pileup.run(context);
+	}
+
+}
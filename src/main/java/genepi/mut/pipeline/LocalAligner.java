@@ -0,0 +1,143 @@
+package genepi.mut.pipeline;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import com.github.lindenb.jbwa.jni.AlnRgn;
+import com.github.lindenb.jbwa.jni.BwaIndex;
+import com.github.lindenb.jbwa.jni.BwaMem;
+import com.github.lindenb.jbwa.jni.ShortRead;
+
+import genepi.mut.align.AlignedReadBuilder;
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.fastq.FastqRecord;
+
+/**
+ * Aligns batches of FASTQ reads with jbwa. The index is shared, every worker
+ * thread gets its own aligner. Records are created with the given header.
+ */
+public class LocalAligner {
+
+	private BwaIndex index;
+
+	private ThreadLocal<BwaMem> mems;
+
+	private List<BwaMem> openMems = Collections.synchronizedList(new ArrayList<BwaMem>());
+
+	private SAMFileHeader header;
+
+	public LocalAligner(String jbwaLib, String fastaPath, SAMFileHeader header) throws IOException {
+
+		/** load JNI */
+		System.load(jbwaLib);
+
+		this.index = new BwaIndex(new File(fastaPath));
+
+		this.header = header;
+
+		mems = new ThreadLocal<BwaMem>() {
+			@Override
+			protected BwaMem initialValue() {
+				BwaMem mem = new BwaMem(index);
+				openMems.add(mem);
+				return mem;
+			}
+		};
+	}
+
+	public Callable<List<SAMRecord>> alignSingle(final List<FastqRecord> reads) {
+
+		return new Callable<List<SAMRecord>>() {
+			@Override
+			public List<SAMRecord> call() throws Exception {
+
+				BwaMem mem = mems.get();
+
+				AlignedReadBuilder builder = new AlignedReadBuilder(header);
+
+				List<SAMRecord> records = new ArrayList<SAMRecord>(reads.size());
+
+				for (FastqRecord fastq : reads) {
+
+					String name = getName(fastq);
+					String seq = fastq.getReadString();
+					String qual = fastq.getBaseQualityString();
+
+					ShortRead read = new ShortRead(name, seq.getBytes(), qual.getBytes());
+
+					for (AlnRgn alignedRead : mem.align(read)) {
+
+						SAMRecord samRecord = builder.build(name, seq, qual, alignedRead);
+
+						if (samRecord != null) {
+							records.add(samRecord);
+						}
+					}
+				}
+
+				return records;
+			}
+		};
+	}
+
+	// reads1 and reads2 contain the mates in the same order
+	public Callable<List<SAMRecord>> alignPaired(final List<FastqRecord> reads1, final List<FastqRecord> reads2) {
+
+		return new Callable<List<SAMRecord>>() {
+			@Override
+			public List<SAMRecord> call() throws Exception {
+
+				List<ShortRead> L1 = new ArrayList<ShortRead>(reads1.size());
+				List<ShortRead> L2 = new ArrayList<ShortRead>(reads2.size());
+
+				for (int i = 0; i < reads1.size() && i < reads2.size(); i++) {
+					L1.add(toShortRead(reads1.get(i)));
+					L2.add(toShortRead(reads2.get(i)));
+				}
+
+				AlignedReadBuilder builder = new AlignedReadBuilder(header);
+
+				List<SAMRecord> records = new ArrayList<SAMRecord>(L1.size() * 2);
+
+				for (String read : mems.get().align(L1, L2)) {
+					records.addAll(builder.parsePaired(read));
+				}
+
+				return records;
+			}
+		};
+	}
+
+	public void close() {
+
+		for (BwaMem mem : openMems) {
+			mem.dispose();
+		}
+
+		openMems.clear();
+
+		index.close();
+	}
+
+	// first token of the header, without /1 or /2 (old ILLUMINA format)
+	public static String getName(FastqRecord fastq) {
+
+		String name = fastq.getReadName().split("\\s+")[0];
+
+		if (name.length() > 2 && name.charAt(name.length() - 2) == '/') {
+			name = name.substring(0, name.length() - 2);
+		}
+
+		return name;
+	}
+
+	private static ShortRead toShortRead(FastqRecord fastq) {
+		return new ShortRead(getName(fastq), fastq.getReadString().getBytes(), fastq.getBaseQualityString().getBytes());
+	}
+
+}
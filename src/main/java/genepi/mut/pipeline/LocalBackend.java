@@ -0,0 +1,430 @@
+package genepi.mut.pipeline;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import genepi.hadoop.common.WorkflowContext;
+import genepi.io.FileUtil;
+import genepi.io.text.LineWriter;
+import genepi.mut.objects.Extracter;
+import genepi.mut.pileup.BamAnalyser;
+import genepi.mut.pileup.PileupMapper;
+import genepi.mut.pileup.PileupWriter;
+import genepi.mut.pileup.ReadQC;
+import genepi.mut.util.BaqEngine;
+import genepi.mut.util.MemoryReferenceSource;
+import genepi.mut.util.ReferenceUtil;
+import genepi.mut.util.ReferenceUtil.Reference;
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMFileWriter;
+import htsjdk.samtools.SAMFileWriterFactory;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMRecordIterator;
+import htsjdk.samtools.SamReader;
+import htsjdk.samtools.SamReaderFactory;
+import htsjdk.samtools.ValidationStringency;
+import htsjdk.samtools.fastq.FastqReader;
+import htsjdk.samtools.fastq.FastqRecord;
+
+/**
+ * Runs alignment and pileup of all samples in one JVM on local files. Reads
+ * are aligned in batches on a thread pool and passed in memory to the
+ * analyser of their sample, so no intermediate SAM or BAM files are written
+ * and no sort is needed. Sorted BAM files are only written if "bamLocal" is
+ * set. Variants and raw lines are written to "variantsLocal" and "rawLocal".
+ */
+public class LocalBackend implements PipelineBackend {
+
+	// reads per alignment task
+	public static final int BATCH_SIZE = 10000;
+
+	private String mode = "mtdna";
+
+	private int baseQual;
+
+	private int mapQual;
+
+	private int alignQual;
+
+	private int minCoverage;
+
+	private boolean baq;
+
+	private boolean deletions;
+
+	private boolean insertions;
+
+	private int threads;
+
+	@Override
+	public boolean run(WorkflowContext context, String folder) {
+
+		String input = context.get("input");
+		String inType = context.get("inType");
+		String archive = context.get("archive");
+		String rawLocal = context.get("rawLocal");
+		String variantsLocal = context.get("variantsLocal");
+		String bamLocal = context.get("bamLocal");
+		String jbwaLib = context.get("jbwaLib");
+
+		baseQual = getInteger(context, "baseQuality", 20);
+		mapQual = getInteger(context, "mapQuality", 20);
+		alignQual = getInteger(context, "alignQuality", 30);
+		minCoverage = getInteger(context, "minCoverage", 30);
+		threads = Math.max(1, getInteger(context, "threads", Runtime.getRuntime().availableProcessors()));
+		baq = Boolean.valueOf(context.get("baq"));
+		deletions = Boolean.valueOf(context.get("deletions"));
+		insertions = Boolean.valueOf(context.get("insertions"));
+
+		double level = context.get("level") == null ? 0.01 : Double.parseDouble(context.get("level"));
+
+		boolean fastq = inType.equals("se") || inType.equals("pe");
+
+		// reference archive is extracted next to the archive (see SortStep)
+		String referenceFolder = archive.substring(0, archive.lastIndexOf("/") + 1);
+		Extracter.extract(archive, referenceFolder);
+		String refPath = ReferenceUtil.findFileinDir(new File(referenceFolder), ".fasta");
+
+		if (refPath == null) {
+			context.error("No reference found in " + archive);
+			return false;
+		}
+
+		List<File[]> samples = findSamples(input, inType);
+
+		if (samples == null || samples.isEmpty()) {
+			context.error("No input files found in " + input);
+			return false;
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+		BaqEngine baqEngine = null;
+
+		if (baq && threads > 1) {
+			baqEngine = new BaqEngine(refPath, mode, threads);
+		}
+
+		LocalAligner aligner = null;
+
+		// CRAMs are decoded with the in-memory reference (see PileupToolLocal)
+		MemoryReferenceSource referenceSource = null;
+
+		LineWriter writerVariants = null;
+
+		LineWriter writerRaw = null;
+
+		ReadQC qc = null;
+
+		try {
+
+			SAMFileHeader header = ReferenceUtil.createHeader(refPath);
+
+			if (fastq) {
+
+				if (jbwaLib == null) {
+					String jbwaFolder = FileUtil.path(referenceFolder, "jbwa");
+					new File(jbwaFolder).mkdirs();
+					Extracter.extract(FileUtil.path(folder, "jbwa-native.tar"), jbwaFolder + "/");
+					jbwaLib = FileUtil.path(jbwaFolder, "libbwajni.so");
+				}
+
+				aligner = new LocalAligner(jbwaLib, refPath, header);
+
+			} else {
+
+				referenceSource = new MemoryReferenceSource(refPath);
+			}
+
+			if (bamLocal != null) {
+				new File(bamLocal).mkdirs();
+			}
+
+			writerVariants = new LineWriter(variantsLocal);
+			writerVariants.write(BamAnalyser.headerVariants);
+
+			writerRaw = new LineWriter(rawLocal);
+			writerRaw.write(BamAnalyser.headerRaw);
+
+			PileupWriter pileupWriter = new PileupWriter(writerVariants, writerRaw, null, level);
+
+			for (File[] files : samples) {
+
+				// same sample names as the Hadoop backend
+				String sample = PileupMapper.getSampleName(files[0].getName());
+
+				System.out.println("Processing: " + sample);
+
+				BamAnalyser analyser = new BamAnalyser(sample, refPath, baseQual, mapQual, alignQual, baq,
+						minCoverage, mode);
+
+				analyser.setBaqEngine(baqEngine);
+
+				if (fastq) {
+
+					SAMFileWriter bamWriter = null;
+
+					if (bamLocal != null) {
+						SAMFileHeader bamHeader = header.clone();
+						bamHeader.setSortOrder(SAMFileHeader.SortOrder.coordinate);
+						bamWriter = new SAMFileWriterFactory().makeBAMWriter(bamHeader, false,
+								new File(bamLocal, sample + ".bam"));
+					}
+
+					try {
+						alignReads(files, aligner, executor, analyser, bamWriter);
+					} finally {
+						if (bamWriter != null) {
+							bamWriter.close();
+						}
+					}
+
+				} else if (!analyseBam(files[0], analyser, referenceSource)) {
+					continue;
+				}
+
+				pileupWriter.write(analyser);
+
+				analyser.close();
+
+				if (qc == null) {
+					qc = analyser.getQC();
+				} else {
+					qc.merge(analyser.getQC());
+				}
+			}
+
+		} catch (Exception e) {
+			e.printStackTrace();
+			context.error("Pipeline failed: " + e.getMessage());
+			return false;
+		} finally {
+			executor.shutdownNow();
+			// running alignments still use the native index
+			boolean terminated = false;
+			try {
+				terminated = executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			if (baqEngine != null) {
+				baqEngine.close();
+			}
+			if (aligner != null && terminated) {
+				aligner.close();
+			}
+			if (referenceSource != null) {
+				referenceSource.close();
+			}
+			try {
+				if (writerVariants != null) {
+					writerVariants.close();
+				}
+				if (writerRaw != null) {
+					writerRaw.close();
+				}
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+
+		if (qc == null || qc.getUnfiltered() == 0) {
+			context.error("No reads passed Quality Control!");
+			return false;
+		}
+
+		context.ok("Overall Reads: " + qc.getOverall() + "<br>Filtered Reads: " + qc.getFiltered()
+				+ "<br>Passed Reads: " + qc.getUnfiltered());
+
+		return true;
+	}
+
+	// aligns the FASTQ file(s) of one sample, at most two batches per thread
+	// are in memory. Batches are analysed in input order on this thread
+	private void alignReads(File[] files, LocalAligner aligner, ExecutorService executor, BamAnalyser analyser,
+			SAMFileWriter bamWriter) throws Exception {
+
+		LinkedList<Future<List<SAMRecord>>> tasks = new LinkedList<Future<List<SAMRecord>>>();
+
+		FastqReader reader1 = new FastqReader(files[0]);
+
+		FastqReader reader2 = files.length > 1 ? new FastqReader(files[1]) : null;
+
+		try {
+
+			while (reader1.hasNext()) {
+
+				List<FastqRecord> reads1 = nextBatch(reader1);
+
+				if (reader2 == null) {
+					tasks.add(executor.submit(aligner.alignSingle(reads1)));
+				} else {
+					tasks.add(executor.submit(aligner.alignPaired(reads1, nextBatch(reader2))));
+				}
+
+				if (tasks.size() > threads * 2) {
+					analyseBatch(tasks.removeFirst().get(), analyser, bamWriter);
+				}
+			}
+
+			while (!tasks.isEmpty()) {
+				analyseBatch(tasks.removeFirst().get(), analyser, bamWriter);
+			}
+
+		} finally {
+			reader1.close();
+			if (reader2 != null) {
+				reader2.close();
+			}
+		}
+	}
+
+	private void analyseBatch(List<SAMRecord> records, BamAnalyser analyser, SAMFileWriter bamWriter)
+			throws Exception {
+
+		// BAQ overwrites the qualities, the BAM file gets the original ones
+		if (bamWriter != null) {
+			for (SAMRecord record : records) {
+				bamWriter.addAlignment(record.deepCopy());
+			}
+		}
+
+		analyser.analyseReads(records, deletions, insertions);
+	}
+
+	private List<FastqRecord> nextBatch(FastqReader reader) {
+
+		List<FastqRecord> batch = new ArrayList<FastqRecord>(BATCH_SIZE);
+
+		while (batch.size() < BATCH_SIZE && reader.hasNext()) {
+			batch.add(reader.next());
+		}
+
+		return batch;
+	}
+
+	// returns false if the file is not aligned to a supported reference
+	private boolean analyseBam(File file, BamAnalyser analyser, MemoryReferenceSource referenceSource)
+			throws Exception {
+
+		SamReader reader = SamReaderFactory.makeDefault().validationStringency(ValidationStringency.SILENT)
+				.referenceSource(referenceSource).open(file);
+
+		try {
+
+			Reference reference = ReferenceUtil.determineReference(reader.getFileHeader().getSequenceDictionary());
+
+			if (reference != Reference.rcrs && reference != Reference.precisionId) {
+				System.out.println("File " + file.getName() + " excluded. Can not identify a valid reference length!");
+				return false;
+			}
+
+			SAMRecordIterator iterator = reader.iterator();
+
+			try {
+
+				List<SAMRecord> batch = new ArrayList<SAMRecord>(BATCH_SIZE);
+
+				while (iterator.hasNext()) {
+
+					batch.add(iterator.next());
+
+					if (batch.size() == BATCH_SIZE) {
+						analyser.analyseReads(batch, deletions, insertions);
+						batch.clear();
+					}
+				}
+
+				analyser.analyseReads(batch, deletions, insertions);
+
+			} finally {
+				iterator.close();
+			}
+
+		} finally {
+			reader.close();
+		}
+
+		return true;
+	}
+
+	// one entry per sample: the FASTQ file (se), both FASTQ files (pe) or the BAM
+	private List<File[]> findSamples(String input, String inType) {
+
+		File[] files = new File(input).listFiles(new FilenameFilter() {
+			public boolean accept(File dir, String name) {
+				return !name.startsWith(".");
+			}
+		});
+
+		if (files == null) {
+			return null;
+		}
+
+		Arrays.sort(files);
+
+		List<File[]> samples = new ArrayList<File[]>();
+
+		if (inType.equals("pe")) {
+
+			// mates are found by the name of the first read (see AlignStep)
+			Map<String, List<File>> pairs = new LinkedHashMap<String, List<File>>();
+
+			for (File file : files) {
+
+				FastqReader reader = new FastqReader(file);
+				String key = reader.hasNext() ? LocalAligner.getName(reader.next()) : file.getName();
+				reader.close();
+
+				List<File> values = pairs.get(key);
+
+				if (values == null) {
+					values = new ArrayList<File>();
+					pairs.put(key, values);
+				}
+
+				values.add(file);
+			}
+
+			for (List<File> values : pairs.values()) {
+
+				if (values.size() != 2) {
+					System.out.println("Pair is missing for " + values.get(0).getName());
+					return null;
+				}
+
+				samples.add(values.toArray(new File[2]));
+			}
+
+		} else {
+
+			for (File file : files) {
+
+				String name = file.getName().toLowerCase();
+
+				if (inType.equals("se") || name.endsWith(".bam") || name.endsWith(".cram")) {
+					samples.add(new File[] { file });
+				}
+			}
+		}
+
+		return samples;
+	}
+
+	private int getInteger(WorkflowContext context, String name, int defaultValue) {
+		String value = context.get(name);
+		return value == null ? defaultValue : Integer.parseInt(value);
+	}
+
+}
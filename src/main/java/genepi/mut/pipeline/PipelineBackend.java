@@ -0,0 +1,15 @@
+package genepi.mut.pipeline;
+
+import genepi.hadoop.common.WorkflowContext;
+
+/**
+ * Execution engine for the whole workflow (align, sort and pileup). Reads the
+ * same context parameters as AlignStep, SortStep and PileupStep. Backends are
+ * selected by PipelineStep, other engines can be plugged in by class name.
+ */
+public interface PipelineBackend {
+
+	// folder contains the distributed files (jbwa-native.tar, job.config)
+	public boolean run(WorkflowContext context, String folder);
+
+}
@@ -0,0 +1,42 @@
+package genepi.mut.pipeline;
+
+import genepi.hadoop.common.WorkflowContext;
+import genepi.hadoop.common.WorkflowStep;
+
+/**
+ * Runs align, sort and pileup with the backend set in "backend": "hadoop"
+ * (default, MapReduce), "local" (one JVM, see LocalBackend) or the class name
+ * of a PipelineBackend.
+ */
+public class PipelineStep extends WorkflowStep {
+
+	@Override
+	public boolean run(WorkflowContext context) {
+
+		PipelineBackend backend;
+
+		try {
+			backend = createBackend(context.get("backend"));
+		} catch (Exception e) {
+			e.printStackTrace();
+			context.error("Backend " + context.get("backend") + " could not be loaded.");
+			return false;
+		}
+
+		return backend.run(context, getFolder(PipelineStep.class));
+	}
+
+	public static PipelineBackend createBackend(String name) throws Exception {
+
+		if (name == null || name.equals("hadoop")) {
+			return new HadoopBackend();
+		}
+
+		if (name.equals("local")) {
+			return new LocalBackend();
+		}
+
+		return (PipelineBackend) Class.forName(name).newInstance();
+	}
+
+}
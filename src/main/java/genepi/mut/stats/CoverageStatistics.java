@@ -0,0 +1,125 @@
+package genepi.mut.stats;
+
+import java.util.Arrays;
+
+import genepi.io.table.writer.CsvTableWriter;
+
+/**
+ * On-line coverage statistics of one sample. Mean and SD are updated with
+ * Welford's algorithm, quantiles are taken from a histogram of the (integer)
+ * coverage values, so no value is stored. An instance can be reused for the
+ * next sample after reset().
+ */
+public class CoverageStatistics {
+
+	public static final String[] COLUMNS = { "SampleID", "Mean-Coverage", "SD-Coverage", "Min-Coverage",
+			"Max-Coverage", "Q1-Coverage", "Median-Coverage", "Q3-Coverage" };
+
+	private long count;
+
+	private double mean;
+
+	private double m2;
+
+	private int min;
+
+	private int max;
+
+	private long[] histogram = new long[1024];
+
+	public CoverageStatistics() {
+		reset();
+	}
+
+	public void add(int coverage) {
+
+		count++;
+
+		double delta = coverage - mean;
+		mean = mean + delta / count;
+		m2 = m2 + delta * (coverage - mean);
+
+		if (coverage < min) {
+			min = coverage;
+		}
+
+		if (coverage > max) {
+			max = coverage;
+		}
+
+		if (coverage >= histogram.length) {
+			histogram = Arrays.copyOf(histogram, Math.max(coverage + 1, histogram.length * 2));
+		}
+
+		histogram[Math.max(coverage, 0)]++;
+	}
+
+	public void reset() {
+		if (count > 0) {
+			Arrays.fill(histogram, 0, Math.min(max + 1, histogram.length), 0);
+		}
+		count = 0;
+		mean = 0;
+		m2 = 0;
+		min = Integer.MAX_VALUE;
+		max = Integer.MIN_VALUE;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public double getMean() {
+		return count == 0 ? Double.NaN : mean;
+	}
+
+	// sample standard deviation, same as DescriptiveStatistics
+	public double getStandardDeviation() {
+		if (count == 0) {
+			return Double.NaN;
+		}
+		return count == 1 ? 0 : Math.sqrt(m2 / (count - 1));
+	}
+
+	public double getMin() {
+		return count == 0 ? Double.NaN : min;
+	}
+
+	public double getMax() {
+		return count == 0 ? Double.NaN : max;
+	}
+
+	// nearest-rank quantile, p in (0, 1]
+	public double getQuantile(double p) {
+
+		if (count == 0) {
+			return Double.NaN;
+		}
+
+		long rank = Math.max(1, (long) Math.ceil(p * count));
+
+		long seen = 0;
+
+		for (int coverage = Math.max(min, 0); coverage <= max; coverage++) {
+			seen += histogram[coverage];
+			if (seen >= rank) {
+				return coverage;
+			}
+		}
+
+		return max;
+	}
+
+	public void write(CsvTableWriter writer, String sample) {
+		writer.setString(0, sample);
+		writer.setDouble(1, getMean());
+		writer.setDouble(2, getStandardDeviation());
+		writer.setDouble(3, getMin());
+		writer.setDouble(4, getMax());
+		writer.setDouble(5, getQuantile(0.25));
+		writer.setDouble(6, getQuantile(0.5));
+		writer.setDouble(7, getQuantile(0.75));
+		writer.next();
+	}
+
+}
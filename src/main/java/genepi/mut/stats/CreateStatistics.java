@@ -1,12 +1,12 @@
 package genepi.mut.stats;
 
 import java.io.File;
-import java.util.ArrayList;
+import java.io.IOException;
 
-import org.apache.commons.lang.ArrayUtils;
-import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
-import genepi.io.table.reader.CsvTableReader;
 import genepi.io.table.writer.CsvTableWriter;
+import genepi.mut.util.MappedLineReader;
+import genepi.mut.util.RawFileReader;
+import genepi.mut.util.RawFileWriter;
 
 public class CreateStatistics {
 
@@ -25,58 +25,105 @@ public class CreateStatistics {
 
 		File file = new File(input);
 
-		CsvTableReader reader = new CsvTableReader(file.getAbsolutePath(), '\t');
+		if (input.endsWith(RawFileWriter.EXTENSION)) {
+			return createSampleStatisticsBinary(file);
+		}
+
 		CsvTableWriter writer = new CsvTableWriter(output, ',', true);
-		writer.setColumns(new String[] { "SampleID", "Mean-Coverage", "SD-Coverage", "Min-Coverage", "Max-Coverage" });
+		writer.setColumns(CoverageStatistics.COLUMNS);
 
-		String sample = null;
-		ArrayList<Double> positions = new ArrayList<Double>();
+		try {
 
-		while (reader.next()) {
+			MappedLineReader reader = new MappedLineReader(file.getAbsolutePath(), '\t');
 
-			if (!reader.getString(0).equals(sample) && sample != null) {
+			int fwdColumn = reader.getColumnIndex("COV-FWD");
+			int revColumn = reader.getColumnIndex("COV-REV");
 
-				DescriptiveStatistics statistics = calcStats(positions);
-				writer.setString(0, sample);
-				writer.setDouble(1, statistics.getMean());
-				writer.setDouble(2, statistics.getStandardDeviation());
-				writer.setDouble(3, statistics.getMin());
-				writer.setDouble(4, statistics.getMax());
-				writer.next();
+			CoverageStatistics statistics = new CoverageStatistics();
+			String sample = null;
 
-				positions = new ArrayList<Double>();
-			}
+			while (reader.next()) {
 
-			double posCov = Double.valueOf(reader.getRow()[reader.getColumnIndex("COV-FWD")])
-					+ Double.valueOf(reader.getRow()[reader.getColumnIndex("COV-REV")]);
+				if (!reader.equals(0, sample)) {
 
-			positions.add(posCov);
+					if (sample != null) {
+						statistics.write(writer, sample);
+						statistics.reset();
+					}
 
-			sample = reader.getString(0);
+					sample = reader.getString(0);
+				}
 
-		}
+				statistics.add(reader.getInteger(fwdColumn) + reader.getInteger(revColumn));
+			}
+
+			// last sample
+			if (sample != null) {
+				statistics.write(writer, sample);
+			}
+
+			reader.close();
 
-		// last sample
-		DescriptiveStatistics statistics = calcStats(positions);
-		writer.setString(0, sample);
-		writer.setDouble(1, statistics.getMean());
-		writer.setDouble(2, statistics.getStandardDeviation());
-		writer.setDouble(3, statistics.getMin());
-		writer.setDouble(4, statistics.getMax());
-		writer.next();
+		} catch (IOException e) {
+			e.printStackTrace();
+			return false;
+		}
 
-		reader.close();
 		writer.close();
 
 		return true;
 
 	}
 
-	private DescriptiveStatistics calcStats(ArrayList<Double> positions) {
-		Double[] statArray = new Double[positions.size()];
-		statArray = positions.toArray(statArray);
-		DescriptiveStatistics statistics = new DescriptiveStatistics(ArrayUtils.toPrimitive(statArray));
-		return statistics;
+	// columnar raw file, only sample and coverage columns are read
+	private boolean createSampleStatisticsBinary(File file) {
+
+		CsvTableWriter writer = new CsvTableWriter(output, ',', true);
+		writer.setColumns(CoverageStatistics.COLUMNS);
+
+		try {
+
+			RawFileReader reader = new RawFileReader(file.getAbsolutePath(), "SAMPLE", "COV-FWD", "COV-REV");
+
+			int sampleColumn = reader.getColumnIndex("SAMPLE");
+			int fwdColumn = reader.getColumnIndex("COV-FWD");
+			int revColumn = reader.getColumnIndex("COV-REV");
+
+			CoverageStatistics statistics = new CoverageStatistics();
+			String sample = null;
+
+			while (reader.next()) {
+
+				String id = reader.getString(sampleColumn);
+
+				if (!id.equals(sample)) {
+
+					if (sample != null) {
+						statistics.write(writer, sample);
+						statistics.reset();
+					}
+
+					sample = id;
+				}
+
+				statistics.add(reader.getInteger(fwdColumn) + reader.getInteger(revColumn));
+			}
+
+			// last sample
+			if (sample != null) {
+				statistics.write(writer, sample);
+			}
+
+			reader.close();
+
+		} catch (IOException e) {
+			e.printStackTrace();
+			return false;
+		}
+
+		writer.close();
+
+		return true;
 	}
 
 	public String getInput() {
@@ -25,6 +25,8 @@
 
 package genepi.mut.util;
 
+import java.util.Arrays;
+
 import htsjdk.samtools.reference.IndexedFastaSequenceFile;
 import htsjdk.samtools.reference.ReferenceSequence;
 import htsjdk.samtools.CigarElement;
@@ -171,6 +173,49 @@ public class BaqAlt {
 		initializeCachedData();
 	}
 
+	/**
+	 * Grow-only scratch arrays for hmm_glocal, one instance per thread. Avoids
+	 * allocating the matrices for every read and makes a single BaqAlt safe
+	 * to use from several threads.
+	 */
+	private static class HmmBuffers {
+
+		double[][] f = new double[0][0];
+
+		double[][] b = new double[0][0];
+
+		double[] s = new double[0];
+
+		double[] m = new double[9];
+
+		void prepare(int rows, int width) {
+
+			if (rows > f.length || width > f[0].length) {
+
+				rows = Math.max(rows, f.length);
+				width = Math.max(width, f.length > 0 ? f[0].length : 0);
+
+				f = new double[rows][width];
+				b = new double[rows][width];
+				s = new double[rows + 1];
+
+			} else {
+
+				for (int i = 0; i < rows; i++) {
+					Arrays.fill(f[i], 0, width, 0.);
+					Arrays.fill(b[i], 0, width, 0.);
+				}
+			}
+		}
+	}
+
+	private static final ThreadLocal<HmmBuffers> hmmBuffers = new ThreadLocal<HmmBuffers>() {
+		@Override
+		protected HmmBuffers initialValue() {
+			return new HmmBuffers();
+		}
+	};
+
 	private final static double EM = 0.33333333333;
 	private final static double EI = 0.25;
 
@@ -208,6 +253,14 @@ public class BaqAlt {
 	// ####################################################################################################
 	public int hmm_glocal(final byte[] ref, final byte[] query, int qstart,
 			int l_query, final byte[] _iqual, int[] state, byte[] q) {
+		return hmm_glocal(ref, 0, ref == null ? 0 : ref.length, query, qstart,
+				l_query, _iqual, state, q);
+	}
+
+	// ref is the window ref[refStart .. refStart + refLength - 1]
+	public int hmm_glocal(final byte[] ref, int refStart, int refLength,
+			final byte[] query, int qstart, int l_query, final byte[] _iqual,
+			int[] state, byte[] q) {
 		if (ref == null)
 			throw new ReviewedGATKException("BUG: ref sequence is null");
 		if (query == null)
@@ -234,7 +287,7 @@ public class BaqAlt {
 
 		/*** initialization ***/
 		// change coordinates
-		final int l_ref = ref.length;
+		final int l_ref = refLength;
 
 		// set band width
 		int bw2, bw = l_ref > l_query ? l_ref : l_query;
@@ -253,11 +306,14 @@ public class BaqAlt {
 		// cb, bw, l_ref, l_query);
 		bw2 = bw * 2 + 1;
 
-		// allocate the forward and backward matrices f[][] and b[][] and the
-		// scaling array s[]
-		double[][] f = new double[l_query + 1][bw2 * 3 + 6];
-		double[][] b = new double[l_query + 1][bw2 * 3 + 6];
-		double[] s = new double[l_query + 2];
+		// take the forward and backward matrices f[][] and b[][] and the
+		// scaling array s[] from the thread-local buffers (zeroed like new
+		// arrays, out-of-band cells are read as 0)
+		HmmBuffers buffers = hmmBuffers.get();
+		buffers.prepare(l_query + 1, bw2 * 3 + 6);
+		double[][] f = buffers.f;
+		double[][] b = buffers.b;
+		double[] s = buffers.s;
 
 		// initialize transition probabilities
 		double sM, sI, bM, bI;
@@ -265,7 +321,7 @@ public class BaqAlt {
 		bM = (1 - cd) / l_ref;
 		bI = cd / l_ref; // (bM+bI)*l_ref==1
 
-		double[] m = new double[9];
+		double[] m = buffers.m;
 		m[0 * 3 + 0] = (1 - cd - cd) * (1 - sM);
 		m[0 * 3 + 1] = m[0 * 3 + 2] = cd * (1 - sM);
 		m[1 * 3 + 0] = (1 - ce) * (1 - sI);
@@ -284,7 +340,7 @@ public class BaqAlt {
 			int beg = 1, end = l_ref < bw + 1 ? l_ref : bw + 1, _beg, _end;
 			for (k = beg, sum = 0.; k <= end; ++k) {
 				int u;
-				double e = calcEpsilon(ref[k - 1], query[qstart],
+				double e = calcEpsilon(ref[refStart + k - 1], query[qstart],
 						_iqual[qstart]);
 				u = set_u(bw, 1, k);
 				fi[u + 0] = e * bM;
@@ -312,7 +368,7 @@ public class BaqAlt {
 			end = end < x ? end : x; // band end
 			for (k = beg, sum = 0.; k <= end; ++k) {
 				int u, v11, v01, v10;
-				double e = calcEpsilon(ref[k - 1], qyi, _iqual[qstart + i - 1]);
+				double e = calcEpsilon(ref[refStart + k - 1], qyi, _iqual[qstart + i - 1]);
 				u = set_u(bw, i, k);
 				v11 = set_u(bw, i - 1, k - 1);
 				v10 = set_u(bw, i - 1, k);
@@ -371,7 +427,7 @@ public class BaqAlt {
 				v11 = set_u(bw, i + 1, k + 1);
 				v10 = set_u(bw, i + 1, k);
 				v01 = set_u(bw, i, k + 1);
-				final double e = (k >= l_ref ? 0 : calcEpsilon(ref[k], qyi1,
+				final double e = (k >= l_ref ? 0 : calcEpsilon(ref[refStart + k], qyi1,
 						_iqual[qstart + i])) * bi1[v11];
 				bi[u + 0] = e * m[0] + EI * m[1] * bi1[v10 + 1] + m[2]
 						* bi[v01 + 2]; // bi1[v11] has been folded into e.
@@ -392,7 +448,7 @@ public class BaqAlt {
 			double sum = 0.;
 			for (k = end; k >= beg; --k) {
 				int u = set_u(bw, 1, k);
-				double e = calcEpsilon(ref[k - 1], query[qstart],
+				double e = calcEpsilon(ref[refStart + k - 1], query[qstart],
 						_iqual[qstart]);
 				if (u < 3 || u >= bw2 * 3 + 3)
 					continue;
@@ -727,11 +783,63 @@ public class BaqAlt {
 
 	}
 
+	/**
+	 * Same window as calcBAQFromHMM(read, refReader), but served from the
+	 * in-memory reference. Positions before 1 and after the reference end
+	 * wrap around the circular genome, except for a window starting at
+	 * position 0: like the file lookup, it begins with the line break in
+	 * front of the first base.
+	 */
+	public BAQCalculationResult calcBAQFromHMM(SAMRecord read,
+			ReferenceProvider reference) {
+		int offset = getBandWidth() / 2;
+		long readStart = includeClippedBases ? read.getUnclippedStart() : read
+				.getAlignmentStart();
+
+		long stop = (includeClippedBases ? read.getUnclippedEnd() : read
+				.getAlignmentEnd())
+				+ offset
+				+ ReadUtils.getLastInsertionOffset(read);
+
+		long start = readStart - offset
+				- ReadUtils.getFirstInsertionOffset(read);
+
+		// the file based version adds one extra base when wrapping at the end
+		if (start >= 0 && stop > reference.getLength()) {
+			stop++;
+		}
+
+		if (start == 0) {
+			byte[] bases = new byte[(int) stop + 1];
+			bases[0] = '\n';
+			System.arraycopy(reference.getSubsequence(1, stop), 0, bases, 1, (int) stop);
+			return calcBAQFromHMM(read, bases, (int) (start - readStart));
+		}
+
+		int refLength = (int) (stop - start + 1);
+
+		if (reference.contains(start, stop)) {
+			return calcBAQFromHMM(read, reference.getBases(),
+					reference.getIndex(start), refLength,
+					(int) (start - readStart));
+		}
+
+		return calcBAQFromHMM(read, reference.getSubsequence(start, stop),
+				(int) (start - readStart));
+	}
+
 	// final SimpleTimer total = new SimpleTimer();
 	// final SimpleTimer local = new SimpleTimer();
 	// int n = 0;
 	public BAQCalculationResult calcBAQFromHMM(byte[] ref, byte[] query,
 			byte[] quals, int queryStart, int queryEnd) {
+		return calcBAQFromHMM(ref, 0, ref.length, query, quals, queryStart,
+				queryEnd);
+	}
+
+	public BAQCalculationResult calcBAQFromHMM(byte[] ref, int refStart,
+			int refLength, byte[] query, byte[] quals, int queryStart,
+			int queryEnd) {
 		// total.restart();
 		if (queryStart < 0)
 			throw new ReviewedGATKException("BUG: queryStart < 0: "
@@ -747,8 +855,9 @@ public class BaqAlt {
 				ref);
 		int queryLen = queryEnd - queryStart;
 		// local.restart();
-		hmm_glocal(baqResult.refBases, baqResult.readBases, queryStart,
-				queryLen, baqResult.rawQuals, baqResult.state, baqResult.bq);
+		hmm_glocal(baqResult.refBases, refStart, refLength,
+				baqResult.readBases, queryStart, queryLen, baqResult.rawQuals,
+				baqResult.state, baqResult.bq);
 		// local.stop();
 		// total.stop();
 		// if ( n++ % 100000 == 0 )
@@ -817,6 +926,11 @@ public class BaqAlt {
 	// we need to pad ref by at least the bandwidth / 2 on either side
 	public BAQCalculationResult calcBAQFromHMM(SAMRecord read, byte[] ref,
 			int refOffset) {
+		return calcBAQFromHMM(read, ref, 0, ref.length, refOffset);
+	}
+
+	public BAQCalculationResult calcBAQFromHMM(SAMRecord read, byte[] ref,
+			int refStart, int refLength, int refOffset) {
 		// todo -- need to handle the case where the cigar sum of lengths
 		// doesn't cover the whole read
 		Pair<Integer, Integer> queryRange = calculateQueryRange(read);
@@ -826,9 +940,9 @@ public class BaqAlt {
 		int queryStart = queryRange.getFirst();
 		int queryEnd = queryRange.getSecond();
 
-		BAQCalculationResult baqResult = calcBAQFromHMM(ref,
-				read.getReadBases(), read.getBaseQualities(), queryStart,
-				queryEnd);
+		BAQCalculationResult baqResult = calcBAQFromHMM(ref, refStart,
+				refLength, read.getReadBases(), read.getBaseQualities(),
+				queryStart, queryEnd);
 
 		//System.out.println(Arrays.toString(baqResult.bq));
 		
@@ -905,6 +1019,17 @@ public class BaqAlt {
 	 */
 	public byte[] baqRead(SAMRecord read, IndexedFastaSequenceFile refReader,
 			CalculationMode calculationType, QualityMode qmode) {
+		return baqRead(read, null, refReader, calculationType, qmode);
+	}
+
+	public byte[] baqRead(SAMRecord read, ReferenceProvider reference,
+			CalculationMode calculationType, QualityMode qmode) {
+		return baqRead(read, reference, null, calculationType, qmode);
+	}
+
+	private byte[] baqRead(SAMRecord read, ReferenceProvider reference,
+			IndexedFastaSequenceFile refReader,
+			CalculationMode calculationType, QualityMode qmode) {
 		if (DEBUG)
 			System.out.printf("BAQ %s read %s%n", calculationType,
 					read.getReadName());
@@ -925,7 +1050,8 @@ public class BaqAlt {
 					|| !readHasBAQTag) {
 				if (DEBUG)
 					System.out.printf("Calculating BAQ on the fly%n");
-				BAQCalculationResult hmmResult = calcBAQFromHMM(read, refReader);
+				BAQCalculationResult hmmResult = reference != null ? calcBAQFromHMM(
+						read, reference) : calcBAQFromHMM(read, refReader);
 				if (hmmResult != null) {
 					switch (qmode) {
 					case ADD_TAG:
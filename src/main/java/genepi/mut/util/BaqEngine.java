@@ -0,0 +1,195 @@
+package genepi.mut.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.broadinstitute.gatk.utils.baq.BAQ;
+import org.broadinstitute.gatk.utils.sam.ReadUtils;
+
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.reference.FastaSequenceIndex;
+import htsjdk.samtools.reference.IndexedFastaSequenceFile;
+
+/**
+ * Calculates BAQ for batches of reads on a worker pool and overwrites the
+ * base qualities in place (same result as baqRead with OVERWRITE_QUALS). The
+ * mtDNA HMM and the in-memory reference are shared, the GATK HMM is kept per
+ * worker thread.
+ */
+public class BaqEngine {
+
+	private ExecutorService executor;
+
+	private int threads;
+
+	private boolean mtdna;
+
+	private BaqAlt baqHMMAltered;
+
+	private ThreadLocal<BAQ> baqHMM;
+
+	private ReferenceProvider reference;
+
+	// only used for reads not aligned to the in-memory reference
+	private ThreadLocal<IndexedFastaSequenceFile> refReaders;
+
+	private List<IndexedFastaSequenceFile> openReaders = Collections
+			.synchronizedList(new ArrayList<IndexedFastaSequenceFile>());
+
+	public BaqEngine(final String fastaPath, String version, int threads) {
+
+		this.threads = threads;
+
+		this.mtdna = version.equalsIgnoreCase("mtdna");
+
+		this.reference = new ReferenceProvider(ReferenceUtil.readInReference(fastaPath));
+
+		if (mtdna) {
+			baqHMMAltered = new BaqAlt(1e-4, 1e-2, 7, (byte) 0, true);
+		} else {
+			baqHMM = new ThreadLocal<BAQ>() {
+				@Override
+				protected BAQ initialValue() {
+					return new BAQ(1e-4, 1e-2, 7, (byte) 0, true);
+				}
+			};
+		}
+
+		refReaders = new ThreadLocal<IndexedFastaSequenceFile>() {
+			@Override
+			protected IndexedFastaSequenceFile initialValue() {
+				IndexedFastaSequenceFile reader = new IndexedFastaSequenceFile(new File(fastaPath),
+						new FastaSequenceIndex(new File(fastaPath + ".fai")));
+				openReaders.add(reader);
+				return reader;
+			}
+		};
+
+		executor = Executors.newFixedThreadPool(threads);
+	}
+
+	public void baqReads(List<SAMRecord> reads) throws Exception {
+
+		if (reads.isEmpty()) {
+			return;
+		}
+
+		int chunk = (reads.size() + threads - 1) / threads;
+
+		List<Future<Void>> tasks = new ArrayList<Future<Void>>();
+
+		for (int start = 0; start < reads.size(); start += chunk) {
+
+			final List<SAMRecord> part = reads.subList(start, Math.min(reads.size(), start + chunk));
+
+			tasks.add(executor.submit(new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					for (SAMRecord read : part) {
+						baqRead(read);
+					}
+					return null;
+				}
+			}));
+		}
+
+		for (Future<Void> task : tasks) {
+			task.get();
+		}
+	}
+
+	public void baqRead(SAMRecord read) {
+
+		boolean inMemory = reference.isReferenceOf(read);
+
+		if (mtdna) {
+
+			if (inMemory) {
+				baqHMMAltered.baqRead(read, reference, BaqAlt.CalculationMode.CALCULATE_AS_NECESSARY,
+						BaqAlt.QualityMode.OVERWRITE_QUALS);
+			} else {
+				baqHMMAltered.baqRead(read, refReaders.get(), BaqAlt.CalculationMode.CALCULATE_AS_NECESSARY,
+						BaqAlt.QualityMode.OVERWRITE_QUALS);
+			}
+
+		} else {
+
+			if (inMemory) {
+				baqRead(baqHMM.get(), read, reference);
+			} else {
+				baqHMM.get().baqRead(read, refReaders.get(), BAQ.CalculationMode.CALCULATE_AS_NECESSARY,
+						BAQ.QualityMode.OVERWRITE_QUALS);
+			}
+
+		}
+	}
+
+	/**
+	 * GATK BAQ with CALCULATE_AS_NECESSARY and OVERWRITE_QUALS, but the
+	 * reference window is taken from memory. Same window as
+	 * BAQ.calcBAQFromHMM(read, refReader), the genome is not treated as
+	 * circular here. Like the file lookup, a window starting at position 0
+	 * begins with the line break in front of the first base.
+	 */
+	public static void baqRead(BAQ baqHMM, SAMRecord read, ReferenceProvider reference) {
+
+		if (baqHMM.excludeReadFromBAQ(read)) {
+			return;
+		}
+
+		if (BAQ.hasBAQTag(read)) {
+			BAQ.calcBAQFromTag(read, true, false);
+			return;
+		}
+
+		int offset = baqHMM.getBandWidth() / 2;
+
+		// clipped bases are included (see constructors)
+		long readStart = read.getUnclippedStart();
+
+		long start = Math.max(readStart - offset - ReadUtils.getFirstInsertionOffset(read), 0);
+
+		long stop = read.getUnclippedEnd() + offset + ReadUtils.getLastInsertionOffset(read);
+
+		if (stop > reference.getLength()) {
+			return;
+		}
+
+		byte[] bases;
+
+		if (start == 0) {
+			bases = new byte[(int) stop + 1];
+			bases[0] = '\n';
+			System.arraycopy(reference.getSubsequence(1, stop), 0, bases, 1, (int) stop);
+		} else {
+			bases = reference.getSubsequence(start, stop);
+		}
+
+		BAQ.BAQCalculationResult result = baqHMM.calcBAQFromHMM(read, bases, (int) (start - readStart));
+
+		if (result != null) {
+			System.arraycopy(result.bq, 0, read.getBaseQualities(), 0, result.bq.length);
+		}
+	}
+
+	public void close() {
+
+		executor.shutdownNow();
+
+		for (IndexedFastaSequenceFile reader : openReaders) {
+			try {
+				reader.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+}
@@ -1,10 +1,10 @@
 package genepi.mut.util;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
 import genepi.mut.objects.Sample;
 import genepi.mut.objects.Variant;
 
@@ -18,97 +18,32 @@ public class FastaWriter {
 		try {
 			String contents = ReferenceUtil.readInReference(reference);
 
-			FileWriter writer = new FileWriter(new File(out));
-			StringBuilder build = new StringBuilder();
-			HashMap<String, Sample> samples = reader.parse();
+			BufferedWriter writer = new BufferedWriter(new FileWriter(new File(out)));
+			StringBuilder build = new StringBuilder(contents.length() + 1000);
 
-			for (Sample sam : samples.values()) {
-				build.setLength(0);
-				build.append(">" + sam.getId() + "\n");
+			VariantFileIndex index = VariantFileIndex.build(in);
 
-				int i = 0;
+			if (index.isSorted()) {
 
-				for (String ref : contents.split("")) {
-					i++;
-					ArrayList<Variant> vars = sam.getVariants(i);
+				// one sample at a time, each sample is a single block
+				reader.open();
 
-					// write reference if no variant found
-					if (vars == null) {
-						build.append(ref);
-						continue;
-					}
-
-					int type1 = 0;
-					int type5 = 0;
-					boolean complex = false;
-					boolean multiInsertion = false;
+				Sample sam;
 
-					for (Variant var : vars) {
+				while ((sam = reader.nextSample()) != null) {
+					writeSample(writer, build, sam, contents, level);
+				}
 
-						if ((var.getType() >= 1 && var.getType() <= 4) && var.getLevel() > level) {
-							type1++;
-						}
-						if (var.getType() == 5) {
-							type5++;
-						}
-					}
-					if (type1 >= 1 && type5 >= 1) {
-						complex = true;
-					} else if (type5 > 1) {
-						multiInsertion = true;
-					}
+				reader.close();
 
-					if (!complex && !multiInsertion) {
-
-						for (Variant var : vars) {
-
-							// don't write deletions to fasta larger then level
-							if (var.getVariant() == 'D' && var.getLevel() > level) {
-								continue;
-							}
-							// write heteroplasmies up to a level of 50 %
-							else if (var.getType() == 2 && var.getLevel() >= level) {
-								build.append(var.getVariant());
-							} else if ((var.getType() == 5)) {
-								build.append(ref + "" + var.getVariant());
-							} else if ((var.getType() == 1)) {
-								build.append(var.getVariant());
-							} else {
-								build.append(ref);
-							}
-						}
-					} else {
-						
-						if (multiInsertion && !complex) {
-							StringBuilder insertionBuilder = new StringBuilder();
-
-							for (Variant var : vars) {
-								if (var.getType() == 5) {
-									insertionBuilder.append(var.getVariant());
-								}
-							}
-							String insertion = insertionBuilder.toString();
-							build.append(ref + insertion);
-						}
-						if (complex) {
-
-							StringBuilder complexBuilder = new StringBuilder();
-							String variant = ref;
-							for (Variant var : vars) {
-								if (var.getType() == 5) {
-									complexBuilder.append(var.getVariant());
-								} else if (var.getType() == 1 || var.getType() == 2 && var.getLevel() >= level && var.getVariant() !='D') {
-									variant = String.valueOf(var.getVariant());
-								}
-							}
-							String insertion = complexBuilder.toString();
-							build.append(variant + insertion);
-						}
+			} else {
 
-					}
+				// samples split into several blocks are merged in memory
+				for (Sample sam : reader.parse().values()) {
+					writeSample(writer, build, sam, contents, level);
 				}
-				writer.write(build.toString() + "\n");
 			}
+
 			writer.close();
 
 		} catch (IOException e) {
@@ -118,4 +53,93 @@ public class FastaWriter {
 
 	}
 
+	private void writeSample(BufferedWriter writer, StringBuilder build, Sample sam, String contents, double level)
+			throws IOException {
+
+		build.setLength(0);
+		build.append(">" + sam.getId() + "\n");
+
+		for (int i = 1; i <= contents.length(); i++) {
+
+			char ref = contents.charAt(i - 1);
+			ArrayList<Variant> vars = sam.getVariants(i);
+
+			// write reference if no variant found
+			if (vars == null) {
+				build.append(ref);
+				continue;
+			}
+
+			int type1 = 0;
+			int type5 = 0;
+			boolean complex = false;
+			boolean multiInsertion = false;
+
+			for (Variant var : vars) {
+
+				if ((var.getType() >= 1 && var.getType() <= 4) && var.getLevel() > level) {
+					type1++;
+				}
+				if (var.getType() == 5) {
+					type5++;
+				}
+			}
+			if (type1 >= 1 && type5 >= 1) {
+				complex = true;
+			} else if (type5 > 1) {
+				multiInsertion = true;
+			}
+
+			if (!complex && !multiInsertion) {
+
+				for (Variant var : vars) {
+
+					// don't write deletions to fasta larger then level
+					if (var.getVariant() == 'D' && var.getLevel() > level) {
+						continue;
+					}
+					// write heteroplasmies up to a level of 50 %
+					else if (var.getType() == 2 && var.getLevel() >= level) {
+						build.append(var.getVariant());
+					} else if ((var.getType() == 5)) {
+						build.append(ref + "" + var.getVariant());
+					} else if ((var.getType() == 1)) {
+						build.append(var.getVariant());
+					} else {
+						build.append(ref);
+					}
+				}
+			} else {
+				
+				if (multiInsertion && !complex) {
+					StringBuilder insertionBuilder = new StringBuilder();
+
+					for (Variant var : vars) {
+						if (var.getType() == 5) {
+							insertionBuilder.append(var.getVariant());
+						}
+					}
+					String insertion = insertionBuilder.toString();
+					build.append(ref + insertion);
+				}
+				if (complex) {
+
+					StringBuilder complexBuilder = new StringBuilder();
+					String variant = String.valueOf(ref);
+					for (Variant var : vars) {
+						if (var.getType() == 5) {
+							complexBuilder.append(var.getVariant());
+						} else if (var.getType() == 1 || var.getType() == 2 && var.getLevel() >= level && var.getVariant() !='D') {
+							variant = String.valueOf(var.getVariant());
+						}
+					}
+					String insertion = complexBuilder.toString();
+					build.append(variant + insertion);
+				}
+
+			}
+		}
+		writer.write(build.toString() + "\n");
+	}
+
 }
@@ -0,0 +1,222 @@
+package genepi.mut.util;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Reads a delimited text file with a header line through memory-mapped
+ * windows. Only the field offsets of the current line are stored, integers
+ * are parsed from the bytes and strings are only created on request, so
+ * scanning the raw file allocates nothing per row.
+ */
+public class MappedLineReader {
+
+	private static final int WINDOW = 64 * 1024 * 1024;
+
+	private RandomAccessFile file;
+
+	private FileChannel channel;
+
+	private long size;
+
+	private MappedByteBuffer buffer;
+
+	// file offset of the mapped window
+	private long windowStart;
+
+	private int windowSize;
+
+	// position of the next line within the window
+	private int position;
+
+	private byte separator;
+
+	private int[] starts = new int[64];
+
+	private int[] ends = new int[64];
+
+	private int fields;
+
+	private String[] columns;
+
+	public MappedLineReader(String filename, char separator) throws IOException {
+		this(filename, separator, WINDOW);
+	}
+
+	// smaller windows are used by the tests
+	MappedLineReader(String filename, char separator, int window) throws IOException {
+
+		this.separator = (byte) separator;
+		this.windowSize = window;
+
+		file = new RandomAccessFile(filename, "r");
+		channel = file.getChannel();
+		size = channel.size();
+
+		map(0);
+
+		if (next()) {
+			columns = new String[fields];
+			for (int i = 0; i < fields; i++) {
+				columns[i] = getString(i);
+			}
+		} else {
+			columns = new String[0];
+		}
+	}
+
+	public String[] getColumns() {
+		return columns;
+	}
+
+	public int getColumnIndex(String column) {
+
+		for (int i = 0; i < columns.length; i++) {
+			if (columns[i].equals(column)) {
+				return i;
+			}
+		}
+
+		throw new IllegalArgumentException("Unknown column " + column);
+	}
+
+	public boolean next() throws IOException {
+
+		while (true) {
+
+			if (windowStart + position >= size) {
+				return false;
+			}
+
+			int end = split();
+
+			if (end != -1) {
+				position = end + 1;
+				return true;
+			}
+
+			if (windowStart + buffer.limit() >= size) {
+				// last line without newline
+				position = buffer.limit();
+				return true;
+			}
+
+			// line crosses the window, map again from its start
+			if (position == 0) {
+				windowSize = windowSize * 2;
+			}
+			map(windowStart + position);
+		}
+	}
+
+	public int getFieldCount() {
+		return fields;
+	}
+
+	public String getString(int column) {
+		byte[] bytes = new byte[ends[column] - starts[column]];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = buffer.get(starts[column] + i);
+		}
+		return new String(bytes);
+	}
+
+	public int getInteger(int column) {
+
+		int i = starts[column];
+		int end = ends[column];
+
+		boolean negative = i < end && buffer.get(i) == '-';
+		if (negative) {
+			i++;
+		}
+
+		int value = 0;
+
+		for (; i < end; i++) {
+			byte b = buffer.get(i);
+			if (b < '0' || b > '9') {
+				// not a plain integer, e.g. 12.0
+				return (int) Double.parseDouble(getString(column));
+			}
+			value = value * 10 + (b - '0');
+		}
+
+		return negative ? -value : value;
+	}
+
+	public double getDouble(int column) {
+		return Double.parseDouble(getString(column));
+	}
+
+	// compares without creating a string, value has to be ASCII
+	public boolean equals(int column, String value) {
+
+		if (value == null || ends[column] - starts[column] != value.length()) {
+			return false;
+		}
+
+		for (int i = 0; i < value.length(); i++) {
+			if (buffer.get(starts[column] + i) != value.charAt(i)) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	public void close() throws IOException {
+		channel.close();
+		file.close();
+	}
+
+	// splits the line at position, returns the index of its newline or -1
+	private int split() {
+
+		fields = 0;
+
+		int start = position;
+		int limit = buffer.limit();
+
+		for (int i = position; i < limit; i++) {
+
+			byte b = buffer.get(i);
+
+			if (b == separator) {
+				addField(start, i);
+				start = i + 1;
+			} else if (b == '\n') {
+				addField(start, i > start && buffer.get(i - 1) == '\r' ? i - 1 : i);
+				return i;
+			}
+		}
+
+		if (windowStart + limit >= size) {
+			addField(start, limit);
+		}
+
+		return -1;
+	}
+
+	private void addField(int start, int end) {
+
+		if (fields == starts.length) {
+			starts = Arrays.copyOf(starts, fields * 2);
+			ends = Arrays.copyOf(ends, fields * 2);
+		}
+
+		starts[fields] = start;
+		ends[fields] = end;
+		fields++;
+	}
+
+	private void map(long offset) throws IOException {
+		windowStart = offset;
+		position = 0;
+		buffer = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(windowSize, size - offset));
+	}
+
+}
@@ -0,0 +1,126 @@
+package genepi.mut.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.samtools.cram.ref.CRAMReferenceSource;
+import htsjdk.samtools.reference.FastaSequenceIndex;
+import htsjdk.samtools.reference.FastaSequenceIndexCreator;
+import htsjdk.samtools.reference.FastaSequenceIndexEntry;
+import htsjdk.samtools.reference.IndexedFastaSequenceFile;
+import htsjdk.samtools.reference.ReferenceSequence;
+import htsjdk.samtools.util.StringUtil;
+
+/**
+ * CRAM reference source shared by all readers of a run. Each contig is read
+ * once from the indexed fasta file and kept in memory. Contigs are matched by
+ * name, name variants (chrM, MT, M) and finally by length, so CRAMs aligned
+ * against chrM of a whole genome reference can be decoded with rCRS.
+ */
+public class MemoryReferenceSource implements CRAMReferenceSource {
+
+	private IndexedFastaSequenceFile fasta;
+
+	private FastaSequenceIndex index;
+
+	private HashMap<String, byte[]> sequences = new HashMap<String, byte[]>();
+
+	public MemoryReferenceSource(String fastaPath) throws IOException {
+
+		File indexFile = new File(fastaPath + ".fai");
+
+		if (!indexFile.exists()) {
+			FastaSequenceIndexCreator.buildFromFasta(new File(fastaPath).toPath()).write(indexFile.toPath());
+		}
+
+		index = new FastaSequenceIndex(indexFile);
+
+		fasta = new IndexedFastaSequenceFile(new File(fastaPath), index);
+	}
+
+	@Override
+	public synchronized byte[] getReferenceBases(SAMSequenceRecord record, boolean tryNameVariants) {
+
+		String name = record.getSequenceName();
+
+		if (sequences.containsKey(name)) {
+			return sequences.get(name);
+		}
+
+		String contig = findContig(name, tryNameVariants);
+
+		if (contig == null) {
+			contig = findContig(record.getSequenceLength());
+		}
+
+		byte[] bases = null;
+
+		if (contig != null) {
+
+			if (sequences.containsKey(contig)) {
+				bases = sequences.get(contig);
+			} else {
+				ReferenceSequence sequence = fasta.getSequence(contig);
+				bases = sequence.getBases();
+				StringUtil.toUpperCase(bases);
+				sequences.put(contig, bases);
+			}
+		}
+
+		// missing contigs are cached as well
+		sequences.put(name, bases);
+
+		return bases;
+	}
+
+	private String findContig(String name, boolean tryNameVariants) {
+
+		if (index.hasIndexEntry(name)) {
+			return name;
+		}
+
+		if (!tryNameVariants) {
+			return null;
+		}
+
+		String[] variants;
+
+		if (name.equals("chrM") || name.equals("MT") || name.equals("M")) {
+			variants = new String[] { "chrM", "MT", "M" };
+		} else if (name.startsWith("chr")) {
+			variants = new String[] { name.substring(3) };
+		} else {
+			variants = new String[] { "chr" + name };
+		}
+
+		for (String variant : variants) {
+			if (index.hasIndexEntry(variant)) {
+				return variant;
+			}
+		}
+
+		return null;
+	}
+
+	private String findContig(int length) {
+
+		for (FastaSequenceIndexEntry entry : index) {
+			if (entry.getSize() == length) {
+				return entry.getContig();
+			}
+		}
+
+		return null;
+	}
+
+	public synchronized void close() {
+		try {
+			fasta.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+}
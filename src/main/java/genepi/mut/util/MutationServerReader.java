@@ -1,6 +1,7 @@
 package genepi.mut.util;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 
@@ -12,6 +13,15 @@ public class MutationServerReader {
 
 	private String file;
 
+	private CsvTableReader reader;
+
+	private double requiredHetLevel;
+
+	// first line of the next sample, already read by nextSample
+	private String nextId;
+
+	private Variant nextVariant;
+
 	public MutationServerReader(String file) {
 		this.file = file;
 	}
@@ -22,79 +32,142 @@ public class MutationServerReader {
 
 	public HashMap<String, Sample> parse(double requiredHetLevel) {
 
-		CsvTableReader reader = new CsvTableReader(new File(file).getAbsolutePath(), '\t');
 		HashMap<String, Sample> samples = new HashMap<String, Sample>();
 
-		String tmp = null;
-		Sample sample = new Sample();
+		open(requiredHetLevel);
 
-		while (reader.next()) {
+		Sample sample;
 
-			String id = reader.getString("ID");
+		while ((sample = nextSample()) != null) {
 
-			if (tmp != null && !id.equals(tmp)) {
+			Sample existing = samples.get(sample.getId());
+
+			// a sample split into several blocks is merged
+			if (existing != null) {
+				for (ArrayList<Variant> variants : sample.getVariants()) {
+					for (Variant variant : variants) {
+						existing.addVariant(variant);
+					}
+				}
+			} else {
 				samples.put(sample.getId(), sample);
-				sample = new Sample();
 			}
+		}
 
-			int type = reader.getInteger("Type");
+		close();
 
-			Variant variant = new Variant();
+		return samples;
+	}
 
-			double majorLevel = 0;
-			double minorLevel = 0;
-			int coverage = -1;
-			int pos;
- 
-			if (!reader.getString("Pos").contains(".")) {
-				pos = reader.getInteger("Pos");
-			} else {
-				pos = Integer.valueOf(reader.getString("Pos").split("\\.")[0]);
-				variant.setInsertion(reader.getString("Pos"));
-			}
+	public void open() {
+		open(0.00);
+	}
+
+	public void open(double requiredHetLevel) {
+		this.reader = new CsvTableReader(new File(file).getAbsolutePath(), '\t');
+		this.requiredHetLevel = requiredHetLevel;
+		this.nextId = null;
+		this.nextVariant = null;
+	}
+
+	// returns the next block of lines with the same ID (variants files of
+	// analyse-local are grouped by sample) or null at the end of the file
+	public Sample nextSample() {
 
-			char ref = reader.getString("Ref").charAt(0);
-			char var = reader.getString("Variant").charAt(0);
-			double level = reader.getDouble("VariantLevel");
-			char major = reader.getString("MajorBase").charAt(0);
-			char minor = reader.getString("MinorBase").charAt(0);
+		Sample sample = null;
 
-			if (reader.hasColumn("MajorLevel")) {
-				majorLevel = Double.valueOf(reader.getString("MajorLevel"));
+		if (nextId != null) {
+			sample = new Sample();
+			sample.setId(nextId);
+			if (nextVariant != null) {
+				sample.addVariant(nextVariant);
 			}
+			nextId = null;
+			nextVariant = null;
+		}
+
+		while (reader.next()) {
 
-			if (reader.hasColumn("MinorLevel")) {
-				minorLevel = Double.valueOf(reader.getString("MinorLevel"));
+			String id = reader.getString("ID");
+
+			if (sample != null && !id.equals(sample.getId())) {
+				nextId = id;
+				nextVariant = readVariant();
+				return sample;
 			}
 
-			if (reader.hasColumn("Coverage")) {
-				coverage = reader.getInteger("Coverage");
+			if (sample == null) {
+				sample = new Sample();
+				sample.setId(id);
 			}
 
-			sample.setId(id);
+			Variant variant = readVariant();
 
-			if (type == 2 && minorLevel < requiredHetLevel) {
-				continue;
+			if (variant != null) {
+				sample.addVariant(variant);
 			}
+		}
+
+		return sample;
+	}
+
+	public void close() {
+		reader.close();
+	}
+
+	// returns null for heteroplasmies below the required level
+	private Variant readVariant() {
+
+		int type = reader.getInteger("Type");
+
+		Variant variant = new Variant();
 
-			variant.setPos(pos);
-			variant.setRef(ref);
-			variant.setVariantBase(var);
-			variant.setLevel(level);
-			variant.setMajor(major);
-			variant.setMinor(minor);
-			variant.setMajorLevel(majorLevel);
-			variant.setMinorLevel(minorLevel);
-			variant.setCoverage(coverage);
-			variant.setType(type);
-
-			sample.addVariant(variant);
-			tmp = id;
+		double majorLevel = 0;
+		double minorLevel = 0;
+		int coverage = -1;
+		int pos;
+
+		if (!reader.getString("Pos").contains(".")) {
+			pos = reader.getInteger("Pos");
+		} else {
+			pos = Integer.valueOf(reader.getString("Pos").split("\\.")[0]);
+			variant.setInsertion(reader.getString("Pos"));
 		}
 
-		samples.put(sample.getId(), sample);
+		char ref = reader.getString("Ref").charAt(0);
+		char var = reader.getString("Variant").charAt(0);
+		double level = reader.getDouble("VariantLevel");
+		char major = reader.getString("MajorBase").charAt(0);
+		char minor = reader.getString("MinorBase").charAt(0);
 
-		return samples;
+		if (reader.hasColumn("MajorLevel")) {
+			majorLevel = Double.valueOf(reader.getString("MajorLevel"));
+		}
+
+		if (reader.hasColumn("MinorLevel")) {
+			minorLevel = Double.valueOf(reader.getString("MinorLevel"));
+		}
+
+		if (reader.hasColumn("Coverage")) {
+			coverage = reader.getInteger("Coverage");
+		}
+
+		if (type == 2 && minorLevel < requiredHetLevel) {
+			return null;
+		}
+
+		variant.setPos(pos);
+		variant.setRef(ref);
+		variant.setVariantBase(var);
+		variant.setLevel(level);
+		variant.setMajor(major);
+		variant.setMinor(minor);
+		variant.setMajorLevel(majorLevel);
+		variant.setMinorLevel(minorLevel);
+		variant.setCoverage(coverage);
+		variant.setType(type);
+
+		return variant;
 	}
 
 }
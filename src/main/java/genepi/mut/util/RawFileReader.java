@@ -0,0 +1,265 @@
+package genepi.mut.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads files written by RawFileWriter. Blocks are memory-mapped one at a
+ * time and only the selected columns are inflated, e.g.
+ * new RawFileReader(file, "SAMPLE", "COV-FWD", "COV-REV") for coverage
+ * statistics. No columns means all columns.
+ */
+public class RawFileReader {
+
+	private RandomAccessFile file;
+
+	private FileChannel channel;
+
+	private long offset;
+
+	private HashMap<String, Integer> columnIndex = new HashMap<String, Integer>();
+
+	private boolean[] selected = new boolean[RawFileWriter.COLUMNS.length];
+
+	private ByteBuffer[] data = new ByteBuffer[RawFileWriter.COLUMNS.length];
+
+	private String[][] strings = new String[RawFileWriter.COLUMNS.length][];
+
+	private byte[] input = new byte[0];
+
+	private Inflater inflater = new Inflater();
+
+	private int rows;
+
+	private int row;
+
+	public RawFileReader(String filename, String... columns) throws IOException {
+
+		for (int i = 0; i < RawFileWriter.COLUMNS.length; i++) {
+			columnIndex.put(RawFileWriter.COLUMNS[i], i);
+		}
+
+		for (String column : columns) {
+			selected[getColumnIndex(column)] = true;
+		}
+
+		if (columns.length == 0) {
+			Arrays.fill(selected, true);
+		}
+
+		file = new RandomAccessFile(filename, "r");
+		channel = file.getChannel();
+	}
+
+	public boolean next() throws IOException {
+
+		row++;
+
+		while (row >= rows) {
+
+			if (!readBlock()) {
+				return false;
+			}
+
+			row = 0;
+		}
+
+		return true;
+	}
+
+	public int getColumnIndex(String column) {
+
+		Integer index = columnIndex.get(column);
+
+		if (index == null) {
+			throw new IllegalArgumentException("Unknown column " + column);
+		}
+
+		return index;
+	}
+
+	public String[] getColumns() {
+		return RawFileWriter.COLUMNS;
+	}
+
+	public String getString(int column) {
+
+		switch (type(column)) {
+		case RawFileWriter.STRING:
+			return strings[column][row];
+		case RawFileWriter.CHAR:
+			return String.valueOf(getChar(column));
+		case RawFileWriter.INT:
+			return String.valueOf(getInteger(column));
+		default:
+			return String.valueOf(getDouble(column));
+		}
+	}
+
+	public char getChar(int column) {
+		return (char) data(column).get(row);
+	}
+
+	public int getInteger(int column) {
+		return data(column).getInt(row * 4);
+	}
+
+	public double getDouble(int column) {
+		if (type(column) == RawFileWriter.INT) {
+			return getInteger(column);
+		}
+		return data(column).getDouble(row * 8);
+	}
+
+	public String getString(String column) {
+		return getString(getColumnIndex(column));
+	}
+
+	public char getChar(String column) {
+		return getChar(getColumnIndex(column));
+	}
+
+	public int getInteger(String column) {
+		return getInteger(getColumnIndex(column));
+	}
+
+	public double getDouble(String column) {
+		return getDouble(getColumnIndex(column));
+	}
+
+	public void close() throws IOException {
+		inflater.end();
+		channel.close();
+		file.close();
+	}
+
+	private byte type(int column) {
+		if (!selected[column]) {
+			throw new IllegalStateException("Column " + RawFileWriter.COLUMNS[column] + " not selected");
+		}
+		return RawFileWriter.TYPES[column];
+	}
+
+	private ByteBuffer data(int column) {
+		type(column);
+		return data[column];
+	}
+
+	private boolean readBlock() throws IOException {
+
+		if (offset + 8 > channel.size()) {
+			return false;
+		}
+
+		ByteBuffer start = channel.map(FileChannel.MapMode.READ_ONLY, offset, 8);
+
+		if (start.getInt() != RawFileWriter.MAGIC) {
+			throw new IOException("No raw block at offset " + offset);
+		}
+
+		int length = start.getInt();
+
+		ByteBuffer block = channel.map(FileChannel.MapMode.READ_ONLY, offset + 8, length);
+
+		offset = offset + 8 + length;
+
+		byte version = block.get();
+
+		if (version != RawFileWriter.VERSION) {
+			throw new IOException("Unsupported raw format version " + version);
+		}
+
+		rows = block.getInt();
+
+		int columns = block.getShort();
+
+		int[] index = new int[columns];
+		int[] rawLengths = new int[columns];
+		int[] compressedLengths = new int[columns];
+
+		boolean[] present = new boolean[RawFileWriter.COLUMNS.length];
+
+		for (int i = 0; i < columns; i++) {
+			Integer known = columnIndex.get(readUTF(block));
+			index[i] = known == null ? -1 : known;
+			if (known != null) {
+				present[known] = true;
+			}
+			block.get();
+			rawLengths[i] = block.getInt();
+			compressedLengths[i] = block.getInt();
+		}
+
+		// otherwise the buffers of the previous block would be returned
+		for (int column = 0; column < present.length; column++) {
+			if (selected[column] && !present[column]) {
+				throw new IOException("Column " + RawFileWriter.COLUMNS[column] + " missing in raw block at offset "
+						+ (offset - 8 - length));
+			}
+		}
+
+		for (int i = 0; i < columns; i++) {
+
+			if (index[i] == -1 || !selected[index[i]]) {
+				// projected away, nothing to inflate
+				block.position(block.position() + compressedLengths[i]);
+				continue;
+			}
+
+			if (input.length < compressedLengths[i]) {
+				input = new byte[compressedLengths[i]];
+			}
+
+			block.get(input, 0, compressedLengths[i]);
+
+			byte[] raw = new byte[rawLengths[i]];
+
+			inflater.reset();
+			inflater.setInput(input, 0, compressedLengths[i]);
+
+			try {
+				int read = 0;
+				while (read < raw.length && !inflater.finished()) {
+					read += inflater.inflate(raw, read, raw.length - read);
+				}
+			} catch (DataFormatException e) {
+				throw new IOException(e);
+			}
+
+			int column = index[i];
+
+			data[column] = ByteBuffer.wrap(raw);
+
+			if (RawFileWriter.TYPES[column] == RawFileWriter.STRING) {
+
+				DataInputStream in = new DataInputStream(new ByteArrayInputStream(raw));
+
+				strings[column] = new String[rows];
+
+				for (int j = 0; j < rows; j++) {
+					strings[column][j] = in.readUTF();
+				}
+			}
+		}
+
+		return true;
+	}
+
+	private String readUTF(ByteBuffer buffer) throws IOException {
+
+		byte[] bytes = new byte[buffer.getShort() & 0xffff];
+
+		buffer.get(bytes);
+
+		return new String(bytes, "UTF-8");
+	}
+
+}
@@ -0,0 +1,217 @@
+package genepi.mut.util;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+
+import genepi.mut.objects.VariantLine;
+
+/**
+ * Columnar binary alternative to the _raw.txt file with the same columns.
+ * Rows are collected in blocks of BLOCK_SIZE and every column of a block is
+ * deflated on its own, so readers only inflate the columns they need. Every
+ * block carries its own header, files can be concatenated (e.g. the outputs
+ * of several reducers).
+ *
+ * Block: MAGIC, length of the rest of the block, VERSION, rows, number of
+ * columns, per column (name, type, raw length, compressed length) and then
+ * the compressed data of all columns.
+ */
+public class RawFileWriter {
+
+	public static final String EXTENSION = ".mraw";
+
+	public static final int MAGIC = 0x4d524157;
+
+	public static final byte VERSION = 1;
+
+	public static final int BLOCK_SIZE = 65536;
+
+	public static final byte CHAR = 0;
+
+	public static final byte INT = 1;
+
+	public static final byte DOUBLE = 2;
+
+	public static final byte STRING = 3;
+
+	public static final String[] COLUMNS = { "SAMPLE", "POS", "REF", "TOP-FWD", "MINOR-FWD", "TOP-REV", "MINOR-REV",
+			"COV-FWD", "COV-REV", "COV-TOTAL", "TYPE", "LEVEL", "%A", "%C", "%G", "%T", "%D", "%N", "%a", "%c", "%g",
+			"%t", "%d", "%n", "TOP-FWD-PERCENT", "TOP-REV-PERCENT", "MINOR-FWD-PERCENT", "MINOR-REV-PERCENT",
+			"LLRFWD", "LLRREV", "LLRAFWD", "LLRCFWD", "LLRGFWD", "LLRTFWD", "LLRAREV", "LLRCREV", "LLRGREV",
+			"LLRTREV", "LLRDFWD", "LLRDREV", "MINORS" };
+
+	public static final byte[] TYPES = { STRING, INT, CHAR, CHAR, CHAR, CHAR, CHAR, INT, INT, INT, INT, DOUBLE,
+			DOUBLE, DOUBLE, DOUBLE, DOUBLE, DOUBLE, DOUBLE, DOUBLE, DOUBLE, DOUBLE, DOUBLE, DOUBLE, DOUBLE, DOUBLE,
+			DOUBLE, DOUBLE, DOUBLE, DOUBLE, DOUBLE, DOUBLE, DOUBLE, DOUBLE, DOUBLE, DOUBLE, DOUBLE, DOUBLE, DOUBLE,
+			DOUBLE, DOUBLE, STRING };
+
+	private DataOutputStream out;
+
+	private ByteArrayOutputStream[] buffers = new ByteArrayOutputStream[COLUMNS.length];
+
+	private DataOutputStream[] columns = new DataOutputStream[COLUMNS.length];
+
+	private ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+
+	private byte[] chunk = new byte[65536];
+
+	private Deflater deflater = new Deflater();
+
+	private int rows;
+
+	private int column;
+
+	public RawFileWriter(String file) throws IOException {
+		this(new FileOutputStream(file));
+	}
+
+	public RawFileWriter(OutputStream out) {
+
+		this.out = new DataOutputStream(new BufferedOutputStream(out));
+
+		for (int i = 0; i < COLUMNS.length; i++) {
+			buffers[i] = new ByteArrayOutputStream();
+			columns[i] = new DataOutputStream(buffers[i]);
+		}
+	}
+
+	public void write(VariantLine line) throws IOException {
+
+		column = 0;
+
+		putString(line.getId());
+		putInt(line.getPosition());
+		putChar(line.getRef());
+		putChar(line.getTopBaseFWD());
+		putChar(line.getMinorBaseFWD());
+		putChar(line.getTopBaseREV());
+		putChar(line.getMinorBaseREV());
+		putInt(line.getCovFWD());
+		putInt(line.getCovREV());
+		putInt(line.getCovFWD() + line.getCovREV());
+		putInt(line.getVariantType());
+		putDouble(line.getVariantLevel());
+
+		putDouble(line.getaPercentageFWD());
+		putDouble(line.getcPercentageFWD());
+		putDouble(line.getgPercentageFWD());
+		putDouble(line.gettPercentageFWD());
+		putDouble(line.getdPercentageFWD());
+		putDouble(line.getnPercentageFWD());
+		putDouble(line.getaPercentageREV());
+		putDouble(line.getcPercentageREV());
+		putDouble(line.getgPercentageREV());
+		putDouble(line.gettPercentageREV());
+		putDouble(line.getdPercentageREV());
+		putDouble(line.getnPercentageREV());
+
+		putDouble(line.getTopBasePercentsFWD());
+		putDouble(line.getTopBasePercentsREV());
+		putDouble(line.getMinorBasePercentsFWD());
+		putDouble(line.getMinorBasePercentsREV());
+
+		putDouble(line.getLlrFWD());
+		putDouble(line.getLlrREV());
+		putDouble(line.getLlrAFWD());
+		putDouble(line.getLlrCFWD());
+		putDouble(line.getLlrGFWD());
+		putDouble(line.getLlrTFWD());
+		putDouble(line.getLlrAREV());
+		putDouble(line.getLlrCREV());
+		putDouble(line.getLlrGREV());
+		putDouble(line.getLlrTREV());
+		putDouble(line.getLlrDFWD());
+		putDouble(line.getLlrDREV());
+
+		putString(line.getMinors().toString());
+
+		rows++;
+
+		if (rows == BLOCK_SIZE) {
+			flush();
+		}
+	}
+
+	public void close() throws IOException {
+		flush();
+		deflater.end();
+		out.close();
+	}
+
+	private void flush() throws IOException {
+
+		if (rows == 0) {
+			return;
+		}
+
+		int[] rawLengths = new int[COLUMNS.length];
+
+		int[] compressedLengths = new int[COLUMNS.length];
+
+		compressed.reset();
+
+		for (int i = 0; i < COLUMNS.length; i++) {
+
+			byte[] raw = buffers[i].toByteArray();
+
+			int before = compressed.size();
+
+			deflater.reset();
+			deflater.setInput(raw);
+			deflater.finish();
+
+			while (!deflater.finished()) {
+				int length = deflater.deflate(chunk);
+				compressed.write(chunk, 0, length);
+			}
+
+			rawLengths[i] = raw.length;
+			compressedLengths[i] = compressed.size() - before;
+
+			buffers[i].reset();
+		}
+
+		ByteArrayOutputStream header = new ByteArrayOutputStream();
+		DataOutputStream headerOut = new DataOutputStream(header);
+
+		headerOut.writeByte(VERSION);
+		headerOut.writeInt(rows);
+		headerOut.writeShort(COLUMNS.length);
+
+		for (int i = 0; i < COLUMNS.length; i++) {
+			headerOut.writeUTF(COLUMNS[i]);
+			headerOut.writeByte(TYPES[i]);
+			headerOut.writeInt(rawLengths[i]);
+			headerOut.writeInt(compressedLengths[i]);
+		}
+
+		out.writeInt(MAGIC);
+		out.writeInt(header.size() + compressed.size());
+		header.writeTo(out);
+		compressed.writeTo(out);
+
+		rows = 0;
+	}
+
+	private void putString(String value) throws IOException {
+		columns[column++].writeUTF(value);
+	}
+
+	private void putInt(int value) throws IOException {
+		columns[column++].writeInt(value);
+	}
+
+	private void putChar(char value) throws IOException {
+		columns[column++].writeByte(value);
+	}
+
+	private void putDouble(double value) throws IOException {
+		columns[column++].writeDouble(value);
+	}
+
+}
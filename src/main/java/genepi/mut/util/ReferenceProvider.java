@@ -0,0 +1,77 @@
+package genepi.mut.util;
+
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMSequenceRecord;
+
+/**
+ * In-memory copy of a circular reference (e.g. rCRS) for BAQ windows. The
+ * bases are padded on both sides with the wrapped-around sequence, so windows
+ * near position 1 or the reference end are plain slices of getBases(). The
+ * provider is immutable and can be shared between threads.
+ */
+public class ReferenceProvider {
+
+	public static final int DEFAULT_PADDING = 1000;
+
+	private byte[] bases;
+
+	private int length;
+
+	private int padding;
+
+	public ReferenceProvider(String reference) {
+		this(reference, DEFAULT_PADDING);
+	}
+
+	public ReferenceProvider(String reference, int padding) {
+
+		this.length = reference.length();
+		this.padding = Math.min(padding, length);
+		this.bases = new byte[length + 2 * this.padding];
+
+		for (int i = 0; i < bases.length; i++) {
+			bases[i] = (byte) reference.charAt(wrap(i - this.padding + 1) - 1);
+		}
+	}
+
+	public int getLength() {
+		return length;
+	}
+
+	// padded bases, use getIndex to find a position
+	public byte[] getBases() {
+		return bases;
+	}
+
+	// index of the 1-based position pos in getBases()
+	public int getIndex(long pos) {
+		return (int) (pos - 1 + padding);
+	}
+
+	public boolean contains(long start, long stop) {
+		return start >= 1 - padding && stop <= length + padding;
+	}
+
+	// copy of start..stop, also for windows outside of the padding
+	public byte[] getSubsequence(long start, long stop) {
+
+		byte[] subsequence = new byte[(int) (stop - start + 1)];
+
+		for (int i = 0; i < subsequence.length; i++) {
+			subsequence[i] = bases[getIndex(wrap(start + i))];
+		}
+
+		return subsequence;
+	}
+
+	// true if the read is aligned to a sequence with the length of this reference
+	public boolean isReferenceOf(SAMRecord read) {
+		SAMSequenceRecord sequence = read.getHeader().getSequence(read.getReferenceName());
+		return sequence != null && sequence.getSequenceLength() == length;
+	}
+
+	private int wrap(long pos) {
+		return (int) (((pos - 1) % length + length) % length) + 1;
+	}
+
+}
@@ -1,21 +1,34 @@
 package genepi.mut.util;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMRecord;
 import htsjdk.samtools.SAMRecord.SAMTagAndValue;
 import htsjdk.samtools.SAMSequenceDictionary;
 import htsjdk.samtools.SAMSequenceRecord;
 import htsjdk.samtools.SamReader;
 import htsjdk.samtools.SamReaderFactory;
 import htsjdk.samtools.ValidationStringency;
+import htsjdk.samtools.reference.FastaSequenceIndex;
+import htsjdk.samtools.reference.FastaSequenceIndexCreator;
+import htsjdk.samtools.reference.FastaSequenceIndexEntry;
 
 public class ReferenceUtil {
 
@@ -50,6 +63,15 @@ public class ReferenceUtil {
 		return value;
 	}
 
+	// same default as above, but without building the attribute list
+	public static int getTagFromSamRecord(SAMRecord samRecord, String att) {
+		Object value = samRecord.getAttribute(att);
+		if (value instanceof Number) {
+			return ((Number) value).intValue();
+		}
+		return 30;
+	}
+
 	public static String readInReference(String file) {
 		StringBuilder stringBuilder = null;
 		try {
@@ -77,6 +99,50 @@ public class ReferenceUtil {
 		return stringBuilder.toString();
 	}
 
+	// length of the longest sequence of the fasta in a reference archive (see
+	// Extracter), 0 if the archive contains no fasta
+	public static int readReferenceLength(String archive) throws IOException {
+
+		InputStream in = new BufferedInputStream(new FileInputStream(archive));
+
+		TarArchiveInputStream tarIn = new TarArchiveInputStream(
+				archive.endsWith(".gz") ? new GzipCompressorInputStream(in) : in);
+
+		try {
+
+			TarArchiveEntry entry = null;
+
+			while ((entry = tarIn.getNextTarEntry()) != null) {
+
+				if (entry.isDirectory() || !entry.getName().endsWith(".fasta")) {
+					continue;
+				}
+
+				BufferedReader reader = new BufferedReader(new InputStreamReader(tarIn));
+
+				int maxLength = 0;
+				int length = 0;
+				String line = null;
+
+				while ((line = reader.readLine()) != null) {
+					if (line.startsWith(">")) {
+						length = 0;
+					} else {
+						length += line.trim().length();
+						maxLength = Math.max(maxLength, length);
+					}
+				}
+
+				return maxLength;
+			}
+
+		} finally {
+			tarIn.close();
+		}
+
+		return 0;
+	}
+
 	public static boolean ismtDNAHotSpot(int pos) {
 		return hotSpots.contains(pos);
 	}
@@ -97,14 +163,22 @@ public class ReferenceUtil {
 		return refPath;
 	}
 
-	public static Reference determineReference(File file) {
+	// name of the mtDNA contig (rCRS or precisionId length), null if not found
+	public static String determineContig(SAMSequenceDictionary dict) {
 
-		Reference ref = Reference.UNKNOWN;
+		for (SAMSequenceRecord record : dict.getSequences()) {
+			if (record.getSequenceLength() == 16569 || record.getSequenceLength() == 16649) {
+				return record.getSequenceName();
+			}
+		}
 
-		final SamReader reader = SamReaderFactory.makeDefault().validationStringency(ValidationStringency.SILENT)
-				.open(file);
+		return null;
+	}
+
+	// header of an already opened reader, avoids opening the file again
+	public static Reference determineReference(SAMSequenceDictionary dict) {
 
-		SAMSequenceDictionary dict = reader.getFileHeader().getSequenceDictionary();
+		Reference ref = Reference.UNKNOWN;
 
 		for (SAMSequenceRecord record : dict.getSequences()) {
 			if (record.getSequenceLength() == 16571) {
@@ -118,6 +192,16 @@ public class ReferenceUtil {
 			}
 		}
 
+		return ref;
+	}
+
+	public static Reference determineReference(File file) {
+
+		final SamReader reader = SamReaderFactory.makeDefault().validationStringency(ValidationStringency.SILENT)
+				.open(file);
+
+		Reference ref = determineReference(reader.getFileHeader().getSequenceDictionary());
+
 		try {
 			reader.close();
 		} catch (IOException e) {
@@ -128,4 +212,22 @@ public class ReferenceUtil {
 		return ref;
 	}
 
+	// header with all sequences of the fasta, the index is created if missing
+	public static SAMFileHeader createHeader(String fastaPath) throws IOException {
+
+		File index = new File(fastaPath + ".fai");
+
+		if (!index.exists()) {
+			FastaSequenceIndexCreator.buildFromFasta(new File(fastaPath).toPath()).write(index.toPath());
+		}
+
+		SAMFileHeader header = new SAMFileHeader();
+
+		for (FastaSequenceIndexEntry entry : new FastaSequenceIndex(index)) {
+			header.addSequence(new SAMSequenceRecord(entry.getContig(), (int) entry.getSize()));
+		}
+
+		return header;
+	}
+
 }
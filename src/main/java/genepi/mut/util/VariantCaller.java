@@ -333,51 +333,57 @@ public class VariantCaller {
 
 	}
 
-	public static String writeVariant(VariantResult result) throws IOException {
-
-		NumberFormat df;
+	// DecimalFormat is not thread-safe, keep one instance per thread
+	private static final ThreadLocal<NumberFormat> FORMAT = new ThreadLocal<NumberFormat>() {
+		@Override
+		protected NumberFormat initialValue() {
+			NumberFormat df = DecimalFormat.getInstance(Locale.US);
+			df.setMinimumFractionDigits(2);
+			df.setMaximumFractionDigits(3);
+			df.setGroupingUsed(false);
+			return df;
+		}
+	};
 
+	static {
 		Locale.setDefault(new Locale("en", "US"));
+	}
 
-		df = DecimalFormat.getInstance(Locale.US);
-
-		df.setMinimumFractionDigits(2);
-
-		df.setMaximumFractionDigits(3);
+	public static String writeVariant(VariantResult result) throws IOException {
 
-		df.setGroupingUsed(false);
+		NumberFormat df = FORMAT.get();
 
-		StringBuilder build = new StringBuilder();
+		char minor = result.getMinor();
 
-		build.append(result.getId() + "\t");
+		if (result.getType() == 1) {
+			minor = '-';
+		}
 
-		build.append(result.getPosition() + "\t");
+		StringBuilder build = new StringBuilder(64);
 
-		build.append(result.getRef() + "\t");
+		build.append(result.getId()).append('\t');
 
-		build.append(getVariantBase(result) + "\t");
+		build.append(result.getPosition()).append('\t');
 
-		build.append(df.format(result.getLevel()) + "\t");
+		build.append(result.getRef()).append('\t');
 
-		char minor = result.getMinor();
+		build.append(getVariantBase(result)).append('\t');
 
-		if (result.getType() == 1) {
-			minor = '-';
-		}
+		build.append(df.format(result.getLevel())).append('\t');
 
-		build.append(result.getTop() + "\t");
+		build.append(result.getTop()).append('\t');
 
-		build.append(df.format(result.getLevelTop()) + "\t");
+		build.append(df.format(result.getLevelTop())).append('\t');
 
-		build.append(minor + "\t");
+		build.append(minor).append('\t');
 
-		build.append(df.format(result.getLevelMinor()) + "\t");
+		build.append(df.format(result.getLevelMinor())).append('\t');
 
-		build.append((result.getCovFWD() + result.getCovREV()) + "\t");
+		build.append(result.getCovFWD() + result.getCovREV()).append('\t');
 
 		build.append(result.getType());
 
-		build.append("\r");
+		build.append('\r');
 
 		return build.toString();
 
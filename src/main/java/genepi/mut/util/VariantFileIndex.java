@@ -0,0 +1,273 @@
+package genepi.mut.util;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import genepi.mut.objects.Variant;
+
+/**
+ * Byte ranges of the per-sample blocks in a variants file (ID, Pos, Ref, ...).
+ * Built in one pass; isSorted() is true if every sample is a single block
+ * sorted by position, which is what analyse-local writes.
+ */
+public class VariantFileIndex {
+
+	public static final int BUFFER_SIZE = 4096;
+
+	private List<String> samples = new ArrayList<String>();
+
+	private List<Long> starts = new ArrayList<Long>();
+
+	private List<Long> ends = new ArrayList<Long>();
+
+	private HashMap<String, Integer> columns = new HashMap<String, Integer>();
+
+	private boolean sorted = true;
+
+	public static VariantFileIndex build(String file) throws IOException {
+
+		VariantFileIndex index = new VariantFileIndex();
+
+		HashMap<String, Integer> sampleIndex = new HashMap<String, Integer>();
+
+		InputStream in = new BufferedInputStream(new FileInputStream(file));
+
+		StringBuilder line = new StringBuilder();
+
+		long offset = 0;
+		long lineStart = 0;
+		boolean header = true;
+
+		String currentId = null;
+		int lastPos = 0;
+
+		int b;
+
+		do {
+
+			b = in.read();
+
+			if (b != -1) {
+				offset++;
+			}
+
+			if (b != '\n' && b != -1) {
+				if (b != '\r') {
+					line.append((char) b);
+				}
+				continue;
+			}
+
+			if (line.length() > 0) {
+
+				String[] tiles = line.toString().split("\t");
+
+				if (header) {
+
+					for (int i = 0; i < tiles.length; i++) {
+						index.columns.put(tiles[i], i);
+					}
+					header = false;
+
+				} else {
+
+					String id = tiles[index.columns.get("ID")];
+					int pos = parsePos(tiles[index.columns.get("Pos")]);
+
+					if (!id.equals(currentId)) {
+
+						if (sampleIndex.containsKey(id)) {
+							// sample is split into several blocks
+							index.sorted = false;
+						} else {
+							sampleIndex.put(id, index.samples.size());
+							index.samples.add(id);
+							index.starts.add(lineStart);
+							index.ends.add(offset);
+						}
+
+						currentId = id;
+						lastPos = 0;
+					}
+
+					if (pos < lastPos) {
+						index.sorted = false;
+					}
+
+					lastPos = pos;
+					index.ends.set(sampleIndex.get(id), offset);
+				}
+			}
+
+			line.setLength(0);
+			lineStart = offset;
+
+		} while (b != -1);
+
+		in.close();
+
+		return index;
+	}
+
+	public List<String> getSamples() {
+		return samples;
+	}
+
+	public boolean isSorted() {
+		return sorted;
+	}
+
+	Variant parseVariant(String line) {
+
+		String[] tiles = line.split("\t");
+
+		Variant variant = new Variant();
+
+		String pos = tiles[columns.get("Pos")];
+
+		if (pos.contains(".")) {
+			variant.setInsertion(pos);
+		}
+
+		variant.setPos(parsePos(pos));
+		variant.setRef(tiles[columns.get("Ref")].charAt(0));
+		variant.setVariantBase(tiles[columns.get("Variant")].charAt(0));
+		variant.setLevel(Double.parseDouble(tiles[columns.get("VariantLevel")]));
+		variant.setMajor(tiles[columns.get("MajorBase")].charAt(0));
+		variant.setMinor(tiles[columns.get("MinorBase")].charAt(0));
+		variant.setType(Integer.parseInt(tiles[columns.get("Type")]));
+
+		if (columns.containsKey("MajorLevel")) {
+			variant.setMajorLevel(Double.parseDouble(tiles[columns.get("MajorLevel")]));
+		}
+
+		if (columns.containsKey("MinorLevel")) {
+			variant.setMinorLevel(Double.parseDouble(tiles[columns.get("MinorLevel")]));
+		}
+
+		if (columns.containsKey("Coverage")) {
+			variant.setCoverage(Integer.parseInt(tiles[columns.get("Coverage")]));
+		} else {
+			variant.setCoverage(-1);
+		}
+
+		return variant;
+	}
+
+	// insertions (e.g. 309.1) belong to their anchor position
+	private static int parsePos(String pos) {
+		int dot = pos.indexOf('.');
+		return Integer.parseInt(dot == -1 ? pos : pos.substring(0, dot));
+	}
+
+	/**
+	 * Reads the variants of one sample with positional reads on a shared
+	 * channel, ordered by position (and sample for equal positions).
+	 */
+	public static class SampleStream implements Comparable<SampleStream> {
+
+		private int sample;
+
+		private FileChannel channel;
+
+		private VariantFileIndex index;
+
+		private long offset;
+
+		private long end;
+
+		private ByteBuffer buffer;
+
+		private StringBuilder line = new StringBuilder();
+
+		private Variant variant;
+
+		public SampleStream(int sample, FileChannel channel, VariantFileIndex index) {
+			this.sample = sample;
+			this.channel = channel;
+			this.index = index;
+			this.offset = index.starts.get(sample);
+			this.end = index.ends.get(sample);
+			this.buffer = ByteBuffer.allocate((int) Math.min(BUFFER_SIZE, end - offset));
+			this.buffer.limit(0);
+		}
+
+		public boolean next() throws IOException {
+
+			String nextLine;
+
+			do {
+				nextLine = readLine();
+			} while (nextLine != null && nextLine.isEmpty());
+
+			if (nextLine == null) {
+				variant = null;
+				return false;
+			}
+
+			variant = index.parseVariant(nextLine);
+
+			return true;
+		}
+
+		private String readLine() throws IOException {
+
+			line.setLength(0);
+
+			while (true) {
+
+				if (!buffer.hasRemaining()) {
+
+					int read = -1;
+
+					if (offset < end) {
+						buffer.clear();
+						buffer.limit((int) Math.min(buffer.capacity(), end - offset));
+						read = channel.read(buffer, offset);
+						buffer.flip();
+					}
+
+					if (read <= 0) {
+						return line.length() > 0 ? line.toString() : null;
+					}
+
+					offset += read;
+				}
+
+				byte b = buffer.get();
+
+				if (b == '\n') {
+					return line.toString();
+				}
+
+				if (b != '\r') {
+					line.append((char) b);
+				}
+			}
+		}
+
+		public int getSample() {
+			return sample;
+		}
+
+		public Variant getVariant() {
+			return variant;
+		}
+
+		@Override
+		public int compareTo(SampleStream o) {
+			if (variant.getPos() != o.variant.getPos()) {
+				return Integer.compare(variant.getPos(), o.variant.getPos());
+			}
+			return Integer.compare(sample, o.sample);
+		}
+	}
+
+}
@@ -1,15 +1,22 @@
 package genepi.mut.util;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.PriorityQueue;
 import java.util.Set;
 import java.util.TreeSet;
 
 import genepi.mut.objects.Sample;
 import genepi.mut.objects.Variant;
+import genepi.mut.util.VariantFileIndex.SampleStream;
 import htsjdk.samtools.SAMSequenceDictionary;
 import htsjdk.samtools.SAMSequenceRecord;
 import htsjdk.variant.variantcontext.Allele;
@@ -17,6 +24,7 @@ import htsjdk.variant.variantcontext.Genotype;
 import htsjdk.variant.variantcontext.GenotypeBuilder;
 import htsjdk.variant.variantcontext.VariantContextBuilder;
 import htsjdk.variant.variantcontext.writer.Options;
+import htsjdk.variant.variantcontext.writer.VariantContextWriterBuilder.OutputType;
 import htsjdk.variant.variantcontext.writer.VariantContextWriter;
 import htsjdk.variant.variantcontext.writer.VariantContextWriterBuilder;
 import htsjdk.variant.vcf.VCFConstants;
@@ -29,13 +37,122 @@ import htsjdk.variant.vcf.VCFHeaderVersion;
 
 public class VcfWriter {
 
-	public void createVCF(String in, String out, String reference, String chromosome, int length, String command) {
+	public void createVCF(String in, String out, String reference, String chromosome, int length, String command)
+			throws IOException {
 
-		MutationServerReader reader = new MutationServerReader(in);
+		String fasta = ReferenceUtil.readInReference(reference);
+
+		VariantFileIndex index = VariantFileIndex.build(in);
+
+		if (index.isSorted()) {
+			createVCFStreaming(in, index, out, fasta, chromosome, length, command);
+			return;
+		}
+
+		createVCFInMemory(in, out, fasta, chromosome, length, command);
+	}
+
+	// k-way merge over the per-sample blocks of a grouped and sorted variants
+	// file, only one buffer per sample is kept in memory
+	private void createVCFStreaming(String in, VariantFileIndex index, String out, String fasta, String chromosome,
+			int length, String command) throws IOException {
 
 		VCFHeader header = generateHeader(chromosome, length, command);
 
-		String fasta = ReferenceUtil.readInReference(reference);
+		List<String> sampleIds = index.getSamples();
+
+		header.getGenotypeSamples().addAll(sampleIds);
+
+		VariantContextWriter vcfWriter = createWriter(out, header);
+
+		FileChannel channel = null;
+
+		try {
+
+			vcfWriter.writeHeader(header);
+
+			channel = FileChannel.open(Paths.get(in), StandardOpenOption.READ);
+
+			writeVariants(channel, index, vcfWriter, fasta, chromosome);
+
+		} finally {
+			if (channel != null) {
+				channel.close();
+			}
+			vcfWriter.close();
+		}
+	}
+
+	private void writeVariants(FileChannel channel, VariantFileIndex index, VariantContextWriter vcfWriter,
+			String fasta, String chromosome) throws IOException {
+
+		List<String> sampleIds = index.getSamples();
+
+		PriorityQueue<SampleStream> queue = new PriorityQueue<SampleStream>();
+
+		for (int i = 0; i < sampleIds.size(); i++) {
+			SampleStream stream = new SampleStream(i, channel, index);
+			if (stream.next()) {
+				queue.add(stream);
+			}
+		}
+
+		@SuppressWarnings("unchecked")
+		ArrayList<Variant>[] current = new ArrayList[sampleIds.size()];
+
+		while (!queue.isEmpty()) {
+
+			int pos = queue.peek().getVariant().getPos();
+
+			// collect all lines of all samples at this position
+			List<SampleStream> streams = new ArrayList<SampleStream>();
+
+			while (!queue.isEmpty() && queue.peek().getVariant().getPos() == pos) {
+
+				SampleStream stream = queue.poll();
+
+				ArrayList<Variant> variants = new ArrayList<Variant>();
+
+				boolean hasNext;
+
+				do {
+					variants.add(stream.getVariant());
+					hasNext = stream.next();
+				} while (hasNext && stream.getVariant().getPos() == pos);
+
+				current[stream.getSample()] = variants;
+
+				if (hasNext) {
+					streams.add(stream);
+				}
+			}
+
+			queue.addAll(streams);
+
+			VariantContextBuilder vcBuilder = new VariantContextBuilder().start(pos).stop(pos).chr(chromosome);
+
+			final List<Genotype> genotypes = new ArrayList<Genotype>();
+			final HashSet<Allele> alleles = new HashSet<Allele>();
+
+			for (int i = 0; i < sampleIds.size(); i++) {
+				addGenotype(sampleIds.get(i), current[i], pos, fasta, genotypes, alleles);
+				current[i] = null;
+			}
+
+			if (alleles.size() > 0) {
+				vcBuilder.alleles(alleles).genotypes(genotypes);
+				vcBuilder.filter("PASS");
+				vcfWriter.add(vcBuilder.make());
+			}
+		}
+	}
+
+	private void createVCFInMemory(String in, String out, String fasta, String chromosome, int length,
+			String command) {
+
+		MutationServerReader reader = new MutationServerReader(in);
+
+		VCFHeader header = generateHeader(chromosome, length, command);
 
 		HashMap<String, Sample> samples = reader.parse();
 		TreeSet<Integer> positions = new TreeSet<Integer>();
@@ -47,9 +164,7 @@ public class VcfWriter {
 			}
 		}
 
-		VariantContextWriterBuilder builder = new VariantContextWriterBuilder().setOutputFile(out)
-				.unsetOption(Options.INDEX_ON_THE_FLY);
-		VariantContextWriter vcfWriter = builder.build();
+		VariantContextWriter vcfWriter = createWriter(out, header);
 		vcfWriter.writeHeader(header);
 
 		for (Integer pos : positions) {
@@ -60,102 +175,120 @@ public class VcfWriter {
 			final HashSet<Allele> alleles = new HashSet<Allele>();
 
 			for (Sample sample : samples.values()) {
+				addGenotype(sample.getId(), sample.getVariants(pos), pos, fasta, genotypes, alleles);
+			}
+
+			if (alleles.size() > 0) {
+				vcBuilder.alleles(alleles).genotypes(genotypes);
+				vcBuilder.filter("PASS");
+				vcfWriter.add(vcBuilder.make());
+			}
+		}
+
+		vcfWriter.close();
+	}
 
-				ArrayList<Variant> variants = sample.getVariants(pos);
+	// block compressed output (vcf.gz) is indexed with tabix on the fly
+	private VariantContextWriter createWriter(String out, VCFHeader header) {
 
-				if (variants != null) {
+		VariantContextWriterBuilder builder = new VariantContextWriterBuilder().setOutputFile(out)
+				.setReferenceDictionary(header.getSequenceDictionary());
 
-					Variant variant = buildVariant(variants);
+		if (VariantContextWriterBuilder.determineOutputTypeFromFile(new File(out)) == OutputType.BLOCK_COMPRESSED_VCF) {
+			builder.setOption(Options.INDEX_ON_THE_FLY);
+		} else {
+			builder.unsetOption(Options.INDEX_ON_THE_FLY);
+		}
 
-					// deletions handling
-					if (variant.getVariant() == 'D') {
-						variant.setVariantBase('*');
-					}
-					
-					if (variant.getMajor() == 'D') {
-						variant.setMajor('*');
-					}
+		return builder.build();
+	}
 
-					if (variant.getMinor() == 'D') {
-						variant.setMinor('*');
-					}
-					
-					String base = String.valueOf(variant.getVariant());
-					char ref = variant.getRef();
+	private void addGenotype(String sampleId, ArrayList<Variant> variants, int pos, String fasta,
+			List<Genotype> genotypes, HashSet<Allele> alleles) {
 
-					if (variant.getType() == 5 && variant.getInsertion().contains(".1")) {
-						ref = fasta.charAt(pos - 1);
-						base = ref + "" + variant.getVariant();
-					}
+		if (variants != null) {
 
-					Allele refAllele = Allele.create(ref + "", true);
-					Allele varAllele = Allele.create(base + "", false);
-					alleles.add(refAllele);
-					alleles.add(varAllele);
-
-					if (variant.getType() == 1 || variant.getType() == 4 || variant.getType() == 5) {
-						final GenotypeBuilder gb = new GenotypeBuilder(sample.getId(), Arrays.asList(varAllele));
-						gb.DP(variant.getCoverage());
-
-						genotypes.add(gb.make());
-
-					} else if (variant.getType() == 2) {
-
-						Allele genotypeAllele1;
-						Allele genotypeAllele2;
-						
-						String major = String.valueOf(variant.getMajor());
-						String minor = String.valueOf(variant.getMinor());
-						
-						// check for multiallelic sites
-						if (variant.getMajor() == variant.getRef()) {
-							genotypeAllele1 = Allele.create(major + "", true);
-							genotypeAllele2 = Allele.create(minor + "", false);
-
-						} else {
-							genotypeAllele1 = Allele.create(major + "", false);
-							// REF: C; MAJOR: A; MINOR:T
-							if (variant.getMinor() != variant.getRef()) {
-								genotypeAllele2 = Allele.create(minor + "", false);
-								// new allele found, add to alleles
-								alleles.add(genotypeAllele2);
-							} else {
-								genotypeAllele2 = Allele.create(minor + "", true);
-							}
-						}
-
-						final GenotypeBuilder gb = new GenotypeBuilder(sample.getId(),
-								Arrays.asList(genotypeAllele1, genotypeAllele2));
-						gb.DP(variant.getCoverage());
-
-						String alleleFreq = variant.getLevel() + "";
-
-						if (variant.getLevel() == variant.getMajorLevel() && variant.getMinor() != variant.getRef()) {
-							alleleFreq += "," + variant.getMinorLevel();
-						} else if (variant.getLevel() == variant.getMinorLevel()
-								&& variant.getMajor() != variant.getRef()) {
-							alleleFreq += "," + variant.getMajorLevel();
-						}
-
-						gb.attribute("AF", alleleFreq);
-
-						genotypes.add(gb.make());
+			Variant variant = buildVariant(variants);
+
+			// deletions handling
+			if (variant.getVariant() == 'D') {
+				variant.setVariantBase('*');
+			}
+
+			if (variant.getMajor() == 'D') {
+				variant.setMajor('*');
+			}
+
+			if (variant.getMinor() == 'D') {
+				variant.setMinor('*');
+			}
+
+			String base = String.valueOf(variant.getVariant());
+			char ref = variant.getRef();
+
+			if (variant.getType() == 5 && variant.getInsertion().contains(".1")) {
+				ref = fasta.charAt(pos - 1);
+				base = ref + "" + variant.getVariant();
+			}
+
+			Allele refAllele = Allele.create(ref + "", true);
+			Allele varAllele = Allele.create(base + "", false);
+			alleles.add(refAllele);
+			alleles.add(varAllele);
+
+			if (variant.getType() == 1 || variant.getType() == 4 || variant.getType() == 5) {
+				final GenotypeBuilder gb = new GenotypeBuilder(sampleId, Arrays.asList(varAllele));
+				gb.DP(variant.getCoverage());
+
+				genotypes.add(gb.make());
+
+			} else if (variant.getType() == 2) {
+
+				Allele genotypeAllele1;
+				Allele genotypeAllele2;
+
+				String major = String.valueOf(variant.getMajor());
+				String minor = String.valueOf(variant.getMinor());
+
+				// check for multiallelic sites
+				if (variant.getMajor() == variant.getRef()) {
+					genotypeAllele1 = Allele.create(major + "", true);
+					genotypeAllele2 = Allele.create(minor + "", false);
 
-					}
 				} else {
-					final GenotypeBuilder gb = new GenotypeBuilder(sample.getId(),
-							Arrays.asList(Allele.create(fasta.charAt(pos - 1) + "", true)));
-					genotypes.add(gb.make());
+					genotypeAllele1 = Allele.create(major + "", false);
+					// REF: C; MAJOR: A; MINOR:T
+					if (variant.getMinor() != variant.getRef()) {
+						genotypeAllele2 = Allele.create(minor + "", false);
+						// new allele found, add to alleles
+						alleles.add(genotypeAllele2);
+					} else {
+						genotypeAllele2 = Allele.create(minor + "", true);
+					}
 				}
+
+				final GenotypeBuilder gb = new GenotypeBuilder(sampleId,
+						Arrays.asList(genotypeAllele1, genotypeAllele2));
+				gb.DP(variant.getCoverage());
+
+				String alleleFreq = variant.getLevel() + "";
+
+				if (variant.getLevel() == variant.getMajorLevel() && variant.getMinor() != variant.getRef()) {
+					alleleFreq += "," + variant.getMinorLevel();
+				} else if (variant.getLevel() == variant.getMinorLevel() && variant.getMajor() != variant.getRef()) {
+					alleleFreq += "," + variant.getMajorLevel();
+				}
+
+				gb.attribute("AF", alleleFreq);
+
+				genotypes.add(gb.make());
+
 			}
-			if (alleles.size() > 0) {
-				vcBuilder.alleles(alleles).genotypes(genotypes);
-				vcBuilder.filter("PASS");
-				vcfWriter.add(vcBuilder.make());
-			}
+		} else {
+			final GenotypeBuilder gb = new GenotypeBuilder(sampleId,
+					Arrays.asList(Allele.create(fasta.charAt(pos - 1) + "", true)));
+			genotypes.add(gb.make());
 		}
-
-		vcfWriter.close();
 	}
 
 	private Variant buildVariant(ArrayList<Variant> variants) {
@@ -0,0 +1,167 @@
+package genepi.mut.objects;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Test;
+
+public class BasePositionHadoopTest {
+
+	@Test
+	public void testRoundTrip() throws IOException {
+
+		BasePosition basePos = new BasePosition();
+
+		for (int i = 0; i < 20000; i++) {
+			basePos.addaFor(1);
+			basePos.addaForQ((byte) (30 + i % 10));
+		}
+
+		for (int i = 0; i < 150; i++) {
+			basePos.addgRev(1);
+			basePos.addgRevQ((byte) 25);
+			basePos.adddFor(1);
+			basePos.adddForQ((byte) 40);
+		}
+
+		basePos.addnRev(7);
+
+		BasePositionHadoop out = new BasePositionHadoop();
+		out.setBasePosition(basePos);
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		out.write(new DataOutputStream(bytes));
+
+		// size depends on distinct qualities, not on coverage
+		assertTrue(bytes.size() < 100);
+
+		BasePositionHadoop in = new BasePositionHadoop();
+		in.readFields(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+		BasePosition result = in.getBasePosition();
+
+		assertEquals(20000, result.getaFor());
+		assertEquals(150, result.getgRev());
+		assertEquals(150, result.getdFor());
+		assertEquals(7, result.getnRev());
+		assertEquals(0, result.getcFor());
+
+		assertEquals(20000, result.getaForQ().getTotal());
+		assertEquals(2000, result.getaForQ().getCount(35));
+		assertEquals(150, result.getgRevQ().getCount(25));
+		assertEquals(150, result.getdForQ().getCount(40));
+		assertTrue(result.getcForQ().isEmpty());
+
+	}
+
+	@Test
+	public void testMerge() throws IOException {
+
+		BasePosition first = new BasePosition();
+		first.addtFor(2);
+		first.addtForQ((byte) 30);
+		first.addtForQ((byte) 32);
+
+		BasePosition second = new BasePosition();
+		second.addtFor(1);
+		second.addtForQ((byte) 30);
+
+		BasePosition merged = new BasePosition();
+		merged.add(first);
+		merged.add(second);
+
+		assertEquals(3, merged.gettFor());
+		assertEquals(2, merged.gettForQ().getCount(30));
+		assertEquals(1, merged.gettForQ().getCount(32));
+		assertEquals(2, merged.gettForQ().getDistinctQualities());
+
+	}
+
+	@Test
+	public void testMergeSerialized() throws IOException {
+
+		List<byte[]> serialized = new ArrayList<byte[]>();
+
+		for (int i = 0; i < 5; i++) {
+
+			BasePosition basePos = new BasePosition();
+			basePos.addcRev(i + 1);
+			for (int j = 0; j <= i; j++) {
+				basePos.addcRevQ((byte) (20 + i));
+			}
+			basePos.addnFor(1);
+
+			BasePositionHadoop value = new BasePositionHadoop();
+			value.setBasePosition(basePos);
+
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			value.write(new DataOutputStream(bytes));
+			serialized.add(bytes.toByteArray());
+		}
+
+		BasePosition merged = new BasePosition();
+		merged.addaFor(99);
+
+		BasePositionHadoop.merge(new ReusingValues(serialized), merged);
+
+		assertEquals(0, merged.getaFor());
+		assertEquals(15, merged.getcRev());
+		assertEquals(5, merged.getnFor());
+		assertEquals(15, merged.getcRevQ().getTotal());
+		assertEquals(5, merged.getcRevQ().getCount(24));
+		assertEquals(1, merged.getcRevQ().getCount(20));
+		assertEquals(5, merged.getcRevQ().getDistinctQualities());
+
+	}
+
+	// deserializes every value into the same instance, like the reduce context
+	private static class ReusingValues implements Iterable<BasePositionHadoop> {
+
+		private List<byte[]> serialized;
+
+		private BasePositionHadoop value = new BasePositionHadoop();
+
+		public ReusingValues(List<byte[]> serialized) {
+			this.serialized = serialized;
+		}
+
+		@Override
+		public Iterator<BasePositionHadoop> iterator() {
+
+			final Iterator<byte[]> bytes = serialized.iterator();
+
+			return new Iterator<BasePositionHadoop>() {
+
+				@Override
+				public boolean hasNext() {
+					return bytes.hasNext();
+				}
+
+				@Override
+				public BasePositionHadoop next() {
+					try {
+						value.readFields(new DataInputStream(new ByteArrayInputStream(bytes.next())));
+					} catch (IOException e) {
+						throw new RuntimeException(e);
+					}
+					return value;
+				}
+
+				@Override
+				public void remove() {
+					throw new UnsupportedOperationException();
+				}
+			};
+		}
+	}
+
+}
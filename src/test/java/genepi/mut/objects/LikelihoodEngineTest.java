@@ -0,0 +1,174 @@
+package genepi.mut.objects;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class LikelihoodEngineTest {
+
+	static final char[] ALLELES = { 'A', 'C', 'G', 'T', 'D' };
+
+	@Test
+	public void testSameAsPerBaseFormula() {
+
+		Random random = new Random(7);
+
+		// [strand][allele], qualities in the order they were added
+		List<List<List<Byte>>> qualities = new ArrayList<List<List<Byte>>>();
+
+		BasePosition base = new BasePosition();
+
+		for (int strand = 0; strand < 2; strand++) {
+
+			List<List<Byte>> strandQualities = new ArrayList<List<Byte>>();
+
+			for (int allele = 0; allele < ALLELES.length; allele++) {
+
+				List<Byte> alleleQualities = new ArrayList<Byte>();
+
+				// mixed qualities, quality 0 and qualities of 120 and above
+				for (int i = 0; i < 20 + allele * 15; i++) {
+					int quality = i % 9 == 0 ? 0 : i % 7 == 0 ? 120 + random.nextInt(8) : random.nextInt(45);
+					alleleQualities.add((byte) quality);
+					add(base, strand, ALLELES[allele], (byte) quality);
+				}
+
+				strandQualities.add(alleleQualities);
+			}
+
+			qualities.add(strandQualities);
+		}
+
+		LikelihoodEngine engine = new LikelihoodEngine();
+
+		for (double[] f : new double[][] { { 0.5, 0.5 }, { 0.9, 0.75 }, { 0.999, 0.2 } }) {
+
+			engine.compute(base, f[0], f[1]);
+
+			for (char top : ALLELES) {
+				for (char allele : ALLELES) {
+
+					double expectedFWD = llr(qualities.get(0), top, allele, f[0]);
+					double expectedREV = llr(qualities.get(1), top, allele, f[1]);
+
+					assertEquals(top + "/" + allele, expectedFWD, engine.getLlrFWD(top, allele),
+							1e-9 * Math.max(1, expectedFWD));
+					assertEquals(top + "/" + allele, expectedREV, engine.getLlrREV(top, allele),
+							1e-9 * Math.max(1, expectedREV));
+				}
+
+				// no minor base
+				assertEquals(0, engine.getLlrFWD(top, '-'), 0);
+			}
+		}
+	}
+
+	@Test
+	public void testDeletionsOnly() {
+
+		BasePosition base = new BasePosition();
+
+		List<Byte> fwd = new ArrayList<Byte>();
+		List<Byte> rev = new ArrayList<Byte>();
+
+		for (int i = 0; i < 50; i++) {
+			fwd.add((byte) (i % 2 == 0 ? 0 : 127));
+			add(base, 0, 'D', fwd.get(i));
+			rev.add((byte) 30);
+			add(base, 1, 'D', rev.get(i));
+		}
+
+		LikelihoodEngine engine = new LikelihoodEngine();
+		engine.compute(base, 0.8, 0.8);
+
+		assertEquals(Math.abs(minor(fwd, 0.8)), engine.getLlrFWD('D', 'D'), 1e-9);
+		assertEquals(Math.abs(minor(rev, 0.8)), engine.getLlrREV('D', 'D'), 1e-9);
+		assertEquals(0, engine.getLlrFWD('D', 'A'), 0);
+	}
+
+	// per base calculation of VariantLine before the histograms were bucketed
+	private double llr(List<List<Byte>> qualities, char top, char allele, double f) {
+
+		double fm0 = major(qualities.get(index(top)), f);
+		double fm1 = fm0 + minor(qualities.get(index(allele)), f);
+
+		return Math.abs(fm1 - fm0);
+	}
+
+	private double major(List<Byte> qualities, double f) {
+		double tmp = 0;
+		for (Byte err : qualities) {
+			double p = Math.pow(10, (-err / 10));
+			tmp = tmp + Math.log(((1 - f) * p + f * (1 - p)));
+		}
+		return tmp;
+	}
+
+	private double minor(List<Byte> qualities, double f) {
+		double tmp = 0;
+		for (Byte err : qualities) {
+			double p = Math.pow(10, (-err / 10));
+			tmp = tmp + Math.log(((1 - f) * (1 - p) + (f * p)));
+		}
+		return tmp;
+	}
+
+	private int index(char allele) {
+		return new String(ALLELES).indexOf(allele);
+	}
+
+	private void add(BasePosition base, int strand, char allele, byte quality) {
+		switch (allele) {
+		case 'A':
+			if (strand == 0) {
+				base.addaFor(1);
+				base.addaForQ(quality);
+			} else {
+				base.addaRev(1);
+				base.addaRevQ(quality);
+			}
+			break;
+		case 'C':
+			if (strand == 0) {
+				base.addcFor(1);
+				base.addcForQ(quality);
+			} else {
+				base.addcRev(1);
+				base.addcRevQ(quality);
+			}
+			break;
+		case 'G':
+			if (strand == 0) {
+				base.addgFor(1);
+				base.addgForQ(quality);
+			} else {
+				base.addgRev(1);
+				base.addgRevQ(quality);
+			}
+			break;
+		case 'T':
+			if (strand == 0) {
+				base.addtFor(1);
+				base.addtForQ(quality);
+			} else {
+				base.addtRev(1);
+				base.addtRevQ(quality);
+			}
+			break;
+		case 'D':
+			if (strand == 0) {
+				base.adddFor(1);
+				base.adddForQ(quality);
+			} else {
+				base.adddRev(1);
+				base.adddRevQ(quality);
+			}
+			break;
+		}
+	}
+
+}
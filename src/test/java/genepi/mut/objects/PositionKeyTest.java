@@ -0,0 +1,92 @@
+package genepi.mut.objects;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import org.apache.hadoop.conf.Configuration;
+import org.junit.Test;
+
+public class PositionKeyTest {
+
+	@Test
+	public void testRoundTrip() throws IOException {
+
+		PositionKey key = key("sample_1", 309, 2);
+
+		PositionKey result = new PositionKey();
+		result.readFields(new DataInputStream(new ByteArrayInputStream(bytes(key))));
+
+		assertEquals("sample_1", result.getSample());
+		assertEquals(309, result.getPosition());
+		assertEquals(2, result.getIndex());
+		assertTrue(result.isInsertion());
+		assertEquals("sample_1:309.2", result.toString());
+	}
+
+	@Test
+	public void testRawComparator() throws IOException {
+
+		PositionKey[] keys = { key("a", 2, 0), key("a", 10, 0), key("a", 309, 0), key("a", 309, 1), key("a", 309, 2),
+				key("a", 16569, 0), key("ab", 1, 0), key("b", 1, 0), key("b_2", 5, 0) };
+
+		PositionKey.Comparator comparator = new PositionKey.Comparator();
+
+		for (PositionKey key1 : keys) {
+			for (PositionKey key2 : keys) {
+
+				byte[] b1 = bytes(key1);
+				byte[] b2 = bytes(key2);
+
+				int expected = Integer.signum(key1.compareTo(key2));
+
+				assertEquals(expected, Integer.signum(comparator.compare(b1, 0, b1.length, b2, 0, b2.length)));
+			}
+		}
+
+		// numeric, not string order
+		assertTrue(keys[0].compareTo(keys[1]) < 0);
+	}
+
+	@Test
+	public void testPartitionsAreOrdered() {
+
+		Configuration conf = new Configuration();
+		conf.setStrings("samples", "sample_b", "sample_a", "sample_c");
+
+		PositionKeyPartitioner partitioner = new PositionKeyPartitioner();
+		partitioner.setConf(conf);
+
+		int partitions = 7;
+		int last = 0;
+
+		for (String sample : new String[] { "sample_a", "sample_b", "sample_c" }) {
+			for (int pos = 1; pos <= 16569; pos++) {
+				int partition = partitioner.getPartition(key(sample, pos, 0), null, partitions);
+				assertTrue(partition >= last);
+				last = partition;
+			}
+		}
+
+		assertEquals(partitions - 1, last);
+		assertEquals(0, partitioner.getPartition(key("sample_a", 1, 0), null, partitions));
+	}
+
+	private PositionKey key(String sample, int position, int index) {
+		PositionKey key = new PositionKey();
+		key.set(sample, position, index);
+		return key;
+	}
+
+	private byte[] bytes(PositionKey key) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		key.write(new DataOutputStream(bytes));
+		return bytes.toByteArray();
+	}
+
+}
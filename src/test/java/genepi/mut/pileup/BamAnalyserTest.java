@@ -0,0 +1,228 @@
+package genepi.mut.pileup;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import genepi.mut.objects.BasePosition;
+import genepi.mut.objects.Pileup;
+import genepi.mut.objects.QualityHistogram;
+import genepi.mut.util.ReferenceUtil;
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SAMSequenceRecord;
+
+public class BamAnalyserTest {
+
+	static final String REFERENCE = "test-data/mtdna/reference/rCRS.fasta";
+
+	// 5S10M2I3M1D4M, the trailing clip keeps the read above the minimal length
+	static final String CIGAR = "5S10M2I3M1D4M5S";
+
+	static final String BASES = "GGGGG" + "ACGTACGTAC" + "TT" + "GGC" + "ATAT" + "CCCCC";
+
+	@Test
+	public void testCigarOperators() throws Exception {
+
+		BamAnalyser analyser = createAnalyser();
+
+		// base 3 of the first M (position 102) is below the base quality
+		SAMRecord read = createRead(100, CIGAR, BASES, false);
+		read.getBaseQualities()[7] = 10;
+
+		analyser.analyseRead(read, true, true);
+
+		Pileup pileup = analyser.getPileup();
+
+		// soft clips are skipped
+		for (int pos = 90; pos < 100; pos++) {
+			assertNull(pileup.get(pos));
+		}
+
+		assertBase(pileup.get(100), 'A', false);
+		assertBase(pileup.get(101), 'C', false);
+		assertNull(pileup.get(102));
+		assertBase(pileup.get(103), 'T', false);
+		assertBase(pileup.get(109), 'C', false);
+
+		// insertions are anchored at the last matched position
+		assertBase(pileup.getInsertion(109, 1), 'T', false);
+		assertBase(pileup.getInsertion(109, 2), 'T', false);
+		assertNull(pileup.getInsertion(109, 3));
+		assertNull(pileup.getInsertion(110, 1));
+
+		assertBase(pileup.get(110), 'G', false);
+		assertBase(pileup.get(112), 'C', false);
+
+		// deletions get a fixed quality of 40
+		assertEquals(1, pileup.get(113).getdFor());
+		assertEquals(1, pileup.get(113).getdForQ().getCount(40));
+		assertEquals(0, pileup.get(113).getaFor() + pileup.get(113).getcFor() + pileup.get(113).getgFor()
+				+ pileup.get(113).gettFor());
+
+		assertBase(pileup.get(114), 'A', false);
+		assertBase(pileup.get(117), 'T', false);
+		assertNull(pileup.get(118));
+
+		// 16 matched bases, 2 insertions and 1 deletion
+		assertEquals(19, pileup.getSize());
+	}
+
+	@Test
+	public void testWithoutDeletionsAndInsertions() throws Exception {
+
+		BamAnalyser analyser = createAnalyser();
+
+		analyser.analyseRead(createRead(100, CIGAR, BASES, false), false, false);
+
+		Pileup pileup = analyser.getPileup();
+
+		assertNull(pileup.get(113));
+		assertNull(pileup.getInsertion(109, 1));
+		assertBase(pileup.get(110), 'G', false);
+		assertBase(pileup.get(114), 'A', false);
+		assertEquals(16, pileup.getSize());
+	}
+
+	@Test
+	public void testReadAtReferenceEnd() throws Exception {
+
+		BamAnalyser analyser = createAnalyser();
+
+		// reverse read, the last 10 bases are behind the reference end
+		String bases = "ACGTACGTACGTACGTACGTACGTACGTAC";
+		analyser.analyseRead(createRead(16550, "30M", bases, true), true, true);
+
+		Pileup pileup = analyser.getPileup();
+
+		assertEquals(20, pileup.getSize());
+		assertBase(pileup.get(16550), 'A', true);
+		assertBase(pileup.get(16569), bases.charAt(19), true);
+		assertNull(pileup.get(16570));
+	}
+
+	@Test
+	public void testMergedPileups() throws Exception {
+
+		// two reads in one analyser and in two merged analysers
+		BamAnalyser single = createAnalyser();
+		BamAnalyser first = createAnalyser();
+		BamAnalyser second = createAnalyser();
+
+		single.analyseRead(createRead(100, CIGAR, BASES, false), true, true);
+		single.analyseRead(createOverlappingRead(), true, true);
+
+		first.analyseRead(createRead(100, CIGAR, BASES, false), true, true);
+		second.analyseRead(createOverlappingRead(), true, true);
+
+		first.getPileup().add(second.getPileup());
+
+		Pileup expected = single.getPileup();
+		Pileup merged = first.getPileup();
+
+		assertEquals(expected.getSize(), merged.getSize());
+
+		for (int pos = 1; pos <= expected.getLength(); pos++) {
+			assertSameBase(expected.get(pos), merged.get(pos));
+			for (int index = 1; index <= expected.getInsertionCount(pos); index++) {
+				assertSameBase(expected.getInsertion(pos, index), merged.getInsertion(pos, index));
+			}
+		}
+
+		// both strands at position 105, quality 127 of the second read
+		assertEquals(1, merged.get(105).getcFor());
+		assertEquals(1, merged.get(105).getaRev());
+		assertEquals(127, merged.get(108).gettRevQ().getMaxQuality());
+	}
+
+	private BamAnalyser createAnalyser() {
+		return new BamAnalyser("sample", REFERENCE, ReferenceUtil.readInReference(REFERENCE), 20, 20, 30, false, 30,
+				"mtdna");
+	}
+
+	private SAMRecord createRead(int start, String cigar, String bases, boolean reverse) {
+
+		SAMFileHeader header = new SAMFileHeader();
+		SAMSequenceDictionary dictionary = new SAMSequenceDictionary();
+		dictionary.addSequence(new SAMSequenceRecord("chrM", 16569));
+		header.setSequenceDictionary(dictionary);
+
+		byte[] qualities = new byte[bases.length()];
+		Arrays.fill(qualities, (byte) 30);
+
+		SAMRecord read = new SAMRecord(header);
+		read.setReadName("read" + start);
+		read.setReferenceName("chrM");
+		read.setAlignmentStart(start);
+		read.setCigarString(cigar);
+		read.setReadBases(bases.getBytes());
+		read.setBaseQualities(qualities);
+		read.setMappingQuality(60);
+		read.setReadNegativeStrandFlag(reverse);
+
+		return read;
+	}
+
+	// reverse read over the first read, with one base of quality 127
+	private SAMRecord createOverlappingRead() {
+		SAMRecord read = createRead(105, "30M", "ACGTACGTACGTACGTACGTACGTACGTAC", true);
+		read.getBaseQualities()[3] = 127;
+		return read;
+	}
+
+	// one base of quality 30 on the given strand
+	private void assertBase(BasePosition basePos, char base, boolean reverse) {
+
+		int[] counts = reverse
+				? new int[] { basePos.getaRev(), basePos.getcRev(), basePos.getgRev(), basePos.gettRev() }
+				: new int[] { basePos.getaFor(), basePos.getcFor(), basePos.getgFor(), basePos.gettFor() };
+
+		QualityHistogram[] qualities = reverse
+				? new QualityHistogram[] { basePos.getaRevQ(), basePos.getcRevQ(), basePos.getgRevQ(),
+						basePos.gettRevQ() }
+				: new QualityHistogram[] { basePos.getaForQ(), basePos.getcForQ(), basePos.getgForQ(),
+						basePos.gettForQ() };
+
+		int index = "ACGT".indexOf(base);
+
+		for (int i = 0; i < 4; i++) {
+			assertEquals("ACGT".charAt(i) + " at " + basePos.getPos(), i == index ? 1 : 0, counts[i]);
+			assertEquals(i == index ? 1 : 0, qualities[i].getCount(30));
+		}
+	}
+
+	private void assertSameBase(BasePosition expected, BasePosition actual) {
+
+		if (expected == null) {
+			assertNull(actual);
+			return;
+		}
+
+		assertEquals(expected.toString(), actual.toString());
+
+		assertSameQualities(expected.getaForQ(), actual.getaForQ());
+		assertSameQualities(expected.getcForQ(), actual.getcForQ());
+		assertSameQualities(expected.getgForQ(), actual.getgForQ());
+		assertSameQualities(expected.gettForQ(), actual.gettForQ());
+		assertSameQualities(expected.getdForQ(), actual.getdForQ());
+		assertSameQualities(expected.getaRevQ(), actual.getaRevQ());
+		assertSameQualities(expected.getcRevQ(), actual.getcRevQ());
+		assertSameQualities(expected.getgRevQ(), actual.getgRevQ());
+		assertSameQualities(expected.gettRevQ(), actual.gettRevQ());
+		assertSameQualities(expected.getdRevQ(), actual.getdRevQ());
+	}
+
+	private void assertSameQualities(QualityHistogram expected, QualityHistogram actual) {
+
+		assertEquals(expected.getTotal(), actual.getTotal());
+
+		for (int q = 0; q <= QualityHistogram.MAX_QUALITY; q++) {
+			assertEquals(expected.getCount(q), actual.getCount(q));
+		}
+	}
+
+}
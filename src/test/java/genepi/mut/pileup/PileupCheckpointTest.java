@@ -0,0 +1,57 @@
+package genepi.mut.pileup;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import genepi.mut.objects.BasePosition;
+import genepi.mut.objects.Pileup;
+
+public class PileupCheckpointTest {
+
+	@Test
+	public void testRoundTrip() throws IOException {
+
+		Pileup pileup = new Pileup(16569);
+
+		for (int i = 0; i < 500; i++) {
+			BasePosition basePos = pileup.getOrCreate(73);
+			basePos.addgFor(1);
+			basePos.addgForQ((byte) (30 + i % 5));
+		}
+
+		pileup.getOrCreate(16569).adddRev(3);
+		pileup.getOrCreate(16569).adddRevQ((byte) 40);
+
+		BasePosition insertion = pileup.getOrCreateInsertion(309, 2);
+		insertion.addcFor(4);
+		insertion.addcForQ((byte) 35);
+
+		File file = File.createTempFile("sample", ".pileup");
+		file.deleteOnExit();
+
+		PileupCheckpoint.write(file, pileup, "sample.bam;20;20;30");
+
+		assertTrue(PileupCheckpoint.matches(file, "sample.bam;20;20;30"));
+		assertFalse(PileupCheckpoint.matches(file, "sample.bam;30;20;30"));
+		assertNull(PileupCheckpoint.read(file, "sample.bam;30;20;30"));
+
+		Pileup result = PileupCheckpoint.read(file, "sample.bam;20;20;30");
+
+		assertEquals(16569, result.getLength());
+		assertEquals(500, result.get(73).getgFor());
+		assertEquals(100, result.get(73).getgForQ().getCount(32));
+		assertEquals(73, result.get(73).getPos());
+		assertEquals(3, result.get(16569).getdRev());
+		assertEquals(4, result.getInsertion(309, 2).getcFor());
+		assertNull(result.getInsertion(309, 1));
+		assertNull(result.get(1));
+	}
+
+}
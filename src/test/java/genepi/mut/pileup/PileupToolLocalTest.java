@@ -0,0 +1,63 @@
+package genepi.mut.pileup;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.samtools.util.Interval;
+
+public class PileupToolLocalTest {
+
+	@Test
+	public void testParseRegion() {
+
+		SAMSequenceDictionary dictionary = createDictionary();
+
+		assertInterval("chrM", 1, 16569, PileupToolLocal.parseRegion("chrM", dictionary));
+		assertInterval("chrM", 1000, 16569, PileupToolLocal.parseRegion("chrM:1000", dictionary));
+		assertInterval("chrM", 1000, 2000, PileupToolLocal.parseRegion("chrM:1000-2000", dictionary));
+		assertInterval("chr1", 629000, 634000, PileupToolLocal.parseRegion("chr1:629000-634000", dictionary));
+
+		// end is clamped to the contig length
+		assertInterval("chrM", 16000, 16569, PileupToolLocal.parseRegion("chrM:16000-20000", dictionary));
+
+		// contig names with a colon are found as a whole
+		assertInterval("HLA-A*01:01:01:01", 1, 3503, PileupToolLocal.parseRegion("HLA-A*01:01:01:01", dictionary));
+	}
+
+	@Test
+	public void testParseInvalidRegion() {
+
+		SAMSequenceDictionary dictionary = createDictionary();
+
+		String[] regions = { "chrM:2000-1000", "chrM:0-100", "chrM:17000", "chr2", "chr2:1-100" };
+
+		for (String region : regions) {
+			try {
+				PileupToolLocal.parseRegion(region, dictionary);
+				fail("Region " + region + " is invalid");
+			} catch (IllegalArgumentException e) {
+			}
+		}
+	}
+
+	private SAMSequenceDictionary createDictionary() {
+
+		SAMSequenceDictionary dictionary = new SAMSequenceDictionary();
+		dictionary.addSequence(new SAMSequenceRecord("chr1", 249250621));
+		dictionary.addSequence(new SAMSequenceRecord("chrM", 16569));
+		dictionary.addSequence(new SAMSequenceRecord("HLA-A*01:01:01:01", 3503));
+
+		return dictionary;
+	}
+
+	private void assertInterval(String contig, int start, int end, Interval interval) {
+		assertEquals(contig, interval.getContig());
+		assertEquals(start, interval.getStart());
+		assertEquals(end, interval.getEnd());
+	}
+
+}
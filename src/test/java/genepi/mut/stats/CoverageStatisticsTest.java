@@ -0,0 +1,92 @@
+package genepi.mut.stats;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
+import org.junit.Test;
+
+public class CoverageStatisticsTest {
+
+	@Test
+	public void testSameAsDescriptiveStatistics() {
+
+		// odd number of values, coverages above the initial histogram size
+		Random random = new Random(42);
+
+		CoverageStatistics statistics = new CoverageStatistics();
+		DescriptiveStatistics expected = new DescriptiveStatistics();
+
+		for (int i = 0; i < 16569; i++) {
+			int coverage = i % 1000 == 0 ? 5000 + random.nextInt(1000) : random.nextInt(3000);
+			statistics.add(coverage);
+			expected.addValue(coverage);
+		}
+
+		assertStatistics(expected, statistics);
+	}
+
+	@Test
+	public void testReset() {
+
+		CoverageStatistics statistics = new CoverageStatistics();
+
+		for (int i = 0; i < 100; i++) {
+			statistics.add(2000 + i);
+		}
+
+		statistics.reset();
+
+		assertEquals(0, statistics.getCount());
+		assertTrue(Double.isNaN(statistics.getMean()));
+		assertTrue(Double.isNaN(statistics.getQuantile(0.5)));
+
+		// next sample, nothing left of the first one
+		DescriptiveStatistics expected = new DescriptiveStatistics();
+
+		for (int coverage : new int[] { 7, 0, 3, 12, 3 }) {
+			statistics.add(coverage);
+			expected.addValue(coverage);
+		}
+
+		assertStatistics(expected, statistics);
+		assertEquals(3, statistics.getQuantile(0.5), 0);
+	}
+
+	@Test
+	public void testSingleValue() {
+
+		CoverageStatistics statistics = new CoverageStatistics();
+		statistics.add(42);
+
+		assertEquals(42, statistics.getMean(), 0);
+		assertEquals(0, statistics.getStandardDeviation(), 0);
+		assertEquals(42, statistics.getMin(), 0);
+		assertEquals(42, statistics.getMax(), 0);
+		assertEquals(42, statistics.getQuantile(0.25), 0);
+		assertEquals(42, statistics.getQuantile(0.75), 0);
+	}
+
+	private void assertStatistics(DescriptiveStatistics expected, CoverageStatistics statistics) {
+
+		assertEquals(expected.getN(), statistics.getCount());
+		assertEquals(expected.getMean(), statistics.getMean(), 1e-9);
+		assertEquals(expected.getStandardDeviation(), statistics.getStandardDeviation(), 1e-9);
+		assertEquals(expected.getMin(), statistics.getMin(), 0);
+		assertEquals(expected.getMax(), statistics.getMax(), 0);
+
+		// the median of an odd number of values needs no interpolation
+		assertEquals(expected.getPercentile(50), statistics.getQuantile(0.5), 0);
+
+		// nearest rank of the sorted values
+		double[] sorted = expected.getSortedValues();
+
+		for (double p : new double[] { 0.01, 0.25, 0.5, 0.75, 0.99, 1 }) {
+			int rank = (int) Math.ceil(p * sorted.length);
+			assertEquals("quantile " + p, sorted[rank - 1], statistics.getQuantile(p), 0);
+		}
+	}
+
+}
@@ -1,15 +1,38 @@
 package genepi.mut.steps;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 import org.junit.Test;
 
 import genepi.io.FileUtil;
 import genepi.io.table.reader.CsvTableReader;
 import genepi.mut.objects.VariantLine;
 import genepi.mut.pileup.PileupToolLocal;
+import genepi.mut.util.ReferenceUtil;
+import htsjdk.samtools.BAMIndexer;
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMFileWriter;
+import htsjdk.samtools.SAMFileWriterFactory;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMRecordIterator;
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.samtools.SamReader;
+import htsjdk.samtools.SamReaderFactory;
 import static org.junit.Assert.*;
 
 public class LocalToolTest {
 
+	static final String BAM = "test-data/mtdna/fasta/input/HG03706.mapped.ILLUMINA.bwa.PJL.low_coverage.20130415.bam";
+
+	static final String REFERENCE = "test-data/mtdna/reference/rCRS.fasta";
+
 	@Test
 	public void testMinorBasesForEqualLevels() {
 
@@ -41,4 +64,120 @@ public class LocalToolTest {
 		FileUtil.deleteFile("test-data/mtdna/equal-level/here_raw.txt");
 	}
 
+	@Test
+	public void testSameOutputWithSplitIntervals() throws IOException {
+
+		String folder = "test-data/tmp/localThreads";
+
+		FileUtil.deleteDirectory(folder);
+		new File(folder + "/input").mkdirs();
+
+		// indexed, so 8 threads split the mtDNA contig into 4 intervals
+		File bam = new File(folder + "/input/HG03706.bam");
+		Files.copy(Paths.get(BAM), bam.toPath());
+		indexBam(bam);
+
+		runLocal(folder + "/input", folder + "/single.txt", "--threads", "1");
+		runLocal(folder + "/input", folder + "/split.txt", "--threads", "8");
+
+		assertSameLines(folder + "/single.txt", folder + "/split.txt");
+		assertSameLines(folder + "/single_raw.txt", folder + "/split_raw.txt");
+
+		FileUtil.deleteDirectory(folder);
+	}
+
+	@Test
+	public void testIndexedBamWithMtDnaContigOnly() throws IOException {
+
+		String folder = "test-data/tmp/localIndexed";
+
+		FileUtil.deleteDirectory(folder);
+		new File(folder + "/plain").mkdirs();
+		new File(folder + "/indexed").mkdirs();
+
+		// the indexed file is restricted to the detected contig, the plain
+		// file is read as a whole
+		writeMtDnaBam(new File(folder + "/plain/HG03706.bam"), false);
+		writeMtDnaBam(new File(folder + "/indexed/HG03706.bam"), true);
+
+		runLocal(folder + "/plain", folder + "/plain.txt");
+		runLocal(folder + "/indexed", folder + "/indexed.txt");
+
+		assertSameLines(folder + "/plain.txt", folder + "/indexed.txt");
+		assertSameLines(folder + "/plain_raw.txt", folder + "/indexed_raw.txt");
+
+		FileUtil.deleteDirectory(folder);
+	}
+
+	static void runLocal(String input, String output, String... options) {
+
+		List<String> args = new ArrayList<String>(Arrays.asList("--input", input, "--reference", REFERENCE,
+				"--output", output, "--level", "0.01", "--deletions", "--insertions"));
+		args.addAll(Arrays.asList(options));
+
+		PileupToolLocal pileup = new PileupToolLocal(args.toArray(new String[0]));
+		pileup.start();
+	}
+
+	static void indexBam(File bam) throws IOException {
+
+		SamReader reader = SamReaderFactory.makeDefault().enable(SamReaderFactory.Option.INCLUDE_SOURCE_IN_RECORDS)
+				.open(bam);
+		BAMIndexer.createIndex(reader, new File(bam.getPath() + ".bai"));
+		reader.close();
+	}
+
+	// reads of the mtDNA contig of the test BAM, the header only contains this
+	// contig
+	static void writeMtDnaBam(File output, boolean index) throws IOException {
+
+		SamReader reader = SamReaderFactory.makeDefault().open(new File(BAM));
+
+		SAMFileHeader header = reader.getFileHeader().clone();
+
+		String contig = ReferenceUtil.determineContig(header.getSequenceDictionary());
+
+		SAMSequenceDictionary dictionary = new SAMSequenceDictionary();
+		dictionary.addSequence(new SAMSequenceRecord(contig, header.getSequence(contig).getSequenceLength()));
+
+		header.setSequenceDictionary(dictionary);
+		header.setSortOrder(SAMFileHeader.SortOrder.coordinate);
+
+		SAMFileWriter writer = new SAMFileWriterFactory().setCreateIndex(index).makeBAMWriter(header, true, output);
+
+		SAMRecordIterator iterator = reader.iterator();
+
+		while (iterator.hasNext()) {
+
+			SAMRecord record = iterator.next();
+
+			if (!contig.equals(record.getReferenceName())) {
+				continue;
+			}
+
+			// mates on other contigs are not part of the new header
+			if (record.getReadPairedFlag() && !contig.equals(record.getMateReferenceName())) {
+				record.setMateReferenceName(SAMRecord.NO_ALIGNMENT_REFERENCE_NAME);
+				record.setMateAlignmentStart(SAMRecord.NO_ALIGNMENT_START);
+				record.setMateUnmappedFlag(true);
+			}
+
+			record.setHeaderStrict(header);
+			writer.addAlignment(record);
+		}
+
+		iterator.close();
+		writer.close();
+		reader.close();
+	}
+
+	static void assertSameLines(String expected, String actual) throws IOException {
+
+		List<String> expectedLines = Files.readAllLines(Paths.get(expected));
+
+		// header and at least one position
+		assertTrue(expectedLines.size() > 1);
+		assertEquals(expectedLines, Files.readAllLines(Paths.get(actual)));
+	}
+
 }
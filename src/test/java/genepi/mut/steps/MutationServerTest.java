@@ -20,8 +20,10 @@ import genepi.hadoop.HdfsUtil;
 import genepi.hadoop.common.WorkflowStep;
 import genepi.io.FileUtil;
 import genepi.io.text.LineReader;
+import genepi.mut.align.AlignPileupStep;
 import genepi.mut.align.AlignStep;
 import genepi.mut.pileup.PileupStep;
+import genepi.mut.pipeline.PipelineStep;
 import genepi.mut.sort.SortStep;
 import genepi.mut.util.QCMetric;
 import genepi.mut.util.RawFileAnalysermtDNA;
@@ -309,6 +311,110 @@ public class MutationServerTest {
 	}
 
 
+	@Test
+	public void AlignPileupSETest() throws IOException {
+
+		String inputFolder = "test-data/mtdna/fastqse/input";
+		String archive = "test-data/mtdna/fastqse/reference/rcrs.tar.gz";
+		String hdfsFolder = "inputSE";
+		String type = "se";
+
+		importInputdata(inputFolder, hdfsFolder);
+
+		// create workflow context
+		WorkflowTestContext context = buildContext(hdfsFolder, archive, type);
+
+		assertAlignPileup(context);
+	}
+
+	@Test
+	public void AlignPileupPETest() throws IOException {
+
+		String inputFolder = "test-data/mtdna/fastqpe/input";
+		String archive = "test-data/mtdna/fastqpe/reference/rcrs.tar.gz";
+		String hdfsFolder = "inputPE";
+		String type = "pe";
+
+		importInputdata(inputFolder, hdfsFolder);
+
+		// create workflow context
+		WorkflowTestContext context = buildContext(hdfsFolder, archive, type);
+		context.setInput("chunkLength", "0");
+
+		// pair job, merge of the partial pileups and the samples of the pairs
+		assertAlignPileup(context);
+	}
+
+	// align and pileup without sort step calls the same variants as align, sort and pileup
+	private void assertAlignPileup(WorkflowTestContext context) throws IOException {
+
+		context.setOutput("bwaOut", "cloudgene-bwaOut");
+		context.setOutput("outputBam", "outputBam");
+		context.setOutput("rawHdfs", "rawHdfs");
+		context.setOutput("rawLocal", "test-data/tmp/rawLocal");
+		context.setOutput("variantsHdfs", "variantsHdfs");
+		context.setOutput("variantsLocal", "test-data/tmp/variantsLocal");
+		context.setOutput("baq", "true");
+		context.setOutput("level", "0.01");
+
+		assertTrue(new AlignnMock("files").run(context));
+		assertTrue(new SortMock("files").run(context));
+		assertTrue(new PileupMock("files").run(context));
+
+		Set<String> expected = readVariants("test-data/tmp/variantsLocal");
+		assertFalse(expected.isEmpty());
+
+		HdfsUtil.delete("outputBam");
+		HdfsUtil.delete("cloudgene-bwaOutFused");
+		HdfsUtil.delete("rawHdfsFused");
+		HdfsUtil.delete("variantsHdfsFused");
+
+		context.setOutput("bwaOut", "cloudgene-bwaOutFused");
+		context.setOutput("rawHdfs", "rawHdfsFused");
+		context.setOutput("rawLocal", "test-data/tmp/rawLocalFused");
+		context.setOutput("variantsHdfs", "variantsHdfsFused");
+		context.setOutput("variantsLocal", "test-data/tmp/variantsLocalFused");
+
+		AlignPileupStep alignPileup = new AlignPileupMock("files");
+		assertTrue(alignPileup.run(context));
+
+		assertFalse(HdfsUtil.exists("outputBam"));
+
+		assertEquals(expected, readVariants("test-data/tmp/variantsLocalFused"));
+		assertEquals(countLines("test-data/tmp/rawLocal"), countLines("test-data/tmp/rawLocalFused"));
+
+		FileUtil.deleteDirectory("test-data/tmp");
+	}
+
+	// variant lines without the sample column, the sort job renames the samples
+	private Set<String> readVariants(String file) throws IOException {
+
+		LineReader reader = new LineReader(file);
+		Set<String> variants = new HashSet<String>();
+
+		// header
+		reader.next();
+		while (reader.next()) {
+			String line = reader.get();
+			variants.add(line.substring(line.indexOf("\t") + 1));
+		}
+		reader.close();
+
+		return variants;
+	}
+
+	private int countLines(String file) throws IOException {
+
+		LineReader reader = new LineReader(file);
+		int lines = 0;
+		while (reader.next()) {
+			lines++;
+		}
+		reader.close();
+
+		return lines;
+	}
+
 	@Test
 	public void Pileup1000GBamTest() throws IOException {
 
@@ -363,6 +469,82 @@ public class MutationServerTest {
 
 	}
 	
+	@Test
+	public void PipelineLocalBamTest() throws IOException {
+
+		String inputFolder = "test-data/mtdna/bam/input";
+		String archive = "test-data/mtdna/bam/reference/rcrs.tar.gz";
+		String type = "bam";
+
+		Set<Integer> expected = new HashSet<Integer>(Arrays.asList(1456, 2746, 3200, 12410, 14071, 14569, 15463,
+				16093, 16360, 10394, 1438, 152, 15326, 15340, 16519, 263, 4769, 750, 8592, 8860));
+
+		// local files, no HDFS
+		WorkflowTestContext context = buildContext(inputFolder, archive, type);
+
+		PipelineStep pipeline = new PipelineMock("files");
+		context.setOutput("backend", "local");
+		context.setOutput("rawLocal", "test-data/tmp/rawLocal1000G");
+		context.setOutput("variantsLocal", "test-data/tmp/variantsLocal1000G");
+		context.setOutput("baq", "true");
+		context.setOutput("deletions", "false");
+		context.setOutput("level", "0.01");
+
+		boolean result = pipeline.run(context);
+		assertTrue(result);
+
+		LineReader reader = new LineReader("test-data/tmp/variantsLocal1000G");
+		HashSet<Integer> results = new HashSet<Integer>();
+
+		// header
+		reader.next();
+		while (reader.next()) {
+			String[] splits = reader.get().split("\t");
+			results.add(Integer.valueOf(splits[1]));
+		}
+
+		assertEquals(expected, results);
+
+	}
+
+	@Test
+	public void PipelineLocalSETest() throws IOException {
+
+		String inputFolder = "test-data/mtdna/fastqse/input";
+		String archive = "test-data/mtdna/fastqse/reference/rcrs.tar.gz";
+		String type = "se";
+
+		WorkflowTestContext context = buildContext(inputFolder, archive, type);
+
+		PipelineStep pipeline = new PipelineMock("files");
+		context.setOutput("backend", "local");
+		context.setOutput("threads", "2");
+		context.setOutput("bamLocal", "test-data/tmp/bamLocal");
+		context.setOutput("rawLocal", "test-data/tmp/rawLocal");
+		context.setOutput("variantsLocal", "test-data/tmp/variantsLocal");
+		context.setOutput("level", "0.01");
+
+		boolean result = pipeline.run(context);
+		assertTrue(result);
+
+		// sorted BAM of the aligned reads
+		SamReader reader = SamReaderFactory.makeDefault().validationStringency(ValidationStringency.SILENT)
+				.open(new File("test-data/tmp/bamLocal/small_fastq.bam"));
+
+		int count = 0;
+		int last = 0;
+		for (SAMRecord record : reader) {
+			assertTrue(record.getAlignmentStart() >= last);
+			last = record.getAlignmentStart();
+			count++;
+		}
+		reader.close();
+
+		assertTrue(count > 0);
+
+		FileUtil.deleteDirectory("test-data/tmp");
+	}
+
 	@Test
 	public void Pileup1000GBamAndIndelTest() throws IOException {
 
@@ -575,6 +757,40 @@ public class MutationServerTest {
 
 	}
 
+	class AlignPileupMock extends AlignPileupStep {
+
+		private String folder;
+
+		public AlignPileupMock(String folder) {
+			super();
+			this.folder = folder;
+		}
+
+		@Override
+		public String getFolder(Class clazz) {
+			// override folder with static folder instead of jar location
+			return folder;
+		}
+
+	}
+
+	class PipelineMock extends PipelineStep {
+
+		private String folder;
+
+		public PipelineMock(String folder) {
+			super();
+			this.folder = folder;
+		}
+
+		@Override
+		public String getFolder(Class clazz) {
+			// override folder with static folder instead of jar location
+			return folder;
+		}
+
+	}
+
 	protected boolean run(WorkflowTestContext context, WorkflowStep step) {
 		step.setup(context);
 		return step.run(context);
@@ -0,0 +1,131 @@
+package genepi.mut.util;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import org.broadinstitute.gatk.utils.baq.BAQ;
+import org.junit.Test;
+
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.samtools.reference.FastaSequenceIndex;
+import htsjdk.samtools.reference.FastaSequenceIndexCreator;
+import htsjdk.samtools.reference.IndexedFastaSequenceFile;
+
+public class BaqEngineTest {
+
+	static final String FASTA = "test-data/dna/plasmids/reference/kiv2_6.fasta";
+
+	static final String RCRS = "files/rCRS.fasta";
+
+	@Test
+	public void testSameAsFileLookup() throws IOException {
+
+		String reference = ReferenceUtil.readInReference(FASTA);
+
+		ReferenceProvider provider = new ReferenceProvider(reference);
+
+		IndexedFastaSequenceFile refReader = new IndexedFastaSequenceFile(new File(FASTA),
+				new FastaSequenceIndex(new File(FASTA + ".fai")));
+
+		String contig = refReader.getSequenceDictionary().getSequence(0).getSequenceName();
+
+		SAMFileHeader header = new SAMFileHeader();
+		SAMSequenceDictionary dictionary = new SAMSequenceDictionary();
+		dictionary.addSequence(new SAMSequenceRecord(contig, reference.length()));
+		header.setSequenceDictionary(dictionary);
+
+		// windows clamped at position 0, close to the start and in the middle
+		int[] starts = { 1, 2, 3, 5, 50, 2000 };
+
+		for (int start : starts) {
+
+			SAMRecord read = createRead(header, contig, provider, start);
+			SAMRecord expected = createRead(header, contig, provider, start);
+
+			BaqEngine.baqRead(new BAQ(1e-4, 1e-2, 7, (byte) 0, true), read, provider);
+
+			new BAQ(1e-4, 1e-2, 7, (byte) 0, true).baqRead(expected, refReader,
+					BAQ.CalculationMode.CALCULATE_AS_NECESSARY, BAQ.QualityMode.OVERWRITE_QUALS);
+
+			assertArrayEquals("read at " + start, expected.getBaseQualities(), read.getBaseQualities());
+		}
+
+		refReader.close();
+	}
+
+	@Test
+	public void testBaqAltSameAsFileLookup() throws IOException {
+
+		// indexed copy, the fasta in files has no index
+		File fasta = File.createTempFile("rCRS", ".fasta");
+		fasta.deleteOnExit();
+		Files.copy(new File(RCRS).toPath(), fasta.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+		File index = new File(fasta.getAbsolutePath() + ".fai");
+		index.deleteOnExit();
+		FastaSequenceIndexCreator.buildFromFasta(fasta.toPath()).write(index.toPath());
+
+		String reference = ReferenceUtil.readInReference(fasta.getAbsolutePath());
+
+		ReferenceProvider provider = new ReferenceProvider(reference);
+
+		IndexedFastaSequenceFile refReader = new IndexedFastaSequenceFile(fasta, new FastaSequenceIndex(index));
+
+		SAMFileHeader header = new SAMFileHeader();
+		SAMSequenceDictionary dictionary = new SAMSequenceDictionary();
+		dictionary.addSequence(new SAMSequenceRecord("chrM", reference.length()));
+		header.setSequenceDictionary(dictionary);
+
+		// windows before position 1, starting at 0, close to the end and
+		// reads that wrap around the end
+		int[] starts = { 1, 2, 3, 4, 5, 50, 8000, 16500, 16505, 16510, 16560, 16565, 16569 };
+
+		for (int start : starts) {
+
+			SAMRecord read = createRead(header, "chrM", provider, start);
+			SAMRecord expected = createRead(header, "chrM", provider, start);
+
+			new BaqAlt(1e-4, 1e-2, 7, (byte) 0, true).baqRead(read, provider,
+					BaqAlt.CalculationMode.CALCULATE_AS_NECESSARY, BaqAlt.QualityMode.OVERWRITE_QUALS);
+
+			new BaqAlt(1e-4, 1e-2, 7, (byte) 0, true).baqRead(expected, refReader,
+					BaqAlt.CalculationMode.CALCULATE_AS_NECESSARY, BaqAlt.QualityMode.OVERWRITE_QUALS);
+
+			assertArrayEquals("read at " + start, expected.getBaseQualities(), read.getBaseQualities());
+		}
+
+		refReader.close();
+	}
+
+	// 60 bases of the reference with two mismatches, wrapped at the end
+	private SAMRecord createRead(SAMFileHeader header, String contig, ReferenceProvider reference, int start) {
+
+		byte[] bases = reference.getSubsequence(start, start + 59);
+		bases[10] = (byte) (bases[10] == 'A' ? 'C' : 'A');
+		bases[45] = (byte) (bases[45] == 'G' ? 'T' : 'G');
+
+		byte[] quals = new byte[bases.length];
+		for (int i = 0; i < quals.length; i++) {
+			quals[i] = (byte) (20 + i % 20);
+		}
+
+		SAMRecord read = new SAMRecord(header);
+		read.setReadName("read" + start);
+		read.setReferenceName(contig);
+		read.setAlignmentStart(start);
+		read.setCigarString(bases.length + "M");
+		read.setReadBases(bases);
+		read.setBaseQualities(quals);
+		read.setMappingQuality(60);
+
+		return read;
+	}
+
+}
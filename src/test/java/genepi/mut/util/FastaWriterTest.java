@@ -2,9 +2,12 @@ package genepi.mut.util;
 
 import static org.junit.Assert.assertEquals;
 
+import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.List;
+
 import org.junit.Test;
 
 import genepi.io.FileUtil;
@@ -165,4 +168,35 @@ public class FastaWriterTest {
 	}
 
 
+	@Test
+	public void testSampleInSeveralBlocks() throws IOException {
+
+		String header = "ID\tPos\tRef\tVariant\tVariantLevel\tMajorBase\tMajorLevel\tMinorBase\tMinorLevel\tCoverage\tType\n";
+
+		// s1 is split into two blocks, e.g. concatenated runs
+		String content = header + "s1\t73\tA\tG\t1.0\tG\t1.0\t-\t0.0\t1000\t1\n"
+				+ "s2\t750\tA\tG\t1.0\tG\t1.0\t-\t0.0\t1000\t1\n"
+				+ "s1\t263\tA\tG\t1.0\tG\t1.0\t-\t0.0\t1000\t1\n";
+
+		File variants = File.createTempFile("variants", ".txt");
+		variants.deleteOnExit();
+		Files.write(variants.toPath(), content.getBytes("UTF-8"));
+
+		File fasta = File.createTempFile("variants", ".fasta");
+		fasta.deleteOnExit();
+
+		new FastaWriter().createFasta(variants.getAbsolutePath(), fasta.getAbsolutePath(),
+				"test-data/mtdna/reference/rCRS.fasta");
+
+		List<String> lines = Files.readAllLines(fasta.toPath());
+
+		assertEquals(4, lines.size());
+
+		String s1 = lines.get(0).equals(">s1") ? lines.get(1) : lines.get(3);
+
+		assertEquals('G', s1.charAt(72));
+		assertEquals('G', s1.charAt(262));
+		assertEquals('A', s1.charAt(749));
+	}
+
 }
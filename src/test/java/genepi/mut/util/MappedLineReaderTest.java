@@ -0,0 +1,114 @@
+package genepi.mut.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+
+public class MappedLineReaderTest {
+
+	@Test
+	public void testLinesAcrossWindows() throws IOException {
+
+		StringBuilder content = new StringBuilder("SAMPLE\tPOS\tCOV\n");
+
+		for (int i = 1; i <= 1000; i++) {
+			// every 100th line is longer than the window
+			String sample = i % 100 == 0 ? "sample_with_a_very_long_name_" + i : "s" + (i % 3);
+			content.append(sample + "\t" + i + "\t" + (i * 7) + "\n");
+		}
+
+		File file = write(content.toString());
+
+		// 16 byte windows, most lines cross a window
+		MappedLineReader reader = new MappedLineReader(file.getAbsolutePath(), '\t', 16);
+
+		assertArrayEquals(new String[] { "SAMPLE", "POS", "COV" }, reader.getColumns());
+		assertEquals(2, reader.getColumnIndex("COV"));
+
+		for (int i = 1; i <= 1000; i++) {
+
+			assertTrue(reader.next());
+			assertEquals(3, reader.getFieldCount());
+
+			String sample = i % 100 == 0 ? "sample_with_a_very_long_name_" + i : "s" + (i % 3);
+			assertEquals(sample, reader.getString(0));
+			assertTrue(reader.equals(0, sample));
+			assertEquals(i, reader.getInteger(1));
+			assertEquals(i * 7, reader.getInteger(2));
+		}
+
+		assertFalse(reader.next());
+
+		reader.close();
+	}
+
+	@Test
+	public void testLastLineWithoutNewline() throws IOException {
+
+		File file = write("A\tB\n1\t-2\n3\t4.0");
+
+		MappedLineReader reader = new MappedLineReader(file.getAbsolutePath(), '\t', 4);
+
+		assertTrue(reader.next());
+		assertEquals(1, reader.getInteger(0));
+		assertEquals(-2, reader.getInteger(1));
+
+		assertTrue(reader.next());
+		assertEquals(3, reader.getInteger(0));
+		assertEquals(4, reader.getInteger(1));
+		assertEquals(4.0, reader.getDouble(1), 0);
+
+		assertFalse(reader.next());
+
+		reader.close();
+	}
+
+	@Test
+	public void testCrlf() throws IOException {
+
+		File file = write("A\tB\r\n1\t2\r\nsample\t\r\n10\t20");
+
+		for (int window : new int[] { 3, 64 * 1024 * 1024 }) {
+
+			MappedLineReader reader = new MappedLineReader(file.getAbsolutePath(), '\t', window);
+
+			assertArrayEquals(new String[] { "A", "B" }, reader.getColumns());
+
+			assertTrue(reader.next());
+			assertEquals(1, reader.getInteger(0));
+			assertEquals(2, reader.getInteger(1));
+			assertEquals("2", reader.getString(1));
+
+			assertTrue(reader.next());
+			assertTrue(reader.equals(0, "sample"));
+			assertEquals("", reader.getString(1));
+
+			assertTrue(reader.next());
+			assertEquals(20, reader.getInteger(1));
+
+			assertFalse(reader.next());
+
+			reader.close();
+		}
+	}
+
+	private File write(String content) throws IOException {
+
+		File file = File.createTempFile("lines", ".txt");
+		file.deleteOnExit();
+
+		FileOutputStream out = new FileOutputStream(file);
+		out.write(content.getBytes("UTF-8"));
+		out.close();
+
+		return file;
+	}
+
+}
@@ -0,0 +1,176 @@
+package genepi.mut.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.zip.Deflater;
+
+import org.junit.Test;
+
+import genepi.mut.objects.VariantLine;
+
+public class RawFileWriterTest {
+
+	@Test
+	public void testRoundTripMultipleBlocks() throws IOException {
+
+		int rows = RawFileWriter.BLOCK_SIZE + 10;
+
+		File file = write("sample1", rows);
+
+		RawFileReader reader = new RawFileReader(file.getAbsolutePath());
+
+		for (int i = 0; i < rows; i++) {
+			assertTrue(reader.next());
+			assertEquals("sample1", reader.getString("SAMPLE"));
+			assertEquals(i + 1, reader.getInteger("POS"));
+			assertEquals('A', reader.getChar("REF"));
+			assertEquals(i % 100, reader.getInteger("COV-FWD"));
+			assertEquals(i % 100 + 5, reader.getInteger("COV-TOTAL"));
+			assertEquals(i / 1000.0, reader.getDouble("%A"), 0);
+			assertEquals("[]", reader.getString("MINORS"));
+		}
+
+		assertFalse(reader.next());
+
+		reader.close();
+	}
+
+	@Test
+	public void testProjection() throws IOException {
+
+		File file = write("sample1", 100);
+
+		RawFileReader reader = new RawFileReader(file.getAbsolutePath(), "POS", "COV-REV");
+
+		int count = 0;
+
+		while (reader.next()) {
+			assertEquals(count + 1, reader.getInteger("POS"));
+			assertEquals(5, reader.getInteger("COV-REV"));
+			assertEquals("5", reader.getString("COV-REV"));
+			count++;
+		}
+
+		assertEquals(100, count);
+
+		try {
+			reader.getString("SAMPLE");
+			fail("Column was not selected");
+		} catch (IllegalStateException e) {
+		}
+
+		reader.close();
+	}
+
+	@Test
+	public void testConcatenatedFiles() throws IOException {
+
+		File first = write("sample1", RawFileWriter.BLOCK_SIZE + 1);
+		File second = write("sample2", 3);
+
+		File file = File.createTempFile("concat", RawFileWriter.EXTENSION);
+		file.deleteOnExit();
+
+		FileOutputStream out = new FileOutputStream(file);
+		out.write(Files.readAllBytes(first.toPath()));
+		out.write(Files.readAllBytes(second.toPath()));
+		out.close();
+
+		RawFileReader reader = new RawFileReader(file.getAbsolutePath(), "SAMPLE", "POS");
+
+		int count = 0;
+		String last = null;
+
+		while (reader.next()) {
+			last = reader.getString("SAMPLE") + ":" + reader.getInteger("POS");
+			count++;
+		}
+
+		assertEquals(RawFileWriter.BLOCK_SIZE + 4, count);
+		assertEquals("sample2:3", last);
+
+		reader.close();
+	}
+
+	@Test
+	public void testMissingColumn() throws IOException {
+
+		// block with a POS column only
+		byte[] raw = new byte[] { 0, 0, 0, 7 };
+
+		Deflater deflater = new Deflater();
+		deflater.setInput(raw);
+		deflater.finish();
+		byte[] compressed = new byte[64];
+		int length = deflater.deflate(compressed);
+		deflater.end();
+
+		ByteArrayOutputStream block = new ByteArrayOutputStream();
+		DataOutputStream blockOut = new DataOutputStream(block);
+		blockOut.writeByte(RawFileWriter.VERSION);
+		blockOut.writeInt(1);
+		blockOut.writeShort(1);
+		blockOut.writeUTF("POS");
+		blockOut.writeByte(RawFileWriter.INT);
+		blockOut.writeInt(raw.length);
+		blockOut.writeInt(length);
+		blockOut.write(compressed, 0, length);
+
+		File file = File.createTempFile("missing", RawFileWriter.EXTENSION);
+		file.deleteOnExit();
+
+		DataOutputStream out = new DataOutputStream(new FileOutputStream(file));
+		out.writeInt(RawFileWriter.MAGIC);
+		out.writeInt(block.size());
+		block.writeTo(out);
+		out.close();
+
+		RawFileReader reader = new RawFileReader(file.getAbsolutePath(), "POS");
+		assertTrue(reader.next());
+		assertEquals(7, reader.getInteger("POS"));
+		reader.close();
+
+		reader = new RawFileReader(file.getAbsolutePath(), "POS", "COV-FWD");
+		try {
+			reader.next();
+			fail("COV-FWD is missing");
+		} catch (IOException e) {
+		}
+		reader.close();
+	}
+
+	private File write(String sample, int rows) throws IOException {
+
+		File file = File.createTempFile(sample, RawFileWriter.EXTENSION);
+		file.deleteOnExit();
+
+		RawFileWriter writer = new RawFileWriter(file.getAbsolutePath());
+
+		VariantLine line = new VariantLine();
+
+		for (int i = 0; i < rows; i++) {
+			line.reset();
+			line.setId(sample);
+			line.setPosition(i + 1);
+			line.setRef('A');
+			line.setCovFWD(i % 100);
+			line.setCovREV(5);
+			line.setaPercentageFWD(i / 1000.0);
+			writer.write(line);
+		}
+
+		writer.close();
+
+		return file;
+	}
+
+}
@@ -3,6 +3,7 @@ package genepi.mut.util;
 import static org.junit.Assert.assertEquals;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import org.junit.Test;
@@ -17,7 +18,7 @@ import htsjdk.variant.vcf.VCFFileReader;
 public class VcfWriterTest {
 
 	@Test
-	public void compareOneCramSampleTxtVsVcfTest() {
+	public void compareOneCramSampleTxtVsVcfTest() throws IOException {
 		String in = "test-data/results/variantsLocal1000G";
 		String out = "test-data/results/variantsLocal1000G.vcf";
 		VcfWriter writer = new VcfWriter();
@@ -75,7 +76,7 @@ public class VcfWriterTest {
 	}
 
 	@Test
-	public void compareTwoCramSampleTxtVsVcfTest() {
+	public void compareTwoCramSampleTxtVsVcfTest() throws IOException {
 		String in = "test-data/mtdna/cram/output/variants.txt";
 		String vcf = "test-data/mtdna/cram/output/variants.vcf";
 		VcfWriter writer = new VcfWriter();